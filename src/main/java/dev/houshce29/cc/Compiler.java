@@ -7,10 +7,16 @@ import dev.houshce29.cc.generate.DefaultGenerator;
 import dev.houshce29.cc.generate.Generator;
 import dev.houshce29.cc.lex.Lexer;
 import dev.houshce29.cc.lex.Token;
+import dev.houshce29.cc.lex.TokenPipe;
+import dev.houshce29.cc.parse.ParseFailureSite;
 import dev.houshce29.cc.parse.Parser;
 import dev.houshce29.cc.parse.SymbolTree;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Compiler that can be defined to fit any language.
@@ -20,6 +26,7 @@ public final class Compiler {
     private final Parser parser;
     private final SemanticAnalyzer analyzer;
     private final Generator generator;
+    private final Executor pipelineExecutor;
 
     /**
      * Internally creates a new instance.
@@ -27,16 +34,19 @@ public final class Compiler {
      * @param parser Parser for building AST.
      * @param analyzer Analyzer for semantics.
      * @param generator Generator for compiler.
+     * @param pipelineExecutor Executor to lex on while parsing, or `null` to lex first.
      */
     private Compiler(Lexer lexer,
                      Parser parser,
                      SemanticAnalyzer analyzer,
-                     Generator generator) {
+                     Generator generator,
+                     Executor pipelineExecutor) {
 
         this.lexer = lexer;
         this.parser = parser;
         this.analyzer = analyzer;
         this.generator = generator;
+        this.pipelineExecutor = pipelineExecutor;
     }
 
     /**
@@ -46,6 +56,9 @@ public final class Compiler {
      *         the returned value is likely `null`.
      */
     public Object compile(String input) {
+        if (pipelineExecutor != null) {
+            return compilePipelined(input);
+        }
         try {
             List<Token> tokens = lexer.lex(input);
             SymbolTree symbolTree = parser.parse(tokens);
@@ -57,6 +70,50 @@ public final class Compiler {
         }
     }
 
+    /**
+     * Compiles the given input, lexing it on the pipeline executor while
+     * parsing the tokens on this thread as they are lexed.
+     * @param input Input to compile.
+     * @return Anything generated.
+     */
+    private Object compilePipelined(String input) {
+        try {
+            TokenPipe tokens = new TokenPipe();
+            CompletableFuture<Void> lexing = CompletableFuture.runAsync(() -> lexer.lex(input, tokens), pipelineExecutor);
+            SymbolTree symbolTree;
+            try {
+                symbolTree = parser.parse(tokens);
+            }
+            catch (RuntimeException ex) {
+                // As when lexing first, an error of the lexer takes precedence over a syntax error.
+                lexing.join();
+                throw ex;
+            }
+            lexing.join();
+            analyzer.analyze(tokens, symbolTree);
+            return generator.generate(tokens, symbolTree);
+        }
+        catch (Throwable t) {
+            throw new CompilationException(t instanceof CompletionException ? t.getCause() : t);
+        }
+    }
+
+    /**
+     * Checks the syntax of the given input, only lexing and recognizing
+     * it against the grammar; no symbol tree is built, and nothing is
+     * analyzed or generated.
+     * @param input Input to validate.
+     * @return Site of the syntax error, or empty if the syntax is valid.
+     */
+    public Optional<ParseFailureSite> validate(String input) {
+        try {
+            return parser.validate(lexer.lex(input));
+        }
+        catch (Throwable t) {
+            throw new CompilationException(t);
+        }
+    }
+
     /**
      * @return This compiler disassembled back into its builder.
      */
@@ -65,7 +122,8 @@ public final class Compiler {
                 .setLexer(lexer)
                 .setParser(parser)
                 .setSemanticAnalyzer(analyzer)
-                .setGenerator(generator);
+                .setGenerator(generator)
+                .setPipelineExecutor(pipelineExecutor);
     }
 
     /**
@@ -83,6 +141,7 @@ public final class Compiler {
         private Parser parser;
         private SemanticAnalyzer analyzer;
         private Generator generator;
+        private Executor pipelineExecutor;
 
         private Builder() {
         }
@@ -145,12 +204,28 @@ public final class Compiler {
             return this;
         }
 
+        /**
+         * Pipelines lexing and parsing: the input is lexed on the executor
+         * while the parser consumes the tokens as they are lexed, rather than
+         * after the whole input is lexed. Compiling produces the same outcome.
+         * The lexer may not have an after function, which could only run once
+         * the parser already read the tokens. Segments declared by the parser
+         * are not parsed concurrently.
+         * @param pipelineExecutor Executor to lex on, or `null` to lex before parsing.
+         * @return This builder.
+         */
+        public Builder setPipelineExecutor(Executor pipelineExecutor) {
+            this.pipelineExecutor = pipelineExecutor;
+            return this;
+        }
+
         /**
          * Builds the compiler. If necessary, any missing, undefined
          * compiler components will be set to some default.
          * @return New compiler instance.
+         * @throws IllegalArgumentException If pipelining a lexer with an after function.
          */
-        public Compiler build() {
+        public Compiler build() throws IllegalArgumentException {
             // Default all these things if missing.
             // While it's tempting to declare that an exception
             // should be thrown here if these are not present,
@@ -170,7 +245,10 @@ public final class Compiler {
             if (generator == null) {
                 generator = new DefaultGenerator();
             }
-            return new Compiler(lexer, parser, analyzer, generator);
+            if (pipelineExecutor != null && lexer.hasAfterFunction()) {
+                throw new IllegalArgumentException("Lexer with an after function cannot be pipelined.");
+            }
+            return new Compiler(lexer, parser, analyzer, generator, pipelineExecutor);
         }
     }
 }
@@ -3,7 +3,9 @@ package dev.houshce29.cc.lex;
 import dev.houshce29.cc.common.CompilerComponent;
 import dev.houshce29.cc.common.utils.Pair;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.BiConsumer;
@@ -18,6 +20,8 @@ public final class Lexer implements CompilerComponent {
             .on(RegexFactory.anythingRegex())
                 .error(context -> new UnsupportedOperationException("No lexer definition for this compiler."))
             .build();
+    // After function of lexers defined without one.
+    private static final BiConsumer<String, List<Token>> NOTHING_AFTER = (s, lt) -> {};
     private final List<Pair<InputMatcher, Function<ScanContext, ?>>> factory;
     private final BiConsumer<String, List<Token>> afterFunction;
 
@@ -41,80 +45,162 @@ public final class Lexer implements CompilerComponent {
      */
     public List<Token> lex(String rawInput) {
         List<Token> tokens = new ArrayList<>();
+        scan(rawInput, tokens::add);
+        afterFunction.accept(rawInput, tokens);
+        return tokens;
+    }
+
+    /**
+     * Plucks tokens from the raw input into a pipe, publishing each as soon
+     * as it is lexed so that it can be read on another thread, e.g. by the
+     * parser, while the rest of the input is lexed. The pipe is closed once
+     * every token is published, or failed with the error that stopped the
+     * lexer, which is then also thrown. A lexer with an after function
+     * cannot lex into a pipe, as the tokens may be read before it runs.
+     * @param rawInput Raw input to pluck tokens out of.
+     * @param pipe Pipe to publish the tokens to.
+     * @throws UnsupportedOperationException If this lexer has an after function,
+     *                                       in which case the pipe is failed with it.
+     */
+    public void lex(String rawInput, TokenPipe pipe) throws UnsupportedOperationException {
+        try {
+            if (hasAfterFunction()) {
+                throw new UnsupportedOperationException("Lexer with an after function cannot lex into a pipe.");
+            }
+            scan(rawInput, pipe::publish);
+        }
+        catch (RuntimeException ex) {
+            pipe.fail(ex);
+            throw ex;
+        }
+        finally {
+            pipe.close();
+        }
+    }
+
+    /**
+     * @return `true` if this lexer runs an after function once it lexed the whole input.
+     */
+    public boolean hasAfterFunction() {
+        return afterFunction != NOTHING_AFTER;
+    }
+
+    /**
+     * Creates a source that lexes the raw input as its tokens are pulled,
+     * one token at a time, so that the tokens never need to be held all at
+     * once (see {@link dev.houshce29.cc.parse.Parser#parse(TokenSource, dev.houshce29.cc.parse.ParseListener)}).
+     * Ignored tokens are skipped, and errors are thrown as the offending
+     * input is reached. The after function is not run.
+     * @param rawInput Raw input to pluck tokens out of.
+     * @return Source of the tokens.
+     */
+    public TokenSource source(String rawInput) {
+        return new TokenSource() {
+            private final ScanContext scanContext = new ScanContext();
+            private final Deque<Token> scanned = new ArrayDeque<>();
+            private int scanPosition = 0;
+
+            @Override
+            public Token next() {
+                while (scanned.isEmpty() && scanPosition < rawInput.length()) {
+                    scanPosition = scanNext(rawInput, scanPosition, scanContext, scanned::add);
+                }
+                return scanned.poll();
+            }
+        };
+    }
+
+    /**
+     * Scans the raw input, passing on every token that is not ignored in order.
+     * @param rawInput Raw input to pluck tokens out of.
+     * @param tokens Consumer of the tokens.
+     */
+    private void scan(String rawInput, Consumer<Token> tokens) {
         ScanContext scanContext = new ScanContext();
-        String scanned = "";
         int scanPosition = 0;
         // Scan the entire input length
         while (scanPosition < rawInput.length()) {
-            // Main control flag that's set to true when a token was generated.
-            boolean generated = false;
-            // Try each provider in order
-            __factoryProviderLoop__:
-            for (Pair<InputMatcher, Function<ScanContext, ?>> provider : factory) {
-                // Obtain strategy to determine when to consume
-                MatchingStrategy strategy = provider.getKey().getStrategy();
-                Optional<? extends Token> lastMatch = Optional.empty();
-                int lastMatchEndPosition = scanPosition;
-                // Set the end position by starting from the scan position and moving forward one by one
-                for (int endPosition = scanPosition; endPosition < rawInput.length(); endPosition++) {
-                    // Scan a new substring
-                    scanned = rawInput.substring(scanPosition, endPosition + 1);
-                    Optional<? extends Token> maybeToken = getToken(provider, scanContext, scanned);
-
-                    // If there's a token, generation was successful
-                    if (maybeToken.isPresent()) {
-                        lastMatchEndPosition = endPosition;
-                        switch (strategy) {
-                            case SPAN:
-                            case MAX:
-                                lastMatch = maybeToken;
-                                break;
-                            default:
-                                generated = true;
-                                // Push ahead to the current position
-                                scanPosition = endPosition + 1;
-                                Token token = maybeToken.get();
-                                // Only add this token if not ignored.
-                                if (!token.isIgnored()) {
-                                    tokens.add(token);
-                                }
-                                // Get out of this loop; flow back to reset the provider loop.
-                                break __factoryProviderLoop__;
-                        }
+            scanPosition = scanNext(rawInput, scanPosition, scanContext, tokens);
+        }
+    }
+
+    /**
+     * Scans the next token from the raw input, passing it on unless ignored.
+     * @param rawInput Raw input to pluck tokens out of.
+     * @param scanPosition Position to scan from.
+     * @param scanContext Current state of the lexer.
+     * @param tokens Consumer of the tokens.
+     * @return Position after the scanned token.
+     */
+    private int scanNext(String rawInput, int scanPosition, ScanContext scanContext, Consumer<Token> tokens) {
+        String scanned = "";
+        // Main control flag that's set to true when a token was generated.
+        boolean generated = false;
+        // Try each provider in order
+        __factoryProviderLoop__:
+        for (Pair<InputMatcher, Function<ScanContext, ?>> provider : factory) {
+            // Obtain strategy to determine when to consume
+            MatchingStrategy strategy = provider.getKey().getStrategy();
+            Optional<? extends Token> lastMatch = Optional.empty();
+            int lastMatchEndPosition = scanPosition;
+            // Set the end position by starting from the scan position and moving forward one by one
+            for (int endPosition = scanPosition; endPosition < rawInput.length(); endPosition++) {
+                // Scan a new substring
+                scanned = rawInput.substring(scanPosition, endPosition + 1);
+                Optional<? extends Token> maybeToken = getToken(provider, scanContext, scanned);
+
+                // If there's a token, generation was successful
+                if (maybeToken.isPresent()) {
+                    lastMatchEndPosition = endPosition;
+                    switch (strategy) {
+                        case SPAN:
+                        case MAX:
+                            lastMatch = maybeToken;
+                            break;
+                        default:
+                            generated = true;
+                            // Push ahead to the current position
+                            scanPosition = endPosition + 1;
+                            Token token = maybeToken.get();
+                            // Only add this token if not ignored.
+                            if (!token.isIgnored()) {
+                                tokens.accept(token);
+                            }
+                            // Get out of this loop; flow back to reset the provider loop.
+                            break __factoryProviderLoop__;
                     }
-                    // Middle case: SPAN, no match this sequence, previous match found
-                    else if (strategy == MatchingStrategy.SPAN && lastMatch.isPresent()) {
-                        generated = true;
-                        scanPosition = endPosition;
-                        Token token = lastMatch.get();
-                        // Only add this token if not ignored.
-                        if (!token.isIgnored()) {
-                            tokens.add(token);
-                        }
-                        // Get out of this loop; flow back to reset the provider loop.
-                        break __factoryProviderLoop__;
+                }
+                // Middle case: SPAN, no match this sequence, previous match found
+                else if (strategy == MatchingStrategy.SPAN && lastMatch.isPresent()) {
+                    generated = true;
+                    scanPosition = endPosition;
+                    Token token = lastMatch.get();
+                    // Only add this token if not ignored.
+                    if (!token.isIgnored()) {
+                        tokens.accept(token);
                     }
-
-                    // End of input case
-                    if (endPosition >= rawInput.length() - 1 && lastMatch.isPresent()) {
-                        generated = true;
-                        Token token = lastMatch.get();
-                        scanPosition = lastMatchEndPosition + 1;
-                        // Only add this token if not ignored
-                        if (!token.isIgnored()) {
-                            tokens.add(token);
-                        }
-                        break __factoryProviderLoop__;
+                    // Get out of this loop; flow back to reset the provider loop.
+                    break __factoryProviderLoop__;
+                }
+
+                // End of input case
+                if (endPosition >= rawInput.length() - 1 && lastMatch.isPresent()) {
+                    generated = true;
+                    Token token = lastMatch.get();
+                    scanPosition = lastMatchEndPosition + 1;
+                    // Only add this token if not ignored
+                    if (!token.isIgnored()) {
+                        tokens.accept(token);
                     }
-                } // end input position loop
-            } // end factory provider loop
-            // If not generated, there was an unexpected token.
-            if (!generated) {
-                throw new IllegalArgumentException("Invalid token [" + scanned + "] on line " + scanContext.getLineNumber() + ".");
-            }
-        } // end main control loop
-        afterFunction.accept(rawInput, tokens);
-        return tokens;
+                    break __factoryProviderLoop__;
+                }
+            } // end input position loop
+        } // end factory provider loop
+        // If not generated, there was an unexpected token.
+        if (!generated) {
+            throw new IllegalArgumentException("Invalid token [" + scanned + "] on line " + scanContext.getLineNumber() + ".");
+        }
+        return scanPosition;
     }
 
     @Override
@@ -252,7 +338,7 @@ public final class Lexer implements CompilerComponent {
          */
         public Lexer build() {
             if (afterFunction == null) {
-                afterFunction = (s, lt) -> {};
+                afterFunction = NOTHING_AFTER;
             }
             return new Lexer(factory, afterFunction);
         }
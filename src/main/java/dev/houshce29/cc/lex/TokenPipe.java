@@ -0,0 +1,127 @@
+package dev.houshce29.cc.lex;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read-only token list that is filled by a lexer on one thread while being
+ * read on another, e.g. by the parser. Tokens are published without locking;
+ * a reader only blocks when it asks for a token that is not lexed yet. Every
+ * token is kept once published, so readers may go back to any of them.
+ * <br />
+ * Only a single thread may add tokens, and a single thread may wait on them.
+ */
+public final class TokenPipe extends AbstractList<Token> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 1024;
+    // Times a reader checks for a token again before parking.
+    private static final int SPINS = 64;
+    // Published tokens are never moved within the buffer; a grown buffer holds them all.
+    private volatile Token[] buffer = new Token[INITIAL_CAPACITY];
+    private volatile int published;
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+    private volatile Thread waiter;
+
+    /**
+     * Publishes the next token.
+     * @param token Lexed token.
+     */
+    public void publish(Token token) {
+        Token[] tokens = buffer;
+        int index = published;
+        if (index == tokens.length) {
+            tokens = Arrays.copyOf(tokens, index * 2);
+            buffer = tokens;
+        }
+        tokens[index] = token;
+        published = index + 1;
+        wake();
+    }
+
+    /**
+     * Marks every token as published.
+     */
+    public void close() {
+        closed = true;
+        wake();
+    }
+
+    /**
+     * Marks the tokens as failing to lex, which fails any reader waiting on them.
+     * @param failure Cause of the failure.
+     */
+    public void fail(RuntimeException failure) {
+        this.failure = failure;
+        close();
+    }
+
+    /**
+     * Waits until the token at the index is published, or until every token is.
+     * @param index Index of a token.
+     * @return `true` if the token exists, `false` if there are fewer tokens.
+     * @throws RuntimeException Failure of the lexer, if it failed before publishing the token.
+     */
+    public boolean await(int index) throws RuntimeException {
+        for (int spins = 0; index >= published; spins++) {
+            if (closed) {
+                if (index < published) {
+                    return true;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return false;
+            }
+            if (spins < SPINS) {
+                Thread.yield();
+                continue;
+            }
+            waiter = Thread.currentThread();
+            // Check again, as the token may have been published before the writer could see the waiter.
+            if (index >= published && !closed) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of tokens published so far.
+     */
+    public int published() {
+        return published;
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index < 0 || !await(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return buffer[index];
+    }
+
+    /**
+     * Waits until every token is published.
+     * @return Number of tokens.
+     */
+    @Override
+    public int size() {
+        await(Integer.MAX_VALUE);
+        return published;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !await(0);
+    }
+
+    private void wake() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package dev.houshce29.cc.lex;
+
+/**
+ * Source that tokens are pulled from one at a time, in order,
+ * e.g. by the parser as it reaches them.
+ */
+@FunctionalInterface
+public interface TokenSource {
+
+    /**
+     * Pulls the next token.
+     * @return The next token, or `null` if there are no more tokens.
+     */
+    Token next();
+}
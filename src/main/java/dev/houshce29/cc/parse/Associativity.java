@@ -0,0 +1,26 @@
+package dev.houshce29.cc.parse;
+
+/**
+ * Grouping of consecutive operators of the same precedence:
+ * <br />
+ * <ul>
+ *     <li>
+ *         Left - `1 - 2 - 3` is grouped as `(1 - 2) - 3`.
+ *     </li>
+ *     <li>
+ *         Right - `1 ^ 2 ^ 3` is grouped as `1 ^ (2 ^ 3)`.
+ *     </li>
+ * </ul>
+ */
+public enum Associativity {
+
+    /**
+     * Default associativity. Operators group from the left.
+     */
+    LEFT,
+
+    /**
+     * Operators group from the right.
+     */
+    RIGHT
+}
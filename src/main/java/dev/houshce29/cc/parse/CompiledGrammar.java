@@ -0,0 +1,200 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable form of a grammar in which every word is resolved ahead of time,
+ * so that parsing never looks up phrases or compares token IDs by name.
+ * Token IDs are assigned kinds (ordinals) in order of first appearance; the
+ * IDs of incoming tokens are mapped to the same kinds once per parse.
+ * Phrases that cannot be reached from the root are left out, as no parse
+ * ever applies them.
+ */
+final class CompiledGrammar {
+    private final Grammar grammar;
+    private final Map<String, Phrase> source;
+    private final Map<String, Integer> kinds = new HashMap<>();
+    private final Map<String, CompiledPhrase> phrasesById = new HashMap<>();
+    private final CompiledPhrase[] phrases;
+
+    /**
+     * Privately creates a new instance.
+     * @param grammar Grammar to compile.
+     */
+    private CompiledGrammar(Grammar grammar) {
+        this.grammar = grammar;
+        this.source = reachable(grammar);
+        Map<String, Integer> indices = new HashMap<>();
+        for (Phrase phrase : source.values()) {
+            indices.put(phrase.getId(), indices.size());
+            for (List<String> sentence : phrase.getSentences()) {
+                for (String word : sentence) {
+                    if (!source.containsKey(word) && !kinds.containsKey(word)) {
+                        kinds.put(word, kinds.size());
+                    }
+                }
+            }
+        }
+        this.phrases = new CompiledPhrase[source.size()];
+        for (Phrase phrase : source.values()) {
+            int index = indices.get(phrase.getId());
+            List<List<String>> sentences = phrase.getSentences();
+            int[][] compiled = new int[sentences.size()][];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = sentences.get(i).stream()
+                        .mapToInt(word -> compile(word, indices))
+                        .toArray();
+            }
+            int operand = 0;
+            Phrase.Operator[] operators = new Phrase.Operator[0];
+            if (phrase.isOperatorPhrase()) {
+                operand = compile(phrase.getOperand(), indices);
+                operators = new Phrase.Operator[kinds.size()];
+                for (Map.Entry<String, Integer> kind : kinds.entrySet()) {
+                    operators[kind.getValue()] = phrase.getOperator(kind.getKey());
+                }
+            }
+            phrases[index] = new CompiledPhrase(phrase, index, compiled, operand, operators);
+            phrasesById.put(phrase.getId(), phrases[index]);
+        }
+    }
+
+    /**
+     * @return The grammar that was compiled.
+     */
+    Grammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * @return Phrases of the grammar that were compiled, keyed from their IDs.
+     */
+    Map<String, Phrase> getSourcePhrases() {
+        return Collections.unmodifiableMap(source);
+    }
+
+    /**
+     * @return The compiled root phrase.
+     */
+    CompiledPhrase getRoot() {
+        return phrasesById.get(grammar.getRoot().getId());
+    }
+
+    /**
+     * Finds a compiled phrase by its ID.
+     * @param id ID of the phrase.
+     * @return The compiled phrase, or `null` if the ID is not of a phrase reachable from the root.
+     */
+    CompiledPhrase get(String id) {
+        return phrasesById.get(id);
+    }
+
+    /**
+     * @param word Compiled word referring to a phrase.
+     * @return The compiled phrase.
+     */
+    CompiledPhrase phrase(int word) {
+        return phrases[~word];
+    }
+
+    /**
+     * @return Every compiled phrase, by index.
+     */
+    CompiledPhrase[] getPhrases() {
+        return phrases;
+    }
+
+    /**
+     * @return Kinds of the tokens used by the grammar, keyed from their IDs.
+     */
+    Map<String, Integer> getKinds() {
+        return Collections.unmodifiableMap(kinds);
+    }
+
+    /**
+     * @param tokenId ID of a token.
+     * @return Kind of the token, or the unknown kind if not used by the grammar.
+     */
+    int kind(String tokenId) {
+        Integer kind = kinds.get(tokenId);
+        return kind == null ? getUnknownKind() : kind;
+    }
+
+    /**
+     * @return Kind shared by every token unused by the grammar.
+     */
+    int getUnknownKind() {
+        return kinds.size();
+    }
+
+    /**
+     * Maps the tokens to their kinds.
+     * @param tokens Tokens to map.
+     * @return Kind of each token.
+     */
+    int[] kinds(List<Token> tokens) {
+        int[] tokenKinds = new int[tokens.size()];
+        for (int i = 0; i < tokenKinds.length; i++) {
+            tokenKinds[i] = kind(tokens.get(i).getId());
+        }
+        return tokenKinds;
+    }
+
+    /**
+     * Finds the phrases reachable from the root of the grammar.
+     * @param grammar Grammar to search.
+     * @return Reachable phrases keyed from their IDs, in the order of the grammar.
+     */
+    private static Map<String, Phrase> reachable(Grammar grammar) {
+        Map<String, Phrase> phrases = grammar.getPhrases();
+        Set<String> reached = new HashSet<>();
+        Deque<Phrase> pending = new ArrayDeque<>();
+        reached.add(grammar.getRoot().getId());
+        pending.push(grammar.getRoot());
+        while (!pending.isEmpty()) {
+            Phrase phrase = pending.pop();
+            List<String> words = new ArrayList<>();
+            phrase.getSentences().forEach(words::addAll);
+            if (phrase.isOperatorPhrase()) {
+                words.add(phrase.getOperand());
+            }
+            for (String word : words) {
+                if (phrases.containsKey(word) && reached.add(word)) {
+                    pending.push(phrases.get(word));
+                }
+            }
+        }
+        Map<String, Phrase> source = new LinkedHashMap<>();
+        for (Phrase phrase : phrases.values()) {
+            if (reached.contains(phrase.getId())) {
+                source.put(phrase.getId(), phrase);
+            }
+        }
+        return source;
+    }
+
+    private int compile(String word, Map<String, Integer> indices) {
+        Integer index = indices.get(word);
+        return index == null ? kinds.get(word) : ~index;
+    }
+
+    /**
+     * Compiles the grammar.
+     * @param grammar Grammar to compile.
+     * @return New compiled grammar.
+     */
+    static CompiledGrammar of(Grammar grammar) {
+        return new CompiledGrammar(grammar);
+    }
+}
@@ -0,0 +1,204 @@
+package dev.houshce29.cc.parse;
+
+import java.util.Arrays;
+
+/**
+ * A phrase pre-linked against the rest of its grammar. Each word of its
+ * sentences is an int: a token kind if not negative, otherwise the bitwise
+ * complement of the index of a phrase within the compiled grammar.
+ */
+final class CompiledPhrase {
+    private final Phrase phrase;
+    private final int index;
+    private final int[][] sentences;
+    private final int operand;
+    private final Phrase.Operator[] operators;
+    // Number of leading words each sentence shares with every sentence before it.
+    private final int[][] sharedPrefixes;
+    private final boolean sharingPrefixes;
+    private final int longestSentence;
+    private final boolean inlined;
+    // Number of words before the commit point of each sentence, or a number past every word if it has none.
+    private final int[] commits;
+
+    /**
+     * Creates a new instance.
+     * @param phrase Phrase being compiled.
+     * @param index Index of the phrase within the compiled grammar.
+     * @param sentences Sentences of compiled words.
+     * @param operand Compiled word of the operands if this is an operator phrase.
+     * @param operators Operators indexed by the kind of their tokens.
+     */
+    CompiledPhrase(Phrase phrase, int index, int[][] sentences, int operand, Phrase.Operator[] operators) {
+        this.phrase = phrase;
+        this.index = index;
+        this.sentences = sentences;
+        this.operand = operand;
+        this.operators = operators;
+        this.commits = new int[sentences.length];
+        for (int i = 0; i < sentences.length; i++) {
+            commits[i] = phrase.getCommit(i) < 0 ? Integer.MAX_VALUE : phrase.getCommit(i);
+        }
+        this.sharedPrefixes = new int[sentences.length][];
+        boolean sharing = false;
+        int longest = 0;
+        for (int i = 0; i < sentences.length; i++) {
+            sharedPrefixes[i] = new int[i];
+            for (int j = 0; j < i; j++) {
+                int shared = 0;
+                while (shared < sentences[i].length && shared < sentences[j].length
+                        && sentences[i][shared] == sentences[j][shared]) {
+                    shared++;
+                }
+                sharedPrefixes[i][j] = shared;
+                sharing |= shared > 0;
+            }
+            longest = Math.max(longest, sentences[i].length);
+        }
+        this.sharingPrefixes = sharing && !phrase.isOperatorPhrase() && !phrase.isRepetition();
+        this.longestSentence = longest;
+        this.inlined = !phrase.isOperatorPhrase() && !phrase.isLazy() && !phrase.isParallel()
+                && sentences.length == 1 && sentences[0].length > 0
+                && Arrays.stream(sentences[0]).noneMatch(CompiledPhrase::isPhrase);
+    }
+
+    /**
+     * @return The phrase that was compiled.
+     */
+    Phrase getPhrase() {
+        return phrase;
+    }
+
+    /**
+     * @return ID of the phrase.
+     */
+    String getId() {
+        return phrase.getId();
+    }
+
+    /**
+     * @return Index of the phrase within the compiled grammar.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Sentences of compiled words.
+     */
+    int[][] getSentences() {
+        return sentences;
+    }
+
+    /**
+     * @return `true` if this is an operator phrase.
+     */
+    boolean isOperatorPhrase() {
+        return phrase.isOperatorPhrase();
+    }
+
+    /**
+     * @return `true` if the sentences of this phrase are tried concurrently.
+     */
+    boolean isParallel() {
+        return phrase.isParallel();
+    }
+
+    /**
+     * @return `true` if the children of the nodes of this phrase are parsed when first read.
+     */
+    boolean isLazy() {
+        return phrase.isLazy();
+    }
+
+    /**
+     * @return `true` if this is a repetition phrase.
+     */
+    boolean isRepetition() {
+        return phrase.isRepetition();
+    }
+
+    /**
+     * @return Number of times the word of this repetition phrase is repeated.
+     */
+    Quantifier getQuantifier() {
+        return phrase.getQuantifier();
+    }
+
+    /**
+     * @return Compiled word repeated by this repetition phrase.
+     */
+    int getRepeated() {
+        return sentences[0][0];
+    }
+
+    /**
+     * @return Compiled word of the operands of this operator phrase.
+     */
+    int getOperand() {
+        return operand;
+    }
+
+    /**
+     * Returns the operator of the given token kind.
+     * @param kind Kind of a token.
+     * @return The operator, or `null` if the token is not an operator of this phrase.
+     */
+    Phrase.Operator getOperator(int kind) {
+        return kind < operators.length ? operators[kind] : null;
+    }
+
+    /**
+     * Returns the number of leading words two sentences have in common. As
+     * parsing a sequence of words is deterministic, a sentence tried after
+     * another need not parse again the part of their common words that matched.
+     * @param sentence Index of a sentence.
+     * @param earlier Index of a sentence before it.
+     * @return Number of leading words in common.
+     */
+    int getSharedPrefix(int sentence, int earlier) {
+        return sharedPrefixes[sentence][earlier];
+    }
+
+    /**
+     * @return `true` if any two sentences of this phrase start with the same word.
+     */
+    boolean isSharingPrefixes() {
+        return sharingPrefixes;
+    }
+
+    /**
+     * @return Number of words in the longest sentence.
+     */
+    int getLongestSentence() {
+        return longestSentence;
+    }
+
+    /**
+     * @param sentence Index of a sentence.
+     * @return Number of words before the commit point of the sentence, or
+     *         {@link Integer#MAX_VALUE} if it has none.
+     */
+    int getCommit(int sentence) {
+        return commits[sentence];
+    }
+
+    /**
+     * Determines if this phrase is parsed in place wherever it is applied,
+     * rather than memoized: it has a single sentence made of tokens only,
+     * which is as cheap to match again as it is to recall. Lazy and parallel
+     * phrases are evaluated as such instead.
+     * @return `true` if this phrase is inlined.
+     */
+    boolean isInlined() {
+        return inlined;
+    }
+
+    /**
+     * @param word Compiled word.
+     * @return `true` if the word refers to a phrase rather than a token kind.
+     */
+    static boolean isPhrase(int word) {
+        return word < 0;
+    }
+}
@@ -0,0 +1,30 @@
+package dev.houshce29.cc.parse;
+
+import java.util.List;
+
+/**
+ * Picks a single derivation where a run of tokens can be parsed into
+ * a phrase in more than one way. This is only consulted by the
+ * {@link ParsingStrategy#GENERAL} parsing strategy.
+ */
+@FunctionalInterface
+public interface Disambiguator {
+
+    /**
+     * Default disambiguator, which mimics ordered choice: the derivation of
+     * the earliest sentence wins, and among derivations of the same sentence,
+     * the one whose later words span the fewest tokens wins (e.g. binary
+     * operators become left-associative).
+     */
+    Disambiguator PREFER_FIRST = alternatives -> alternatives.get(0);
+
+    /**
+     * Chooses one of the alternative derivations of the same phrase over the
+     * same run of tokens. Alternatives are ordered by sentence, then by how
+     * few tokens the later words of the sentence span. The children of each
+     * alternative have already been disambiguated.
+     * @param alternatives Two or more alternative nodes.
+     * @return The chosen node.
+     */
+    SymbolTreeNode choose(List<SymbolTreeNode> alternatives);
+}
@@ -0,0 +1,555 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Parse session that follows every derivation of the tokens at once using
+ * the Earley algorithm, with nullable phrases handled as described by Aycock
+ * and Horspool ("Practical Earley Parsing").
+ * <br />
+ * Recognition builds a chart holding, for each position, every partially
+ * matched sentence ("item") that is consistent with the tokens before it.
+ * The chart doubles as a shared packed parse forest: the derivations of a
+ * phrase over a run of tokens are found from the items that completed it.
+ * The symbol tree is then built from the forest, consulting the parser's
+ * disambiguator wherever more than one derivation exists.
+ */
+final class EarleyParseSession extends ParseSession {
+    // Marks a phrase that could not be built.
+    private static final SymbolTreeNode UNRESOLVED = new SymbolTreeNode("");
+    private final Disambiguator disambiguator;
+    // Sentences of each phrase, by phrase index.
+    private final List<List<Rule>> rulesByPhrase = new ArrayList<>();
+    private final boolean[] nullable;
+    private final List<ChartSet> chart = new ArrayList<>();
+    private final Map<Long, SymbolTreeNode> nodes = new HashMap<>();
+    private final Map<Long, List<GrammarComponent>> prefixes = new HashMap<>();
+    // Depths of the nodes being built.
+    private final Map<Long, Integer> building = new HashMap<>();
+    // Shallowest node being built that the current node cycled back to.
+    private int cycleDepth = Integer.MAX_VALUE;
+    private int slotCount;
+
+    /**
+     * Creates a new instance.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens; unused, as the chart takes its place.
+     */
+    EarleyParseSession(Parser parser, List<Token> tokens, MemoTable memo) {
+        super(parser, tokens, memo);
+        this.disambiguator = parser.getDisambiguator();
+        this.nullable = new boolean[grammar.getPhrases().length];
+        for (CompiledPhrase phrase : grammar.getPhrases()) {
+            List<Rule> phraseRules = new ArrayList<>();
+            for (int[] sentence : phrase.getSentences()) {
+                Rule rule = new Rule(phrase, sentence, slotCount);
+                slotCount += rule.words.length + 1;
+                phraseRules.add(rule);
+            }
+            rulesByPhrase.add(phraseRules);
+            nullable[phrase.getIndex()] = table.isNullable(phrase.getId());
+        }
+    }
+
+    @Override
+    ParseSession fork(MemoTable memo) {
+        throw new UnsupportedOperationException("FATAL: The " + ParsingStrategy.GENERAL
+                + " strategy parses every sentence at once, thus never forks.");
+    }
+
+    @Override
+    SymbolTreeNode parseSentence(CompiledPhrase phrase, int sentence, int start) {
+        throw new UnsupportedOperationException("FATAL: The " + ParsingStrategy.GENERAL
+                + " strategy parses every sentence at once, thus never forks.");
+    }
+
+    @Override
+    SymbolTreeNode parse(CompiledPhrase phrase, int start) {
+        ChartSet initial = set(start);
+        initial.predict(phrase);
+        int end = -1;
+        for (int k = start; k < chart.size(); k++) {
+            process(k);
+            if (chart.get(k).origins(phrase, start).contains(start)) {
+                end = k;
+            }
+        }
+        // The furthest position reached is where no item could scan the next token.
+        report(chart.size() - 1);
+        if (end < 0) {
+            return null;
+        }
+        SymbolTreeNode root = recognizing ? RECOGNIZED : build(new Span(phrase, start, end));
+        position = end;
+        return root;
+    }
+
+    /**
+     * Processes every item of the set at the position, which may add items
+     * to the set itself and to the set at the next position.
+     * @param k Position of the set.
+     */
+    private void process(int k) {
+        ChartSet current = chart.get(k);
+        for (int i = 0; i < current.items.size(); i++) {
+            Item item = current.items.get(i);
+            if (item.dot == item.rule.words.length) {
+                current.complete(item);
+                continue;
+            }
+            int word = item.rule.words[item.dot];
+            CompiledPhrase phrase = find(word);
+            if (phrase != null) {
+                current.await(phrase, item);
+            }
+            else if (matches(word, k)) {
+                set(k + 1).add(item.rule, item.dot + 1, item.origin);
+            }
+        }
+    }
+
+    /**
+     * Builds the node of a phrase over a run of tokens. Every node it may
+     * consist of is resolved beforehand, children first, using a stack on
+     * the heap; this way resolving a node never descends any deeper than
+     * its immediate children, regardless of how deep the tree is.
+     * @param root Phrase and run of tokens of the node.
+     * @return Chosen node, or `null` if the phrase has no finite derivation over the run.
+     */
+    private SymbolTreeNode build(Span root) {
+        Set<Long> discovered = new HashSet<>();
+        Deque<Span> pending = new ArrayDeque<>();
+        discovered.add(root.key);
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Span span = pending.peek();
+            if (span.expanded) {
+                pending.pop();
+                resolve(span.phrase, span.from, span.to);
+                continue;
+            }
+            span.expanded = true;
+            for (Span child : children(span)) {
+                if (discovered.add(child.key)) {
+                    pending.push(child);
+                }
+            }
+        }
+        return resolve(root.phrase, root.from, root.to);
+    }
+
+    /**
+     * @param span Phrase and run of tokens of a node.
+     * @return Every child node of every derivation of the node.
+     */
+    private List<Span> children(Span span) {
+        List<Span> children = new ArrayList<>();
+        for (Rule rule : rulesByPhrase.get(span.phrase.getIndex())) {
+            if (!chart.get(span.to).contains(rule, rule.words.length, span.from)) {
+                continue;
+            }
+            // Walk back through the items of the sentence, one word at a time.
+            Set<Long> visited = new HashSet<>();
+            Deque<int[]> pending = new ArrayDeque<>();
+            pending.push(new int[] { rule.words.length, span.to });
+            while (!pending.isEmpty()) {
+                int[] item = pending.pop();
+                int dot = item[0];
+                int to = item[1];
+                if (dot == 0) {
+                    continue;
+                }
+                CompiledPhrase phrase = find(rule.words[dot - 1]);
+                if (phrase == null) {
+                    if (to > span.from && chart.get(to - 1).contains(rule, dot - 1, span.from)
+                            && visited.add((long) (dot - 1) * (tokens.size() + 1) + to - 1)) {
+                        pending.push(new int[] { dot - 1, to - 1 });
+                    }
+                    continue;
+                }
+                for (int split : chart.get(to).origins(phrase, span.from)) {
+                    if (chart.get(split).contains(rule, dot - 1, span.from)) {
+                        children.add(new Span(phrase, split, to));
+                        if (visited.add((long) (dot - 1) * (tokens.size() + 1) + split)) {
+                            pending.push(new int[] { dot - 1, split });
+                        }
+                    }
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Resolves the node of a phrase over a run of tokens from the forest.
+     * @param phrase The phrase.
+     * @param from Position of the first token of the run.
+     * @param to Position after the last token of the run.
+     * @return Chosen node, or `null` if the phrase has no finite derivation over the run.
+     */
+    private SymbolTreeNode resolve(CompiledPhrase phrase, int from, int to) {
+        String phraseId = phrase.getId();
+        long key = key(phrase, from, to);
+        SymbolTreeNode node = nodes.get(key);
+        if (node != null) {
+            return node == UNRESOLVED ? null : node;
+        }
+        // Derivations that cycle back to a node being built are not finite, thus not alternatives.
+        Integer cycle = building.get(key);
+        if (cycle != null) {
+            cycleDepth = Math.min(cycleDepth, cycle);
+            return null;
+        }
+        int depth = building.size();
+        int outerCycleDepth = cycleDepth;
+        cycleDepth = Integer.MAX_VALUE;
+        building.put(key, depth);
+        List<SymbolTreeNode> alternatives = new ArrayList<>();
+        // Position of the last word of each alternative.
+        List<Integer> splits = new ArrayList<>();
+        for (Rule rule : rulesByPhrase.get(phrase.getIndex())) {
+            int length = rule.words.length;
+            if (!chart.get(to).contains(rule, length, from)) {
+                continue;
+            }
+            if (length == 0) {
+                alternatives.add(new SymbolTreeNode(phraseId));
+                splits.add(from);
+                continue;
+            }
+            // Each way of splitting off the last word is a separate derivation.
+            CompiledPhrase last = find(rule.words[length - 1]);
+            if (last == null) {
+                List<GrammarComponent> prefix = prefix(rule, length - 1, from, to - 1);
+                if (prefix != null) {
+                    alternatives.add(node(phraseId, prefix, tokens.get(to - 1)));
+                    splits.add(to - 1);
+                }
+                continue;
+            }
+            for (int split : chart.get(to).origins(last, from)) {
+                if (!chart.get(split).contains(rule, length - 1, from)) {
+                    continue;
+                }
+                SymbolTreeNode child = resolve(last, split, to);
+                List<GrammarComponent> prefix = child == null ? null : prefix(rule, length - 1, from, split);
+                if (prefix != null) {
+                    alternatives.add(node(phraseId, prefix, child));
+                    splits.add(split);
+                }
+            }
+        }
+        if (phrase.isOperatorPhrase() && !alternatives.isEmpty()) {
+            node = chooseOperation(phrase, alternatives, splits);
+        }
+        else if (!alternatives.isEmpty()) {
+            node = alternatives.size() == 1 ? alternatives.get(0) : disambiguator.choose(alternatives);
+        }
+        if (phrase.isRepetition() && node != null) {
+            node = flatten(node);
+        }
+        building.remove(key);
+        // Only remember the outcome if it did not depend on a node still being built.
+        if (cycleDepth >= depth) {
+            nodes.put(key, node == null ? UNRESOLVED : node);
+            cycleDepth = outerCycleDepth;
+        }
+        else {
+            cycleDepth = Math.min(cycleDepth, outerCycleDepth);
+        }
+        return node;
+    }
+
+    /**
+     * Chooses the derivation of an operator phrase by precedence, in place of
+     * the disambiguator: the sole operand if it spans the whole run, otherwise
+     * the operator that is applied last when the operators are applied in the
+     * same order as the other parsing strategies apply them.
+     * @param phrase Operator phrase.
+     * @param alternatives Alternative nodes, the operand's first.
+     * @param splits Position of the last word of each alternative.
+     * @return Chosen node. A sole operand is not wrapped in a node of the phrase.
+     */
+    private SymbolTreeNode chooseOperation(CompiledPhrase phrase, List<SymbolTreeNode> alternatives,
+                                           List<Integer> splits) {
+        SymbolTreeNode first = alternatives.get(0);
+        if (first.getChildren().size() == 1) {
+            GrammarComponent operand = first.get(0);
+            return operand instanceof SymbolTreeNode ? (SymbolTreeNode) operand : first;
+        }
+        // Splits are the positions of the right operands, thus follow the operators in order.
+        Integer[] order = new Integer[alternatives.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(splits::get));
+        Deque<Integer> applying = new ArrayDeque<>();
+        Phrase.Operator[] operators = new Phrase.Operator[order.length];
+        for (int i = 0; i < order.length; i++) {
+            // Split is the position after the operator token.
+            operators[i] = phrase.getOperator(kind(splits.get(i) - 1));
+        }
+        for (int index : order) {
+            while (!applying.isEmpty() && operators[applying.peek()].bindsBefore(operators[index])) {
+                applying.pop();
+            }
+            applying.push(index);
+        }
+        return alternatives.get(applying.peekLast());
+    }
+
+    /**
+     * Flattens the node of a repetition phrase into a single node holding every
+     * match of its word, like the other strategies build it. The plain equivalent
+     * of the phrase nests the node of the remaining matches in that of the first,
+     * which is already flat, as children are resolved first.
+     * @param node Node of a repetition phrase.
+     * @return Flat node.
+     */
+    private static SymbolTreeNode flatten(SymbolTreeNode node) {
+        List<GrammarComponent> children = node.getChildren();
+        GrammarComponent rest = children.size() == 2 ? children.get(1) : null;
+        if (!(rest instanceof SymbolTreeNode) || !rest.getId().equals(node.getId())) {
+            return node;
+        }
+        SymbolTreeNode flat = new SymbolTreeNode(node.getId());
+        flat.getChildren().add(children.get(0));
+        flat.getChildren().addAll(((SymbolTreeNode) rest).getChildren());
+        return flat;
+    }
+
+    /**
+     * Resolves the children of the first words of a sentence over a run of
+     * tokens. Where there is more than one way, the later words span the
+     * fewest tokens.
+     * @param rule Sentence being resolved.
+     * @param dot Number of words to resolve.
+     * @param from Position of the first token of the run.
+     * @param to Position after the last token of the run.
+     * @return Children of the words, or `null` if the words have no derivation over the run.
+     */
+    private List<GrammarComponent> prefix(Rule rule, int dot, int from, int to) {
+        if (dot == 0) {
+            return from == to ? Collections.emptyList() : null;
+        }
+        long key = ((long) (rule.slot + dot) * (tokens.size() + 1) + from) * (tokens.size() + 1) + to;
+        if (prefixes.containsKey(key)) {
+            return prefixes.get(key);
+        }
+        int outerCycleDepth = cycleDepth;
+        cycleDepth = Integer.MAX_VALUE;
+        List<GrammarComponent> children = null;
+        CompiledPhrase phrase = find(rule.words[dot - 1]);
+        if (phrase == null) {
+            List<GrammarComponent> prefix = to > from && chart.get(to - 1).contains(rule, dot - 1, from)
+                    ? prefix(rule, dot - 1, from, to - 1)
+                    : null;
+            if (prefix != null) {
+                children = append(prefix, tokens.get(to - 1));
+            }
+        }
+        else {
+            for (int split : chart.get(to).origins(phrase, from)) {
+                if (!chart.get(split).contains(rule, dot - 1, from)) {
+                    continue;
+                }
+                SymbolTreeNode child = resolve(phrase, split, to);
+                List<GrammarComponent> prefix = child == null ? null : prefix(rule, dot - 1, from, split);
+                if (prefix != null) {
+                    children = append(prefix, child);
+                    break;
+                }
+            }
+        }
+        if (cycleDepth == Integer.MAX_VALUE) {
+            prefixes.put(key, children);
+        }
+        cycleDepth = Math.min(cycleDepth, outerCycleDepth);
+        return children;
+    }
+
+    /**
+     * @param position Position of a set in the chart.
+     * @return The set, created along with any set before it as needed.
+     */
+    private ChartSet set(int position) {
+        while (chart.size() <= position) {
+            chart.add(new ChartSet(chart.size()));
+        }
+        return chart.get(position);
+    }
+
+    private long key(CompiledPhrase phrase, int from, int to) {
+        return ((long) phrase.getIndex() * (tokens.size() + 1) + from) * (tokens.size() + 1) + to;
+    }
+
+    private static SymbolTreeNode node(String phraseId, List<GrammarComponent> prefix, GrammarComponent last) {
+        SymbolTreeNode node = new SymbolTreeNode(phraseId);
+        node.getChildren().addAll(prefix);
+        node.getChildren().add(last);
+        return node;
+    }
+
+    private static List<GrammarComponent> append(List<GrammarComponent> prefix, GrammarComponent last) {
+        List<GrammarComponent> children = new ArrayList<>(prefix.size() + 1);
+        children.addAll(prefix);
+        children.add(last);
+        return children;
+    }
+
+    /**
+     * A sentence of a phrase. Every position of the dot within every
+     * sentence of the grammar is assigned a unique slot.
+     */
+    private static final class Rule {
+        private final CompiledPhrase phrase;
+        private final int[] words;
+        private final int slot;
+
+        private Rule(CompiledPhrase phrase, int[] words, int slot) {
+            this.phrase = phrase;
+            this.words = words;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * A phrase over a run of tokens, which is a node of the forest.
+     */
+    private final class Span {
+        private final CompiledPhrase phrase;
+        private final int from;
+        private final int to;
+        private final long key;
+        private boolean expanded;
+
+        private Span(CompiledPhrase phrase, int from, int to) {
+            this.phrase = phrase;
+            this.from = from;
+            this.to = to;
+            this.key = key(phrase, from, to);
+        }
+    }
+
+    /**
+     * A sentence matched up to the dot, starting at the origin position.
+     */
+    private static final class Item {
+        private final Rule rule;
+        private final int dot;
+        private final int origin;
+
+        private Item(Rule rule, int dot, int origin) {
+            this.rule = rule;
+            this.dot = dot;
+            this.origin = origin;
+        }
+    }
+
+    /**
+     * Every item that ends at a single position.
+     */
+    private final class ChartSet {
+        private final int position;
+        private final List<Item> items = new ArrayList<>();
+        private final Set<Long> keys = new HashSet<>();
+        // Items waiting on each phrase to complete from this position, by phrase index.
+        private final List<List<Item>> waiting = new ArrayList<>(Collections.nCopies(rulesByPhrase.size(), null));
+        // Origins of each phrase completed at this position, by phrase index.
+        private final List<NavigableSet<Integer>> completed =
+                new ArrayList<>(Collections.nCopies(rulesByPhrase.size(), null));
+        private final BitSet predicted = new BitSet();
+
+        private ChartSet(int position) {
+            this.position = position;
+        }
+
+        private boolean contains(Rule rule, int dot, int origin) {
+            return keys.contains(key(rule, dot, origin));
+        }
+
+        private void add(Rule rule, int dot, int origin) {
+            if (keys.add(key(rule, dot, origin))) {
+                items.add(new Item(rule, dot, origin));
+            }
+        }
+
+        private void predict(CompiledPhrase phrase) {
+            if (!predicted.get(phrase.getIndex())) {
+                predicted.set(phrase.getIndex());
+                for (Rule rule : rulesByPhrase.get(phrase.getIndex())) {
+                    add(rule, 0, position);
+                }
+            }
+        }
+
+        /**
+         * Predicts the phrase after the item's dot. A phrase that can match
+         * nothing is also skipped over right away, since it may already
+         * have completed at this position.
+         */
+        private void await(CompiledPhrase phrase, Item item) {
+            int index = phrase.getIndex();
+            if (waiting.get(index) == null) {
+                waiting.set(index, new ArrayList<>());
+            }
+            waiting.get(index).add(item);
+            predict(phrase);
+            if (nullable[index]) {
+                add(item.rule, item.dot + 1, item.origin);
+            }
+        }
+
+        /**
+         * Advances every item waiting on the completed item's phrase.
+         */
+        private void complete(Item item) {
+            int index = item.rule.phrase.getIndex();
+            if (completed.get(index) == null) {
+                completed.set(index, new TreeSet<>());
+            }
+            completed.get(index).add(item.origin);
+            List<Item> parents = chart.get(item.origin).waiting.get(index);
+            if (parents == null) {
+                return;
+            }
+            for (int i = 0; i < parents.size(); i++) {
+                Item parent = parents.get(i);
+                add(parent.rule, parent.dot + 1, parent.origin);
+            }
+        }
+
+        /**
+         * @param phrase A phrase.
+         * @param from Earliest origin.
+         * @return Origins of the phrase completed at this position, latest first.
+         */
+        private NavigableSet<Integer> origins(CompiledPhrase phrase, int from) {
+            NavigableSet<Integer> origins = completed.get(phrase.getIndex());
+            return origins == null
+                    ? Collections.emptyNavigableSet()
+                    : origins.tailSet(from, true).descendingSet();
+        }
+
+        private long key(Rule rule, int dot, int origin) {
+            return (long) origin * slotCount + rule.slot + dot;
+        }
+    }
+}
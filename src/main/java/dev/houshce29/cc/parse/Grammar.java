@@ -1,7 +1,14 @@
 package dev.houshce29.cc.parse;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents the language's grammar.
@@ -35,6 +42,25 @@ public class Grammar {
         return phrases;
     }
 
+    /**
+     * Analyzes this grammar for defects, left recursion and backtracking.
+     * Every word that is not a phrase is taken to be a token.
+     * @return New analysis of this grammar.
+     */
+    public GrammarAnalysis analyze() {
+        return GrammarAnalysis.of(this, null);
+    }
+
+    /**
+     * Analyzes this grammar for defects, left recursion and backtracking.
+     * @param tokenIds IDs of every token the grammar may use; other words
+     *                 that are not phrases are reported as undefined.
+     * @return New analysis of this grammar.
+     */
+    public GrammarAnalysis analyze(Collection<String> tokenIds) {
+        return GrammarAnalysis.of(this, tokenIds);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder("  __GRAMMAR__ ::= ")
@@ -42,6 +68,10 @@ public class Grammar {
                 .append("\n");
 
         for (Phrase phrase : getPhrases().values()) {
+            // Repetition phrases are implied by their quantified words.
+            if (phrase.isRepetition()) {
+                continue;
+            }
             builder.append(phrase);
         }
 
@@ -89,11 +119,45 @@ public class Grammar {
         }
 
         /**
-         * Builds the grammar.
+         * Builds the grammar, along with the repetition phrase of each
+         * quantified word that is not the ID of a phrase already. Words
+         * given with the {@link Phrase#LITERAL} prefix are never quantified.
          * @return New grammar instance.
+         * @throws IllegalArgumentException If a word matched as is is also
+         *                                  quantified, or is the ID of a phrase.
          */
-        public Grammar build() {
-            return new Grammar(root, phrases);
+        public Grammar build() throws IllegalArgumentException {
+            Set<String> literals = new HashSet<>();
+            phrases.values().forEach(phrase -> literals.addAll(phrase.getLiterals()));
+            for (String literal : literals) {
+                if (phrases.containsKey(literal)) {
+                    throw new IllegalArgumentException("Word " + literal + " is matched as is, but is the ID of a phrase.");
+                }
+            }
+            Map<String, Phrase> built = new HashMap<>(phrases);
+            Deque<Phrase> pending = new ArrayDeque<>(phrases.values());
+            while (!pending.isEmpty()) {
+                Phrase phrase = pending.pop();
+                List<String> words = new ArrayList<>();
+                phrase.getSentences().forEach(words::addAll);
+                if (phrase.isOperatorPhrase()) {
+                    words.add(phrase.getOperand());
+                }
+                for (String word : words) {
+                    Phrase repetition = built.containsKey(word) || phrase.getLiterals().contains(word)
+                            ? null : Phrase.repetition(word);
+                    if (repetition == null) {
+                        continue;
+                    }
+                    if (literals.contains(word)) {
+                        throw new IllegalArgumentException("Word " + word + " of phrase " + phrase.getId()
+                                + " is quantified, but matched as is elsewhere.");
+                    }
+                    built.put(word, repetition);
+                    pending.push(repetition);
+                }
+            }
+            return new Grammar(root, built);
         }
     }
 }
@@ -0,0 +1,241 @@
+package dev.houshce29.cc.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Static analysis of a grammar, reporting defects that never cause a parse
+ * to fail outright but that make it parse differently or slower than intended:
+ * <ul>
+ *     <li>Phrases that cannot be reached from the root.</li>
+ *     <li>Words that are neither phrases nor known tokens.</li>
+ *     <li>Shadowed sentences, which can never match, as an earlier sentence of
+ *         their phrase always matches instead; e.g. a sentence that is a prefix
+ *         of a later one, as sentences are tried in order.</li>
+ * </ul>
+ * It also reports left-recursive phrases and, for each reachable phrase, its
+ * backtracking fan-out: the most sentences that may be tried in turn for any
+ * one lookahead token. Memoization keeps a phrase from being applied more than
+ * once at the same position, so the cost of backtracking grows with the sum of
+ * the fan-outs of the phrases applied, not with their product.
+ */
+public final class GrammarAnalysis {
+    private final Set<String> leftRecursivePhrases;
+    private final boolean mutuallyLeftRecursive;
+    private final Set<String> unreachablePhrases;
+    private final Set<String> undefinedWords;
+    private final Map<String, List<Integer>> shadowedSentences;
+    private final Map<String, Integer> fanOuts;
+
+    /**
+     * Privately creates a new instance.
+     * @param leftRecursivePhrases IDs of the left-recursive phrases.
+     * @param mutuallyLeftRecursive Whether any two phrases are mutually left-recursive.
+     * @param unreachablePhrases IDs of the phrases that cannot be reached from the root.
+     * @param undefinedWords Words that are neither phrases nor known tokens.
+     * @param shadowedSentences Indices of the shadowed sentences, keyed from the IDs of their phrases.
+     * @param fanOuts Backtracking fan-out of each reachable phrase, keyed from its ID.
+     */
+    private GrammarAnalysis(Set<String> leftRecursivePhrases,
+                            boolean mutuallyLeftRecursive,
+                            Set<String> unreachablePhrases,
+                            Set<String> undefinedWords,
+                            Map<String, List<Integer>> shadowedSentences,
+                            Map<String, Integer> fanOuts) {
+        this.leftRecursivePhrases = Collections.unmodifiableSet(leftRecursivePhrases);
+        this.mutuallyLeftRecursive = mutuallyLeftRecursive;
+        this.unreachablePhrases = Collections.unmodifiableSet(unreachablePhrases);
+        this.undefinedWords = Collections.unmodifiableSet(undefinedWords);
+        this.shadowedSentences = Collections.unmodifiableMap(shadowedSentences);
+        this.fanOuts = Collections.unmodifiableMap(fanOuts);
+    }
+
+    /**
+     * @return IDs of the reachable phrases that can be applied again before consuming a token,
+     *         other than operator and repetition phrases, which are parsed in a loop instead.
+     */
+    public Set<String> getLeftRecursivePhrases() {
+        return leftRecursivePhrases;
+    }
+
+    /**
+     * Determines if any two reachable phrases can each be applied before the
+     * other consumes a token. Such grammars are supported, but are never parsed
+     * in segments or reparsed incrementally, and cannot be generated.
+     * @return `true` if the grammar has mutually left-recursive phrases.
+     */
+    public boolean isMutuallyLeftRecursive() {
+        return mutuallyLeftRecursive;
+    }
+
+    /**
+     * @return IDs of the phrases that cannot be reached from the root.
+     */
+    public Set<String> getUnreachablePhrases() {
+        return unreachablePhrases;
+    }
+
+    /**
+     * Returns the words that are neither phrases nor known tokens, e.g. a misspelled
+     * phrase. Words are only checked if the IDs of the tokens were given.
+     * @return Undefined words.
+     */
+    public Set<String> getUndefinedWords() {
+        return undefinedWords;
+    }
+
+    /**
+     * @return Indices of the sentences that can never match, keyed from the IDs of their phrases.
+     */
+    public Map<String, List<Integer>> getShadowedSentences() {
+        return shadowedSentences;
+    }
+
+    /**
+     * @param phraseId ID of a reachable phrase.
+     * @return The most sentences of the phrase that may be tried for any one lookahead token.
+     */
+    public int getFanOut(String phraseId) {
+        Integer fanOut = fanOuts.get(phraseId);
+        if (fanOut == null) {
+            throw new IllegalArgumentException("Phrase " + phraseId + " is not reachable in the grammar.");
+        }
+        return fanOut;
+    }
+
+    /**
+     * @return Backtracking fan-out of each reachable phrase, keyed from its ID.
+     */
+    public Map<String, Integer> getFanOuts() {
+        return fanOuts;
+    }
+
+    /**
+     * @return `true` if there are any unreachable phrases, undefined words or shadowed sentences.
+     */
+    public boolean hasDefects() {
+        return !unreachablePhrases.isEmpty() || !undefinedWords.isEmpty() || !shadowedSentences.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("  __ANALYSIS__\n")
+                .append("  LEFT RECURSIVE: ").append(String.join(" ", leftRecursivePhrases))
+                .append(mutuallyLeftRecursive ? " (MUTUALLY)" : "").append("\n")
+                .append("  UNREACHABLE: ").append(String.join(" ", unreachablePhrases)).append("\n")
+                .append("  UNDEFINED: ").append(String.join(" ", undefinedWords)).append("\n")
+                .append("  SHADOWED:");
+        for (Map.Entry<String, List<Integer>> shadowed : shadowedSentences.entrySet()) {
+            builder.append(" ").append(shadowed.getKey()).append(shadowed.getValue());
+        }
+        builder.append("\n  FAN-OUT:");
+        for (Map.Entry<String, Integer> fanOut : fanOuts.entrySet()) {
+            builder.append(" ").append(fanOut.getKey()).append("=").append(fanOut.getValue());
+        }
+        return builder.append("\n").toString();
+    }
+
+    /**
+     * Analyzes a grammar.
+     * @param grammar Grammar to analyze.
+     * @param tokenIds IDs of every token the grammar may use, or `null` if unknown.
+     * @return New analysis.
+     */
+    static GrammarAnalysis of(Grammar grammar, Collection<String> tokenIds) {
+        CompiledGrammar compiled = CompiledGrammar.of(grammar);
+        ParseTable table = ParseTable.of(compiled);
+        Map<String, Phrase> phrases = grammar.getPhrases();
+
+        Set<String> unreachable = new TreeSet<>(phrases.keySet());
+        unreachable.removeAll(compiled.getSourcePhrases().keySet());
+        // Repetition phrases are implied by their quantified words, thus reachable wherever those are.
+        unreachable.removeIf(id -> phrases.get(id).isRepetition());
+
+        Set<String> undefined = new TreeSet<>();
+        if (tokenIds != null) {
+            for (Phrase phrase : phrases.values()) {
+                for (List<String> sentence : phrase.getSentences()) {
+                    for (String word : sentence) {
+                        if (!phrases.containsKey(word) && !tokenIds.contains(word)) {
+                            undefined.add(word);
+                        }
+                    }
+                }
+            }
+        }
+
+        Set<String> leftRecursive = new TreeSet<>();
+        Map<String, List<Integer>> shadowed = new TreeMap<>();
+        Map<String, Integer> fanOuts = new TreeMap<>();
+        for (Phrase phrase : phrases.values()) {
+            CompiledPhrase compiledPhrase = compiled.get(phrase.getId());
+            // Operator and repetition phrases are parsed in a single loop, rather than by trying their sentences.
+            if (phrase.isOperatorPhrase() || phrase.isRepetition()) {
+                if (compiledPhrase != null) {
+                    fanOuts.put(phrase.getId(), 1);
+                }
+                continue;
+            }
+            List<Integer> indices = shadowed(phrase, compiledPhrase, table);
+            if (!indices.isEmpty()) {
+                shadowed.put(phrase.getId(), indices);
+            }
+            if (compiledPhrase != null) {
+                if (table.isLeftRecursive(phrase.getId())) {
+                    leftRecursive.add(phrase.getId());
+                }
+                int fanOut = 0;
+                for (int kind = 0; kind <= table.getEndColumn(); kind++) {
+                    fanOut = Math.max(fanOut, table.predict(compiledPhrase, kind).length);
+                }
+                fanOuts.put(phrase.getId(), fanOut);
+            }
+        }
+        return new GrammarAnalysis(leftRecursive, table.isMutuallyLeftRecursive(),
+                unreachable, undefined, shadowed, fanOuts);
+    }
+
+    /**
+     * Finds the shadowed sentences of a phrase: those starting with every word of
+     * an earlier sentence, which matches first whenever they would, and those of
+     * reachable phrases that are never a candidate for any lookahead token.
+     * @param phrase Phrase to check.
+     * @param compiledPhrase The phrase compiled, or `null` if it is unreachable.
+     * @param table Parse table of the grammar.
+     * @return Indices of the shadowed sentences, in order.
+     */
+    private static List<Integer> shadowed(Phrase phrase, CompiledPhrase compiledPhrase, ParseTable table) {
+        List<List<String>> sentences = phrase.getSentences();
+        boolean[] candidate = new boolean[sentences.size()];
+        if (compiledPhrase == null) {
+            Arrays.fill(candidate, true);
+        }
+        else {
+            for (int kind = 0; kind <= table.getEndColumn(); kind++) {
+                for (int index : table.predict(compiledPhrase, kind)) {
+                    candidate[index] = true;
+                }
+            }
+        }
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            boolean shadowed = !candidate[i];
+            for (int j = 0; j < i && !shadowed; j++) {
+                List<String> earlier = sentences.get(j);
+                shadowed = earlier.size() <= sentences.get(i).size()
+                        && earlier.equals(sentences.get(i).subList(0, earlier.size()));
+            }
+            if (shadowed) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,749 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Parse session that keeps its phrase applications on a heap-allocated
+ * stack of frames rather than the thread's stack. This produces the exact
+ * same results as the recursive session, but nesting depth is only bounded
+ * by available memory.
+ * <br />
+ * Given a listener, the session streams the tree instead: once a frame and
+ * every frame beneath it are committed to their current sentence, either as
+ * the last candidate or with only phrases that never fail left in it, nothing they parsed can be backtracked out of. Their nodes are then
+ * emitted as events and no longer kept, along with the memoized rows behind them.
+ */
+final class IterativeParseSession extends ParseSession {
+    // Innermost phrase application in progress.
+    private Frame top;
+    // Result of the latest application that resolved without pushing a frame.
+    private SymbolTreeNode resolved;
+    // Listener to stream the tree to, or `null` to build it.
+    private final ParseListener listener;
+    // Whether each phrase, by index, can commit: neither left-recursive nor an operator phrase.
+    private final boolean[] committable;
+    // Whether each phrase, by index, never fails to match.
+    private final boolean[] infallible;
+    // Index of the first word of each sentence, by phrase index, after which every word is a phrase that never fails.
+    private final int[][] nullableSuffixes;
+    // Position before which memoized rows have been released.
+    private int released;
+    // Whether the latest parse was streamed from its root.
+    private boolean streamed;
+
+    /**
+     * Creates a new instance.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens.
+     */
+    IterativeParseSession(Parser parser, List<Token> tokens, MemoTable memo) {
+        this(parser, tokens, memo, null);
+    }
+
+    /**
+     * Creates a new instance that streams the tree to a listener.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens.
+     * @param listener Listener to stream the tree to, or `null` to build it.
+     */
+    IterativeParseSession(Parser parser, List<Token> tokens, MemoTable memo, ParseListener listener) {
+        super(parser, tokens, memo);
+        this.listener = listener;
+        this.committable = new boolean[grammar.getPhrases().length];
+        this.infallible = infallible();
+        this.nullableSuffixes = new int[grammar.getPhrases().length][];
+        for (CompiledPhrase phrase : grammar.getPhrases()) {
+            committable[phrase.getIndex()] = !phrase.isOperatorPhrase() && !table.isLeftRecursive(phrase.getId());
+            int[][] sentences = phrase.getSentences();
+            int[] suffixes = new int[sentences.length];
+            for (int i = 0; i < sentences.length; i++) {
+                int word = sentences[i].length;
+                while (word > 0 && isInfallible(sentences[i][word - 1])) {
+                    word--;
+                }
+                suffixes[i] = word;
+            }
+            nullableSuffixes[phrase.getIndex()] = suffixes;
+        }
+    }
+
+    /**
+     * Creates a new instance that parses the same tokens as another session, building the tree.
+     * @param parent Session to fork from.
+     * @param memo Memo table of the new session.
+     */
+    private IterativeParseSession(IterativeParseSession parent, MemoTable memo) {
+        super(parent, memo);
+        this.listener = null;
+        this.committable = parent.committable;
+        this.infallible = parent.infallible;
+        this.nullableSuffixes = parent.nullableSuffixes;
+    }
+
+    /**
+     * Finds the phrases that never fail to match: those with a sentence made only of such phrases,
+     * which matches without consuming tokens if no sentence before it matches. Left-recursive
+     * phrases are left out even if nullable, as their applications within their own recursion
+     * fail until it is grown, which can fail the phrase as a whole.
+     * @return Whether each phrase, by index, never fails to match.
+     */
+    private boolean[] infallible() {
+        boolean[] phrases = new boolean[grammar.getPhrases().length];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (CompiledPhrase phrase : grammar.getPhrases()) {
+                if (phrases[phrase.getIndex()] || phrase.isOperatorPhrase() || table.isLeftRecursive(phrase.getId())) {
+                    continue;
+                }
+                for (int[] sentence : phrase.getSentences()) {
+                    if (Arrays.stream(sentence).allMatch(word -> CompiledPhrase.isPhrase(word) && phrases[~word])) {
+                        phrases[phrase.getIndex()] = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * @param word Compiled word.
+     * @return `true` if the word is a phrase that never fails to match.
+     */
+    private boolean isInfallible(int word) {
+        return CompiledPhrase.isPhrase(word) && infallible[~word];
+    }
+
+    @Override
+    SymbolTreeNode parse(CompiledPhrase phrase, int start) {
+        streamed = false;
+        if (!apply(phrase, start)) {
+            return resolved;
+        }
+        Frame bottom = top;
+        while (top != null) {
+            step(top);
+        }
+        streamed = bottom.streamed;
+        return bottom.result;
+    }
+
+    @Override
+    protected boolean isLazy(CompiledPhrase phrase, int start) {
+        // Streamed nodes are handed to the listener as they are parsed.
+        return listener == null && super.isLazy(phrase, start);
+    }
+
+    @Override
+    ParseSession fork(MemoTable memo) {
+        return new IterativeParseSession(this, memo);
+    }
+
+    @Override
+    SymbolTreeNode parseSentence(CompiledPhrase phrase, int sentence, int start) {
+        push(new Frame(phrase, start, Mode.SPECULATE, null, new int[] {sentence}));
+        Frame bottom = top;
+        while (top != null) {
+            step(top);
+        }
+        return bottom.result;
+    }
+
+    /**
+     * Emits whatever part of the parsed tree has not been streamed yet,
+     * which happens if its root phrase never committed.
+     * @param root Root node of the successful parse.
+     */
+    void finish(SymbolTreeNode root) {
+        if (!streamed) {
+            emit(root, listener);
+        }
+    }
+
+    /**
+     * Begins applying a phrase at the given position.
+     * @param phrase Phrase to apply.
+     * @param start Position to apply the phrase at.
+     * @return `true` if a frame was pushed to evaluate the phrase; otherwise
+     *         the application was recalled into {@link #resolved}.
+     */
+    private boolean apply(CompiledPhrase phrase, int start) {
+        checkCancelled();
+        if (phrase.isInlined()) {
+            resolved = parseInline(phrase, start);
+            return false;
+        }
+        MemoTable.Entry entry = memo.get(phrase, start);
+        MemoTable.Head head = memo.getHead(start);
+        if (head != null) {
+            // Phrases not involved in the growing recursion may not take part in it;
+            // those unable to reach its head are unaffected by it and evaluated as usual.
+            if (entry == null && !head.involves(phrase) && table.leftReaches(phrase, head.phrase)) {
+                recalled(phrase, start, new MemoTable.Entry((SymbolTreeNode) null));
+                return false;
+            }
+            // Involved phrases are re-evaluated once per growth.
+            if (entry != null && head.reevaluate(phrase)) {
+                Frame frame = new Frame(phrase, start, Mode.RECALL, entry, predict(phrase, start));
+                frame.head = head;
+                push(frame);
+                return true;
+            }
+        }
+        if (entry == null) {
+            MemoTable.LeftRecursion application = new MemoTable.LeftRecursion(phrase, applications);
+            applications = application;
+            entry = new MemoTable.Entry(application);
+            memo.put(phrase, start, entry);
+            openApplication(application, start);
+            if (profile != null) {
+                profile.enter(phrase);
+            }
+            boolean lazy = isLazy(phrase, start);
+            if (lazy || isSpeculative(phrase)) {
+                // Settled right away, as the phrase is not left-recursive.
+                SymbolTreeNode node = lazy ? defer(phrase, start) : speculate(phrase, start);
+                entry.length = position - start;
+                entry.leftRecursion = null;
+                entry.node = node;
+                settleApplication(popApplication(), start, entry);
+                if (profile != null) {
+                    profile.exit();
+                }
+                resolved = node;
+                return false;
+            }
+            push(new Frame(phrase, start, Mode.FRESH, entry, predict(phrase, start)));
+            return true;
+        }
+        recalled(phrase, start, entry);
+        return false;
+    }
+
+    /**
+     * Resolves a memoized application.
+     * @param phrase Phrase being applied.
+     * @param start Position the phrase was applied at.
+     * @param entry Memoized entry of the phrase.
+     */
+    private void recalled(CompiledPhrase phrase, int start, MemoTable.Entry entry) {
+        position = start + entry.length;
+        recallEntry(phrase, start, entry);
+        // Phrase was applied again before its first application finished.
+        if (entry.leftRecursion != null) {
+            resolved = recallLeftRecursion(entry);
+        }
+        else {
+            resolved = entry.node;
+        }
+    }
+
+    /**
+     * Advances the frame's evaluation until it either completes or
+     * needs to apply a sub-phrase that cannot be recalled.
+     * @param frame Frame on top of the stack.
+     */
+    private void step(Frame frame) {
+        if (frame.phrase.isOperatorPhrase()) {
+            stepOperation(frame);
+            return;
+        }
+        if (frame.phrase.isRepetition()) {
+            stepRepetition(frame);
+            return;
+        }
+        int[][] sentences = frame.phrase.getSentences();
+        while (true) {
+            // A speculated sentence is one of several; the phrase reports for the others.
+            boolean reporting = frame.mode != Mode.SPECULATE;
+            if (frame.sentence == frame.candidates.length) {
+                if (reporting) {
+                    report(frame.start, frame.first);
+                }
+                complete(frame, null);
+                return;
+            }
+            int[] sentence = sentences[frame.candidates[frame.sentence]];
+            if (frame.node == null) {
+                if (reporting) {
+                    reportSkipped(frame.candidates[frame.sentence],
+                            frame.sentence == 0 ? -1 : frame.candidates[frame.sentence - 1],
+                            frame.start);
+                }
+                frame.resume(newNode(frame.phrase.getId()));
+                if (profile != null) {
+                    profile.attempted(frame.phrase, frame.candidates[frame.sentence]);
+                }
+            }
+            if (frame.word == sentence.length) {
+                position = frame.depth;
+                complete(frame, frame.node);
+                return;
+            }
+            int word = sentence[frame.word];
+            CompiledPhrase phrase = find(word);
+            if (phrase != null) {
+                if (apply(phrase, frame.depth)) {
+                    return;
+                }
+                accept(frame, resolved);
+            }
+            else if (matches(word, frame.depth)) {
+                append(frame, tokens.get(frame.depth), frame.depth + 1);
+                frame.advance(frame.depth + 1);
+            }
+            else {
+                report(frame.depth);
+                fail(frame);
+            }
+        }
+    }
+
+    /**
+     * Advances the evaluation of an operator phrase, one operand at a time,
+     * until it either completes or needs to apply the operand phrase.
+     * Parsing stops before an operator that is not followed by an operand.
+     * @param frame Frame on top of the stack.
+     */
+    private void stepOperation(Frame frame) {
+        while (true) {
+            int start;
+            if (frame.operation == null) {
+                if (frame.operandFailed) {
+                    complete(frame, null);
+                    return;
+                }
+                start = frame.start;
+            }
+            else {
+                if (frame.operandFailed
+                        || frame.phrase.getOperator(lookahead(frame.depth)) == null) {
+                    report(frame.depth);
+                    position = frame.depth;
+                    complete(frame, frame.operation.finish());
+                    return;
+                }
+                start = frame.depth + 1;
+            }
+            int operand = frame.phrase.getOperand();
+            CompiledPhrase phrase = find(operand);
+            if (phrase != null) {
+                if (apply(phrase, start)) {
+                    return;
+                }
+                acceptOperand(frame, resolved);
+            }
+            else if (matches(operand, start)) {
+                position = start + 1;
+                acceptOperand(frame, tokens.get(start));
+            }
+            else {
+                report(start);
+                acceptOperand(frame, null);
+            }
+        }
+    }
+
+    /**
+     * Advances the evaluation of a repetition phrase, one match of its word at
+     * a time, until it either completes or needs to apply the word's phrase.
+     * Parsing stops where the word fails to match.
+     * @param frame Frame on top of the stack.
+     */
+    private void stepRepetition(Frame frame) {
+        if (frame.node == null) {
+            frame.resume(newNode(frame.phrase.getId()));
+        }
+        while (true) {
+            if (frame.stopped || !repeats(frame.phrase, frame.word, frame.depth)) {
+                if (frame.word < frame.phrase.getQuantifier().getMax()) {
+                    report(frame.depth);
+                }
+                if (frame.word < frame.phrase.getQuantifier().getMin()) {
+                    complete(frame, null);
+                    return;
+                }
+                position = frame.depth;
+                complete(frame, frame.node);
+                return;
+            }
+            int word = frame.phrase.getRepeated();
+            CompiledPhrase phrase = find(word);
+            if (phrase != null) {
+                if (apply(phrase, frame.depth)) {
+                    return;
+                }
+                accept(frame, resolved);
+            }
+            else if (matches(word, frame.depth)) {
+                append(frame, tokens.get(frame.depth), frame.depth + 1);
+                frame.advance(frame.depth + 1);
+            }
+            else {
+                report(frame.depth);
+                frame.stopped = true;
+            }
+        }
+    }
+
+    /**
+     * Accepts an operand into the frame's operator phrase.
+     * @param frame Frame evaluating the operator phrase.
+     * @param operand Node or token of the operand, or `null` if it did not resolve.
+     */
+    private void acceptOperand(Frame frame, GrammarComponent operand) {
+        if (operand == null) {
+            frame.operandFailed = true;
+            return;
+        }
+        if (frame.operation == null) {
+            frame.operation = newOperation(frame.phrase.getId(), operand);
+        }
+        else {
+            frame.operation.push(frame.phrase.getOperator(kind(frame.depth)), tokens.get(frame.depth), operand);
+        }
+        frame.depth = position;
+    }
+
+    /**
+     * Accepts the result of a sub-phrase into the frame's current sentence.
+     * @param frame Frame that applied the sub-phrase.
+     * @param child Resulting node, or `null` if the sub-phrase did not resolve.
+     */
+    private void accept(Frame frame, SymbolTreeNode child) {
+        if (frame.phrase.isOperatorPhrase()) {
+            acceptOperand(frame, child);
+            return;
+        }
+        if (child == null) {
+            if (frame.phrase.isRepetition()) {
+                frame.stopped = true;
+            }
+            else {
+                fail(frame);
+            }
+            return;
+        }
+        append(frame, child, position);
+        frame.advance(position);
+    }
+
+    /**
+     * Moves the frame on to its next candidate sentence, as the current word failed to match.
+     * @param frame Frame whose current word failed to match.
+     * @throws CommitFailure If the sentence was committed to.
+     */
+    private void fail(Frame frame) throws CommitFailure {
+        if (profile != null) {
+            profile.failed(frame.phrase, frame.candidates[frame.sentence], frame.depth - frame.resumed);
+        }
+        checkCommit(frame);
+        frame.nextSentence();
+    }
+
+    /**
+     * Fails the parse outright if the current word of the frame's sentence failed past its commit point.
+     * @param frame Frame whose current word failed to match.
+     * @throws CommitFailure If the sentence was committed to.
+     */
+    private void checkCommit(Frame frame) throws CommitFailure {
+        checkCommit(frame.phrase, frame.candidates[frame.sentence], frame.word, frame.start, frame.depth);
+    }
+
+    /**
+     * Appends a child to the node of the frame's current sentence,
+     * or emits it if the frame is committed and streaming.
+     * @param frame Frame evaluating the sentence.
+     * @param child Node or token to append.
+     * @param end Position after the child's last token.
+     */
+    private void append(Frame frame, GrammarComponent child, int end) {
+        // Children without tokens may be recalled where they start, thus never start streaming.
+        if (listener == null || !frame.streamed && (end == frame.depth || !frame.anchored || !committed(frame, frame.word + 1, end))) {
+            addChild(frame.node, child);
+            return;
+        }
+        stream(frame);
+        emit(child, listener);
+        release(end);
+    }
+
+    /**
+     * Starts streaming the frame and every frame beneath it, emitting what they have parsed so far.
+     * @param frame Committed frame.
+     */
+    private void stream(Frame frame) {
+        Deque<Frame> pending = new ArrayDeque<>();
+        for (Frame next = frame; next != null && !next.streamed; next = next.parent) {
+            pending.push(next);
+        }
+        for (Frame next : pending) {
+            listener.enterPhrase(next.phrase.getId());
+            for (GrammarComponent child : next.node.getChildren()) {
+                emit(child, listener);
+            }
+            next.node.getChildren().clear();
+            next.streamed = true;
+        }
+    }
+
+    /**
+     * Releases the memoized rows and tokens before a position, which committed frames never parse at again.
+     * @param end Position parsing has committed to.
+     */
+    private void release(int end) {
+        memo.release(released, end);
+        releaseTokens(end);
+        released = end;
+    }
+
+    /**
+     * Determines if the frame can no longer backtrack to another sentence or grow, as long as the
+     * words of its current sentence up to the given one match. A failure past the commit
+     * point of the sentence fails the parse outright.
+     * @param frame A frame.
+     * @param word Index of the first word of the current sentence that may still fail to match.
+     * @param depth Position after the words before it.
+     * @return `true` if the frame is committed to its current sentence.
+     */
+    private boolean committed(Frame frame, int word, int depth) {
+        if (!committable[frame.phrase.getIndex()] || frame.mode != Mode.FRESH) {
+            return false;
+        }
+        // A repetition never fails once its word matched, but gives up the match
+        // being parsed, rather than failing as a whole, if that match fails.
+        if (frame.phrase.isRepetition()) {
+            return word > frame.word;
+        }
+        int sentence = frame.candidates[frame.sentence];
+        return frame.sentence == frame.candidates.length - 1
+                || word >= nullableSuffixes[frame.phrase.getIndex()][sentence]
+                || word >= frame.phrase.getCommit(sentence) && depth > frame.start;
+    }
+
+    /**
+     * Completes an evaluation of the frame's phrase, which either resolves
+     * the frame or restarts it to grow a left recursion.
+     * @param frame Frame on top of the stack.
+     * @param node Result of the evaluation, or `null` if no sentence matched.
+     */
+    private void complete(Frame frame, SymbolTreeNode node) {
+        MemoTable.Entry entry = frame.entry;
+        switch (frame.mode) {
+            case FRESH:
+                MemoTable.LeftRecursion application = popApplication();
+                entry.length = position - frame.start;
+                if (application.head == null) {
+                    entry.leftRecursion = null;
+                    entry.node = node;
+                    settleApplication(application, frame.start, entry);
+                    pop(frame, node);
+                    return;
+                }
+                // Phrase turned out to be left-recursive; only the head is grown.
+                application.seed = node;
+                if (application.head.phrase != frame.phrase || node == null) {
+                    if (application.head.phrase == frame.phrase) {
+                        entry.leftRecursion = null;
+                    }
+                    settleApplication(application, frame.start, entry);
+                    pop(frame, node);
+                    return;
+                }
+                entry.leftRecursion = null;
+                entry.node = node;
+                frame.grow(application.head);
+                memo.setHead(frame.start, frame.head);
+                return;
+            case GROW:
+                if (node == null || position <= frame.start + entry.length) {
+                    memo.setHead(frame.start, null);
+                    position = frame.start + entry.length;
+                    settleApplication(frame.head.application, frame.start, entry);
+                    pop(frame, entry.node);
+                    return;
+                }
+                entry.node = node;
+                entry.length = position - frame.start;
+                frame.grow(frame.head);
+                return;
+            case SPECULATE:
+                pop(frame, node);
+                return;
+            default:
+                entry.node = node;
+                entry.leftRecursion = null;
+                entry.length = position - frame.start;
+                recalled(frame.phrase, frame.start, entry);
+                pop(frame, resolved);
+        }
+    }
+
+    /**
+     * Pushes a frame onto the stack.
+     * @param frame Frame to push.
+     */
+    private void push(Frame frame) {
+        if (frame.phrase.isSharingPrefixes()) {
+            frame.depths = new int[frame.phrase.getLongestSentence() + 1];
+        }
+        frame.parent = top;
+        frame.anchored = top == null || top.anchored && committed(top, top.word, top.depth);
+        frame.first = exists(frame.start) ? tokens.get(frame.start) : null;
+        top = frame;
+    }
+
+    /**
+     * Pops the resolved frame off the stack and hands its result to its parent.
+     * @param frame Frame on top of the stack.
+     * @param node Result of the frame.
+     */
+    private void pop(Frame frame, SymbolTreeNode node) {
+        if (profile != null && (frame.mode == Mode.FRESH || frame.mode == Mode.GROW)) {
+            profile.exit();
+        }
+        top = frame.parent;
+        frame.result = node;
+        if (frame.streamed && node != null) {
+            // Already emitted into the parent, which is streaming as well.
+            listener.exitPhrase(frame.phrase.getId());
+            release(position);
+            if (top != null) {
+                top.advance(position);
+            }
+        }
+        else if (top != null) {
+            accept(top, node);
+        }
+    }
+
+    /**
+     * Reason a frame is evaluating its phrase.
+     */
+    private enum Mode {
+        // First application of the phrase at the position.
+        FRESH,
+        // Re-evaluation of a phrase involved in a growing left recursion.
+        RECALL,
+        // Growth of the head of a left recursion.
+        GROW,
+        // Single sentence of a parallel phrase, parsed by a forked session.
+        SPECULATE
+    }
+
+    /**
+     * A phrase application in progress, along with its position in the phrase's candidate sentences.
+     */
+    private static final class Frame {
+        private final CompiledPhrase phrase;
+        private final int start;
+        private final MemoTable.Entry entry;
+        private final int[] candidates;
+        // Token at the start, kept as the tokens before the position committed to are released.
+        private Token first;
+        private Mode mode;
+        private MemoTable.Head head;
+        private Frame parent;
+        // Whether every frame beneath this one is committed, and whether this one's node is being emitted.
+        private boolean anchored;
+        private boolean streamed;
+        private int sentence;
+        private int word;
+        private int depth;
+        private SymbolTreeNode node;
+        private SymbolTreeNode result;
+        private OperatorStack operation;
+        private boolean operandFailed;
+        // Whether the word of a repetition phrase failed to match, ending the repetition.
+        private boolean stopped;
+        // Position after each matched word of the current sentence, if the phrase has sentences sharing words.
+        private int[] depths;
+        // Node and number of matched words of the previous sentence tried.
+        private SymbolTreeNode previous;
+        private int matched;
+        // Position the current sentence resumed at.
+        private int resumed;
+
+        private Frame(CompiledPhrase phrase, int start, Mode mode, MemoTable.Entry entry, int[] candidates) {
+            this.phrase = phrase;
+            this.start = start;
+            this.mode = mode;
+            this.entry = entry;
+            this.candidates = candidates;
+        }
+
+        /**
+         * Moves on to the next candidate sentence of the phrase.
+         */
+        private void nextSentence() {
+            previous = node;
+            matched = word;
+            sentence++;
+            word = 0;
+            node = null;
+        }
+
+        /**
+         * Starts the current sentence, resuming after the words it shares
+         * with the previous sentence tried that matched.
+         * @param node New node of the sentence.
+         */
+        private void resume(SymbolTreeNode node) {
+            this.node = node;
+            depth = start;
+            resumed = start;
+            if (depths == null) {
+                return;
+            }
+            depths[0] = start;
+            if (sentence > 0) {
+                word = Math.min(matched, phrase.getSharedPrefix(candidates[sentence], candidates[sentence - 1]));
+                for (int i = 0; i < word && node != RECOGNIZED; i++) {
+                    node.getChildren().add(previous.getChildren().get(i));
+                }
+                depth = depths[word];
+                resumed = depth;
+            }
+            previous = null;
+        }
+
+        /**
+         * Advances past a matched word of the current sentence.
+         * @param depth Position after the word.
+         */
+        private void advance(int depth) {
+            this.depth = depth;
+            word++;
+            if (depths != null) {
+                depths[word] = depth;
+            }
+        }
+
+        /**
+         * Restarts evaluation to grow the head of a left recursion.
+         * @param head Head being grown.
+         */
+        private void grow(MemoTable.Head head) {
+            this.mode = Mode.GROW;
+            this.head = head;
+            head.eval = (BitSet) head.involved.clone();
+            sentence = 0;
+            word = 0;
+            node = null;
+            operation = null;
+            operandFailed = false;
+            stopped = false;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Children of the node of a lazy phrase, which are parsed from the tokens
+ * the phrase matched the first time they are read. Once parsed, they are
+ * a mutable list like the children of any other node.
+ */
+final class LazyChildren extends AbstractList<GrammarComponent> implements RandomAccess {
+    private final CompiledPhrase phrase;
+    private final int start;
+    private final int end;
+    // Session to fork from to parse the children, released once they are parsed.
+    private ParseSession origin;
+    private volatile List<GrammarComponent> children;
+
+    /**
+     * Creates a new instance.
+     * @param origin Session to fork from to parse the children.
+     * @param phrase Lazy phrase.
+     * @param start Position of the first token the phrase matched.
+     * @param end Position after the last token the phrase matched.
+     */
+    LazyChildren(ParseSession origin, CompiledPhrase phrase, int start, int end) {
+        this.origin = origin;
+        this.phrase = phrase;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return `true` if the children have been parsed.
+     */
+    boolean isMaterialized() {
+        return children != null;
+    }
+
+    @Override
+    public GrammarComponent get(int index) {
+        return materialize().get(index);
+    }
+
+    @Override
+    public int size() {
+        return materialize().size();
+    }
+
+    @Override
+    public GrammarComponent set(int index, GrammarComponent element) {
+        return materialize().set(index, element);
+    }
+
+    @Override
+    public void add(int index, GrammarComponent element) {
+        materialize().add(index, element);
+    }
+
+    @Override
+    public GrammarComponent remove(int index) {
+        return materialize().remove(index);
+    }
+
+    /**
+     * Parses the children, unless already parsed.
+     * @return The children.
+     */
+    List<GrammarComponent> materialize() {
+        List<GrammarComponent> parsed = children;
+        if (parsed != null) {
+            return parsed;
+        }
+        synchronized (this) {
+            if (children == null) {
+                ParseSession session = origin.fork(MemoTable.from(origin.grammar, start));
+                SymbolTreeNode node = session.materialize(phrase, start);
+                if (node == null || session.getPosition() != end) {
+                    throw new UnsupportedOperationException("FATAL: Lazy phrase " + phrase.getId()
+                            + " no longer matches tokens " + start + " to " + end + ".");
+                }
+                children = node.getChildren();
+                origin = null;
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Memoized results of applying phrases at token positions, along with
+ * the bookkeeping required to grow left-recursive phrases from a seed
+ * (see Warth et al., "Packrat Parsers Can Support Left Recursion").
+ * <br />
+ * Entries are kept relative to their position and record how many tokens
+ * their evaluation examined, so that a table can be carried over to the
+ * token list resulting from an edit: entries that never examined an edited
+ * token still hold, and are reused as is (see Dubroy and Warth,
+ * "Incremental Packrat Parsing").
+ */
+final class MemoTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SPECULATIVE_CAPACITY = 64;
+    private final CompiledGrammar grammar;
+    private final int tokenCount;
+    // Rows of entries by position, each indexed by phrase; allocated on first use.
+    private Entry[][] rows;
+    // Most tokens examined by any entry of each row.
+    private int[] reach;
+    // Rows this table may modify; all others are shared with the table it was carried over from.
+    private BitSet owned = new BitSet();
+    private Head[] heads;
+    // Kinds of the tokens, mapped once and carried over to edits; `null` until first needed.
+    private int[] kinds;
+    // Whether the number of tokens is unknown, in which case the rows grow as needed.
+    private boolean growing;
+    // Position of the first row held, and position before which rows were released;
+    // a growing table drops released rows rather than growing past them.
+    private int base;
+    private int released;
+
+    /**
+     * Creates a new instance.
+     * @param grammar Compiled grammar being parsed against.
+     * @param tokenCount Number of tokens being parsed.
+     */
+    MemoTable(CompiledGrammar grammar, int tokenCount) {
+        this.grammar = grammar;
+        this.tokenCount = tokenCount;
+        this.rows = new Entry[tokenCount + 1][];
+        this.reach = new int[tokenCount + 1];
+        this.heads = new Head[tokenCount + 1];
+    }
+
+    /**
+     * Creates a new instance for tokens whose number is not known yet,
+     * e.g. while they are still being lexed. The table grows as it is filled,
+     * and only holds on to rows from the last position released onward.
+     * @param grammar Compiled grammar being parsed against.
+     */
+    MemoTable(CompiledGrammar grammar) {
+        this(grammar, INITIAL_CAPACITY - 1);
+        this.growing = true;
+    }
+
+    /**
+     * Creates a new instance for parsing from a position onward, e.g. by a
+     * forked session. The table grows as it is filled, from that position.
+     * @param grammar Compiled grammar being parsed against.
+     * @param position Position of the first token parsed.
+     * @return New memo table.
+     */
+    static MemoTable from(CompiledGrammar grammar, int position) {
+        MemoTable table = new MemoTable(grammar, SPECULATIVE_CAPACITY - 1);
+        table.growing = true;
+        table.base = position;
+        table.released = position;
+        return table;
+    }
+
+    /**
+     * @return Compiled grammar the entries were parsed against.
+     */
+    CompiledGrammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * @return Number of tokens the entries were parsed from, or -1 if not known.
+     */
+    int getTokenCount() {
+        return growing ? -1 : tokenCount;
+    }
+
+    /**
+     * Returns the memoized entry of the phrase at the given position.
+     * @param phrase Applied phrase.
+     * @param position Position the phrase was applied at.
+     * @return Memoized entry, or `null` if the phrase was never applied there.
+     */
+    Entry get(CompiledPhrase phrase, int position) {
+        int index = position - base;
+        Entry[] row = index >= 0 && index < rows.length ? rows[index] : null;
+        return row == null ? null : row[phrase.getIndex()];
+    }
+
+    /**
+     * Memoizes an entry of the phrase at the given position.
+     * @param phrase Applied phrase.
+     * @param position Position the phrase was applied at.
+     * @param entry Entry to memoize.
+     */
+    void put(CompiledPhrase phrase, int position, Entry entry) {
+        // Released rows are never parsed at again, e.g. when an enclosing application settles.
+        if (position >= base) {
+            row(position)[phrase.getIndex()] = entry;
+        }
+    }
+
+    /**
+     * Records how far the evaluation of an entry examined the tokens.
+     * @param position Position the phrase was applied at.
+     * @param entry Memoized entry of the application.
+     * @param examined Position after the furthest token examined.
+     * @param failed Position of the furthest failure reported, or -1.
+     */
+    void setExamined(int position, Entry entry, int examined, int failed) {
+        entry.examined = examined - position;
+        entry.failure = failed < 0 ? -1 : failed - position;
+        if (position >= base) {
+            ensureCapacity(position);
+            reach[position - base] = Math.max(reach[position - base], entry.examined);
+        }
+    }
+
+    /**
+     * @param position Token position.
+     * @return The left recursion currently growing at the position, or `null`.
+     */
+    Head getHead(int position) {
+        int index = position - base;
+        return index >= 0 && index < heads.length ? heads[index] : null;
+    }
+
+    /**
+     * Marks a left recursion as growing at the position.
+     * @param position Token position.
+     * @param head Growing left recursion; `null` to clear.
+     */
+    void setHead(int position, Head head) {
+        if (position >= base) {
+            ensureCapacity(position);
+            heads[position - base] = head;
+        }
+    }
+
+    /**
+     * Carries the entries over to the token list resulting from an edit.
+     * Entries after the edit are shifted along with their tokens; entries
+     * before it are kept only if they did not examine any edited token. The
+     * same goes for the kinds of the tokens, so only the inserted tokens are
+     * mapped anew. This table is left intact, sharing its rows with the new
+     * one until either modifies them; only references to the rows are copied.
+     * @param edit Edit made to the tokens.
+     * @param tokens Token list after the edit.
+     * @return New table for the edited tokens.
+     */
+    MemoTable edit(TokenEdit edit, List<Token> tokens) {
+        int start = edit.getStart();
+        int end = start + edit.getRemoved();
+        if (end > tokenCount) {
+            throw new IllegalArgumentException("Token edit exceeds the " + tokenCount + " previous tokens.");
+        }
+        MemoTable table = new MemoTable(grammar, tokenCount - edit.getRemoved() + edit.getInserted());
+        int shift = table.tokenCount - tokenCount;
+        System.arraycopy(rows, 0, table.rows, 0, start);
+        System.arraycopy(reach, 0, table.reach, 0, start);
+        System.arraycopy(rows, end, table.rows, end + shift, tokenCount + 1 - end);
+        System.arraycopy(reach, end, table.reach, end + shift, tokenCount + 1 - end);
+        for (int position = 0; position < start; position++) {
+            if (position + reach[position] > start) {
+                table.invalidate(position, start);
+            }
+        }
+        if (kinds != null && tokens.size() == table.tokenCount) {
+            table.kinds = new int[table.tokenCount];
+            System.arraycopy(kinds, 0, table.kinds, 0, start);
+            System.arraycopy(kinds, end, table.kinds, end + shift, tokenCount - end);
+            for (int position = start; position < end + shift; position++) {
+                table.kinds[position] = grammar.kind(tokens.get(position).getId());
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param tokens Tokens of this table.
+     * @return Kinds of the tokens, mapped on first call unless the table grows.
+     */
+    int[] kinds(List<Token> tokens) {
+        if (kinds != null && kinds.length == tokens.size()) {
+            return kinds;
+        }
+        int[] mapped = grammar.kinds(tokens);
+        if (!growing && mapped.length == tokenCount) {
+            kinds = mapped;
+        }
+        return mapped;
+    }
+
+    /**
+     * Takes over the entries of a table parsed from a run of this table's
+     * tokens, keeping only those that did not examine past the end of the run.
+     * @param segment Table of the run of tokens, which is no longer used.
+     * @param offset Position of the first token of the run.
+     */
+    void splice(MemoTable segment, int offset) {
+        int end = offset + segment.tokenCount;
+        System.arraycopy(segment.rows, 0, rows, offset, segment.tokenCount);
+        System.arraycopy(segment.reach, 0, reach, offset, segment.tokenCount);
+        for (int position = offset; position < end; position++) {
+            if (rows[position] != null) {
+                owned.set(position);
+                if (position + reach[position] > end) {
+                    invalidate(position, end);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the rows of positions that will never be parsed at again.
+     * @param from First position to drop.
+     * @param to Position after the last to drop.
+     */
+    void release(int from, int to) {
+        int start = Math.max(from - base, 0);
+        int end = Math.min(to - base, rows.length);
+        if (start < end) {
+            Arrays.fill(rows, start, end, null);
+            owned.clear(start, end);
+        }
+        released = Math.max(released, to);
+    }
+
+    /**
+     * Removes the entries of the row that examined tokens at or after the given position.
+     * @param position Position of the row.
+     * @param limit First position that may not have been examined.
+     */
+    private void invalidate(int position, int limit) {
+        Entry[] row = row(position);
+        int rowReach = 0;
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] != null && position + row[i].examined > limit) {
+                row[i] = null;
+            }
+            else if (row[i] != null) {
+                rowReach = Math.max(rowReach, row[i].examined);
+            }
+        }
+        reach[position - base] = rowReach;
+    }
+
+    /**
+     * @param position Token position.
+     * @return Row of the position, copied first if shared with another table.
+     */
+    private Entry[] row(int position) {
+        ensureCapacity(position);
+        int index = position - base;
+        if (!owned.get(index)) {
+            Entry[] row = rows[index];
+            rows[index] = row == null ? new Entry[grammar.getPhrases().length] : row.clone();
+            owned.set(index);
+        }
+        return rows[index];
+    }
+
+    /**
+     * Makes room for the row of the position, if the number of tokens is not
+     * known. Released rows are dropped first; the rows only grow if that
+     * does not free enough room.
+     * @param position Token position.
+     */
+    private void ensureCapacity(int position) {
+        if (growing && position - base >= rows.length) {
+            int drop = Math.min(Math.max(released - base, 0), rows.length);
+            int needed = position + 1 - base - drop;
+            int capacity = needed > rows.length / 2 ? Math.max(needed, rows.length * 2) : rows.length;
+            rows = Arrays.copyOfRange(rows, drop, drop + capacity);
+            reach = Arrays.copyOfRange(reach, drop, drop + capacity);
+            heads = Arrays.copyOfRange(heads, drop, drop + capacity);
+            owned = owned.get(drop, Math.max(drop, owned.length()));
+            base += drop;
+        }
+    }
+
+    /**
+     * Result of applying a phrase at a position. While the phrase is being
+     * evaluated for the first time, the entry holds its left recursion record
+     * instead of a result so that recursive applications can be detected.
+     */
+    static final class Entry {
+        SymbolTreeNode node;
+        LeftRecursion leftRecursion;
+        // Number of tokens consumed.
+        int length;
+        // Number of tokens examined, and offset of the furthest failure reported (or -1).
+        int examined;
+        int failure = -1;
+
+        Entry(LeftRecursion leftRecursion) {
+            this.leftRecursion = leftRecursion;
+        }
+
+        Entry(SymbolTreeNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * Record of a phrase application in progress. These are chained into a
+     * stack of active applications so that the phrases involved in a left
+     * recursion can be found once it has been detected.
+     */
+    static final class LeftRecursion {
+        final CompiledPhrase phrase;
+        final LeftRecursion next;
+        SymbolTreeNode seed;
+        Head head;
+        // Whether the application is still on the stack.
+        boolean active = true;
+        // Bookkeeping of the enclosing evaluation, restored once settled.
+        int outerExamined;
+        int outerFailed;
+
+        LeftRecursion(CompiledPhrase phrase, LeftRecursion next) {
+            this.phrase = phrase;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Head of a left recursion: the phrase being grown along with all phrases
+     * involved in the recursion, which must be re-evaluated on every growth.
+     */
+    static final class Head {
+        final CompiledPhrase phrase;
+        final LeftRecursion application;
+        // Indices of the involved phrases.
+        final BitSet involved = new BitSet();
+        // Indices of the involved phrases yet to be re-evaluated in the current growth.
+        BitSet eval = new BitSet();
+
+        Head(LeftRecursion application) {
+            this.phrase = application.phrase;
+            this.application = application;
+        }
+
+        /**
+         * @param other A phrase.
+         * @return `true` if the phrase is the head or involved in its recursion.
+         */
+        boolean involves(CompiledPhrase other) {
+            return phrase == other || involved.get(other.getIndex());
+        }
+
+        /**
+         * Marks the phrase as re-evaluated within the current growth.
+         * @param other A phrase.
+         * @return `true` if the phrase was yet to be re-evaluated.
+         */
+        boolean reevaluate(CompiledPhrase other) {
+            boolean pending = eval.get(other.getIndex());
+            eval.clear(other.getIndex());
+            return pending;
+        }
+    }
+}
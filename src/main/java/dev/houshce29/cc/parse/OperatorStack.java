@@ -0,0 +1,88 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Operands and operators of an operator phrase parsed so far. Each
+ * operator is held back until the operator after it is known to bind
+ * looser, at which point it's applied to its operands; thus a node is
+ * only ever created for an operator that is actually applied.
+ */
+class OperatorStack {
+    // Stack for only recognizing an operator phrase, which keeps nothing.
+    static final OperatorStack RECOGNIZING = new OperatorStack("", ParseSession.RECOGNIZED) {
+        @Override
+        void push(Phrase.Operator operator, Token token, GrammarComponent operand) {
+        }
+
+        @Override
+        SymbolTreeNode finish() {
+            return ParseSession.RECOGNIZED;
+        }
+    };
+
+    private final String phraseId;
+    private final Deque<GrammarComponent> operands = new ArrayDeque<>();
+    private final Deque<Phrase.Operator> operators = new ArrayDeque<>();
+    private final Deque<Token> operatorTokens = new ArrayDeque<>();
+
+    /**
+     * Creates a new instance.
+     * @param phraseId ID of the operator phrase being parsed.
+     * @param first First operand.
+     */
+    OperatorStack(String phraseId, GrammarComponent first) {
+        this.phraseId = phraseId;
+        operands.push(first);
+    }
+
+    /**
+     * Pushes an operator along with the operand that follows it.
+     * @param operator The operator.
+     * @param token Token of the operator.
+     * @param operand Operand following the operator.
+     */
+    void push(Phrase.Operator operator, Token token, GrammarComponent operand) {
+        while (!operators.isEmpty() && operators.peek().bindsBefore(operator)) {
+            apply();
+        }
+        operators.push(operator);
+        operatorTokens.push(token);
+        operands.push(operand);
+    }
+
+    /**
+     * Applies every remaining operator.
+     * @return Node of the loosest operator, or of the sole operand.
+     */
+    SymbolTreeNode finish() {
+        while (!operators.isEmpty()) {
+            apply();
+        }
+        GrammarComponent result = operands.pop();
+        if (result instanceof SymbolTreeNode) {
+            return (SymbolTreeNode) result;
+        }
+        // A sole token operand still needs a node to hold it.
+        SymbolTreeNode node = new SymbolTreeNode(phraseId);
+        node.getChildren().add(result);
+        return node;
+    }
+
+    /**
+     * Applies the latest operator to its two operands.
+     */
+    private void apply() {
+        GrammarComponent right = operands.pop();
+        SymbolTreeNode node = new SymbolTreeNode(phraseId);
+        node.getChildren().add(operands.pop());
+        operators.pop();
+        node.getChildren().add(operatorTokens.pop());
+        node.getChildren().add(right);
+        operands.push(node);
+    }
+}
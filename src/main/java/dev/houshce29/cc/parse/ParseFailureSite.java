@@ -0,0 +1,103 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.SimpleToken;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.List;
+
+/**
+ * Holder that contains a token that failed the parse phase.
+ * This will track the latest failure in terms of "token-depth";
+ * that is, the token furthest in the token list that caused a
+ * failure. If the tokens otherwise parse but some are left over,
+ * the first token left over is the one that failed instead.
+ */
+public final class ParseFailureSite {
+    private static final Token NOTHING = new SimpleToken("", 1);
+    private final List<Token> tokens;
+    private int position = -1;
+    private Token token;
+    private boolean unexpected;
+
+    /**
+     * Creates a new instance from the token list.
+     * @param tokens Token list being parsed.
+     */
+    ParseFailureSite(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return The approximate failing token.
+     */
+    public Token getFailureToken() {
+        if (position < 0) {
+            return tokens.isEmpty() ? NOTHING : tokens.get(0);
+        }
+        return token;
+    }
+
+    /**
+     * @return Position of the failing token in the token list,
+     *         or -1 if the token list is empty.
+     */
+    public int getPosition() {
+        if (position < 0) {
+            return tokens.isEmpty() ? -1 : 0;
+        }
+        return position;
+    }
+
+    /**
+     * @return Message describing the failure.
+     */
+    public String getMessage() {
+        Token token = getFailureToken();
+        return (unexpected ? "Unexpected token '" : "Syntax error near token '")
+                + token.getValue() + "' on line " + token.getLineNumber() + ".";
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+
+    /**
+     * @return Position of the furthest failure reported, or -1 if none was.
+     */
+    int getReportedPosition() {
+        return position;
+    }
+
+    /**
+     * Reports an approximate failure site.
+     * @param position Position of the token failing parse, which must exist.
+     */
+    void report(int position) {
+        if (position > this.position) {
+            report(position, tokens.get(position));
+        }
+    }
+
+    /**
+     * Reports an approximate failure site, along with the token there.
+     * @param position Position of the token failing parse.
+     * @param token Token at the position.
+     */
+    void report(int position, Token token) {
+        if (position > this.position) {
+            this.position = position;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Blames the failure on a token left over after the tokens before it parsed.
+     * @param position Position of the first token left over.
+     */
+    void reportUnexpected(int position) {
+        this.position = position;
+        this.token = tokens.get(position);
+        this.unexpected = true;
+    }
+}
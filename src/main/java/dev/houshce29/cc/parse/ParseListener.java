@@ -0,0 +1,30 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+/**
+ * Receives the parse of a token list as a stream of events in document
+ * order, rather than as a symbol tree (see {@link Parser#parse(java.util.List, ParseListener)}).
+ * Each phrase node is announced by an enter event, followed by the events
+ * of its children and a matching exit event.
+ */
+public interface ParseListener {
+
+    /**
+     * Called as a phrase node begins.
+     * @param phraseId ID of the phrase.
+     */
+    void enterPhrase(String phraseId);
+
+    /**
+     * Called as a phrase node ends.
+     * @param phraseId ID of the phrase.
+     */
+    void exitPhrase(String phraseId);
+
+    /**
+     * Called for each token in the symbol tree.
+     * @param token The token.
+     */
+    void token(Token token);
+}
@@ -0,0 +1,369 @@
+package dev.houshce29.cc.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile of the work done by a parser, gathered over every parse made
+ * while the profile is attached to it (see {@link Parser.Builder#profile(ParseProfile)}).
+ * For each phrase, it records how often the phrase was applied and recalled
+ * from memo, the deepest nesting of applications it was applied at, and the
+ * time spent evaluating it, excluding the phrases it applied. For each of its
+ * sentences, it records how often the sentence was attempted and failed, and
+ * the tokens it consumed before failing, which are parsed again by the next
+ * sentence tried.
+ * <br />
+ * Only the {@link ParsingStrategy#RECURSIVE} and {@link ParsingStrategy#ITERATIVE}
+ * strategies are profiled, and both record the same counts. A profile may be
+ * shared by parsers and parses on several threads. The sentences of parallel
+ * phrases are counted as parsed by their forked sessions, including the work
+ * of those cancelled. A lazy phrase is applied again by the forked session that
+ * recognizes it, and again whenever the children of one of its nodes are parsed.
+ */
+public final class ParseProfile {
+    private final Map<String, Counts> counts = new LinkedHashMap<>();
+
+    /**
+     * @return Profile of each phrase applied so far, sorted by descending time.
+     */
+    public synchronized List<PhraseProfile> getPhrases() {
+        List<PhraseProfile> phrases = new ArrayList<>();
+        for (Map.Entry<String, Counts> entry : counts.entrySet()) {
+            phrases.add(new PhraseProfile(entry.getKey(), entry.getValue()));
+        }
+        phrases.sort(Comparator.comparingLong(PhraseProfile::getNanos).reversed()
+                .thenComparing(PhraseProfile::getPhraseId));
+        return phrases;
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return Profile of the phrase, or `null` if it was never applied.
+     */
+    public synchronized PhraseProfile get(String phraseId) {
+        Counts phrase = counts.get(phraseId);
+        return phrase == null ? null : new PhraseProfile(phraseId, phrase);
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public synchronized void clear() {
+        counts.clear();
+    }
+
+    /**
+     * Reports the profile of each phrase and its sentences, costliest phrase first.
+     * @return The report.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("  __PROFILE__\n");
+        for (PhraseProfile phrase : getPhrases()) {
+            builder.append("  ").append(phrase.getPhraseId())
+                    .append(": applied ").append(phrase.getApplications())
+                    .append(", recalled ").append(phrase.getRecalls())
+                    .append(", depth ").append(phrase.getMaxDepth())
+                    .append(", ").append(phrase.getTime(TimeUnit.MICROSECONDS)).append("us\n");
+            for (int i = 0; i < phrase.getSentenceCount(); i++) {
+                builder.append("    #").append(i)
+                        .append(": attempted ").append(phrase.getAttempts(i))
+                        .append(", failed ").append(phrase.getFailures(i))
+                        .append(", wasted ").append(phrase.getWastedTokens(i)).append(" tokens\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Adds what a session recorded to this profile.
+     * @param recorder Recorder of the session.
+     */
+    private synchronized void add(Recorder recorder) {
+        for (CompiledPhrase phrase : recorder.grammar.getPhrases()) {
+            int index = phrase.getIndex();
+            if (recorder.applications[index] == 0 && recorder.recalls[index] == 0) {
+                continue;
+            }
+            int sentences = recorder.attempts[index].length;
+            Counts phraseCounts = counts.computeIfAbsent(phrase.getId(), id -> new Counts(sentences));
+            phraseCounts.applications += recorder.applications[index];
+            phraseCounts.recalls += recorder.recalls[index];
+            phraseCounts.maxDepth = Math.max(phraseCounts.maxDepth, recorder.maxDepths[index]);
+            phraseCounts.nanos += recorder.nanos[index];
+            for (int i = 0; i < sentences && i < phraseCounts.attempts.length; i++) {
+                phraseCounts.attempts[i] += recorder.attempts[index][i];
+                phraseCounts.failures[i] += recorder.failures[index][i];
+                phraseCounts.wasted[i] += recorder.wasted[index][i];
+            }
+        }
+    }
+
+    /**
+     * Profile of a single phrase, as of when it was taken.
+     */
+    public static final class PhraseProfile {
+        private final String phraseId;
+        private final long applications;
+        private final long recalls;
+        private final int maxDepth;
+        private final long nanos;
+        private final long[] attempts;
+        private final long[] failures;
+        private final long[] wasted;
+
+        private PhraseProfile(String phraseId, Counts counts) {
+            this.phraseId = phraseId;
+            this.applications = counts.applications;
+            this.recalls = counts.recalls;
+            this.maxDepth = counts.maxDepth;
+            this.nanos = counts.nanos;
+            this.attempts = counts.attempts.clone();
+            this.failures = counts.failures.clone();
+            this.wasted = counts.wasted.clone();
+        }
+
+        /**
+         * @return ID of the phrase.
+         */
+        public String getPhraseId() {
+            return phraseId;
+        }
+
+        /**
+         * @return Number of times the phrase was evaluated, rather than recalled.
+         */
+        public long getApplications() {
+            return applications;
+        }
+
+        /**
+         * @return Number of times the phrase was recalled from memo.
+         */
+        public long getRecalls() {
+            return recalls;
+        }
+
+        /**
+         * @return Most applications in progress, including its own, when the phrase was applied.
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @return Nanoseconds spent evaluating the phrase, excluding the phrases it applied.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @param unit Unit of the time.
+         * @return Time spent evaluating the phrase, excluding the phrases it applied.
+         */
+        public long getTime(TimeUnit unit) {
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return Number of sentences of the phrase; operator and repetition phrases have none.
+         */
+        public int getSentenceCount() {
+            return attempts.length;
+        }
+
+        /**
+         * @param sentence Index of a sentence.
+         * @return Number of times the sentence was attempted.
+         */
+        public long getAttempts(int sentence) {
+            return attempts[sentence];
+        }
+
+        /**
+         * @param sentence Index of a sentence.
+         * @return Number of times the sentence matched.
+         */
+        public long getSuccesses(int sentence) {
+            return attempts[sentence] - failures[sentence];
+        }
+
+        /**
+         * @param sentence Index of a sentence.
+         * @return Number of times the sentence failed to match.
+         */
+        public long getFailures(int sentence) {
+            return failures[sentence];
+        }
+
+        /**
+         * @param sentence Index of a sentence.
+         * @return Number of tokens the sentence consumed before failing, over every failure.
+         */
+        public long getWastedTokens(int sentence) {
+            return wasted[sentence];
+        }
+
+        /**
+         * @return Number of times any sentence of the phrase failed, moving on to the next.
+         */
+        public long getBacktracks() {
+            return Arrays.stream(failures).sum();
+        }
+
+        /**
+         * @return Number of tokens consumed by every sentence of the phrase before failing.
+         */
+        public long getWastedTokens() {
+            return Arrays.stream(wasted).sum();
+        }
+
+        @Override
+        public String toString() {
+            return phraseId + ": applied " + applications + ", backtracked " + getBacktracks()
+                    + ", wasted " + getWastedTokens() + " tokens";
+        }
+    }
+
+    /**
+     * Counts of a phrase gathered so far.
+     */
+    private static final class Counts {
+        private long applications;
+        private long recalls;
+        private int maxDepth;
+        private long nanos;
+        private final long[] attempts;
+        private final long[] failures;
+        private final long[] wasted;
+
+        private Counts(int sentences) {
+            this.attempts = new long[sentences];
+            this.failures = new long[sentences];
+            this.wasted = new long[sentences];
+        }
+    }
+
+    /**
+     * Records the work of a single parse session, without synchronizing,
+     * until it is added to the profile.
+     */
+    static final class Recorder {
+        private final ParseProfile owner;
+        private final CompiledGrammar grammar;
+        private final long[] applications;
+        private final long[] recalls;
+        private final int[] maxDepths;
+        private final long[] nanos;
+        private final long[][] attempts;
+        private final long[][] failures;
+        private final long[][] wasted;
+        // Phrases being evaluated, when each started, and the time spent in the phrases they applied.
+        private int[] stack = new int[16];
+        private long[] started = new long[16];
+        private long[] nested = new long[16];
+        private int depth;
+
+        /**
+         * Creates a new instance.
+         * @param owner Profile to add the recorded work to.
+         * @param grammar Grammar being parsed against.
+         */
+        Recorder(ParseProfile owner, CompiledGrammar grammar) {
+            CompiledPhrase[] phrases = grammar.getPhrases();
+            this.owner = owner;
+            this.grammar = grammar;
+            this.applications = new long[phrases.length];
+            this.recalls = new long[phrases.length];
+            this.maxDepths = new int[phrases.length];
+            this.nanos = new long[phrases.length];
+            this.attempts = new long[phrases.length][];
+            this.failures = new long[phrases.length][];
+            this.wasted = new long[phrases.length][];
+            for (CompiledPhrase phrase : phrases) {
+                int sentences = phrase.isOperatorPhrase() || phrase.isRepetition() ? 0 : phrase.getSentences().length;
+                attempts[phrase.getIndex()] = new long[sentences];
+                failures[phrase.getIndex()] = new long[sentences];
+                wasted[phrase.getIndex()] = new long[sentences];
+            }
+        }
+
+        /**
+         * @return New recorder for a session forked from the one of this recorder.
+         */
+        Recorder fork() {
+            return new Recorder(owner, grammar);
+        }
+
+        /**
+         * Adds the recorded work to the profile. Applications left unfinished,
+         * e.g. by a failure past a commit point, end here.
+         */
+        void record() {
+            while (depth > 0) {
+                exit();
+            }
+            owner.add(this);
+        }
+
+        /**
+         * Begins the evaluation of a phrase application.
+         * @param phrase Applied phrase.
+         */
+        void enter(CompiledPhrase phrase) {
+            int index = phrase.getIndex();
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+                started = Arrays.copyOf(started, depth * 2);
+                nested = Arrays.copyOf(nested, depth * 2);
+            }
+            stack[depth] = index;
+            nested[depth] = 0;
+            started[depth++] = System.nanoTime();
+            applications[index]++;
+            maxDepths[index] = Math.max(maxDepths[index], depth);
+        }
+
+        /**
+         * Ends the evaluation of the latest phrase application begun.
+         */
+        void exit() {
+            long elapsed = System.nanoTime() - started[--depth];
+            nanos[stack[depth]] += elapsed - nested[depth];
+            if (depth > 0) {
+                nested[depth - 1] += elapsed;
+            }
+        }
+
+        /**
+         * @param phrase Phrase recalled from memo.
+         */
+        void recalled(CompiledPhrase phrase) {
+            recalls[phrase.getIndex()]++;
+        }
+
+        /**
+         * @param phrase Phrase being evaluated.
+         * @param sentence Index of the sentence attempted.
+         */
+        void attempted(CompiledPhrase phrase, int sentence) {
+            attempts[phrase.getIndex()][sentence]++;
+        }
+
+        /**
+         * @param phrase Phrase being evaluated.
+         * @param sentence Index of the sentence that failed.
+         * @param consumed Number of tokens the attempt consumed before failing.
+         */
+        void failed(CompiledPhrase phrase, int sentence, int consumed) {
+            failures[phrase.getIndex()][sentence]++;
+            wasted[phrase.getIndex()][sentence] += consumed;
+        }
+    }
+}
@@ -0,0 +1,766 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+import dev.houshce29.cc.lex.TokenPipe;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State of a single parse. Every phrase application is memoized by
+ * its position, which keeps backtracking linear and allows
+ * left-recursive phrases to be grown from a seed.
+ * <br />
+ * Each application also records how many tokens it examined and the
+ * furthest failure within it, so that its entry can be reused by a later
+ * parse of edited tokens.
+ * <br />
+ * The candidate sentences of a parallel phrase are each parsed by a forked
+ * session on the parser's pool. Forked sessions share the tokens but memoize
+ * on their own, and those of sentences after the first that matched are
+ * cancelled; the outcome is the same as trying the sentences in order.
+ * <br />
+ * A lazy phrase is only recognized, by a forked session whose memo is then
+ * discarded. Its node parses its children in another forked session when
+ * they are first read.
+ */
+abstract class ParseSession {
+    // Shared result of every successful application while only recognizing.
+    static final SymbolTreeNode RECOGNIZED = new SymbolTreeNode("");
+    protected final CompiledGrammar grammar;
+    protected final ParseTable table;
+    protected final List<Token> tokens;
+    // Kind of each token within the compiled grammar, as far as known, from the position of the first.
+    private int[] kinds;
+    private int kindsBase;
+    // Number of tokens whose kinds are known, and position before which tokens were released.
+    private int known;
+    private int released;
+    // Tokens still being lexed or pulled, or both `null` if every token is known.
+    private final TokenPipe pipe;
+    private final TokenWindow window;
+    protected final MemoTable memo;
+    protected final ParseFailureSite site;
+    // Records the work of the parse, or `null` if the parser is not profiled.
+    protected final ParseProfile.Recorder profile;
+    // Pool to try the sentences of parallel phrases on.
+    private final ForkJoinPool pool;
+    // Race this session takes part in if forked, and its place in it; `null` otherwise.
+    private Race race;
+    private int slot;
+    // Session the nodes of lazy phrases fork from to parse their children, or `null` until needed.
+    private ParseSession origin;
+    // Lazy phrase whose children are being parsed, and where; it is evaluated in full there.
+    private CompiledPhrase materializing;
+    private int materializingStart;
+    // End position of the latest successful application.
+    protected int position;
+    // Stack of phrase applications in progress.
+    protected MemoTable.LeftRecursion applications;
+    // Whether the tokens are only recognized, without building nodes.
+    protected boolean recognizing;
+    // Position after the furthest token examined by the current evaluation.
+    private int examined;
+    // Furthest failure reported by the current evaluation before the end of the tokens, or -1.
+    private int failed = -1;
+
+    /**
+     * Creates a new instance.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens, which may hold entries of a previous parse.
+     */
+    ParseSession(Parser parser, List<Token> tokens, MemoTable memo) {
+        this.grammar = parser.getCompiledGrammar();
+        this.table = parser.getTable();
+        this.tokens = tokens;
+        // Tokens still being lexed or pulled are mapped to their kinds as the parse reaches them.
+        this.pipe = tokens instanceof TokenPipe ? (TokenPipe) tokens : null;
+        this.window = tokens instanceof TokenWindow ? (TokenWindow) tokens : null;
+        this.kinds = pipe == null && window == null ? memo.kinds(tokens) : new int[0];
+        this.known = kinds.length;
+        this.memo = memo;
+        this.site = new ParseFailureSite(tokens);
+        this.profile = parser.getProfile() == null ? null : new ParseProfile.Recorder(parser.getProfile(), grammar);
+        this.pool = parser.getPool();
+    }
+
+    /**
+     * Creates a new instance that parses the same tokens as another session, from another thread.
+     * @param parent Session to fork from, whose tokens are all known.
+     * @param memo Memo table of the new session.
+     */
+    ParseSession(ParseSession parent, MemoTable memo) {
+        this.grammar = parent.grammar;
+        this.table = parent.table;
+        this.tokens = parent.tokens;
+        this.pipe = null;
+        this.window = null;
+        this.kinds = parent.kinds;
+        this.known = parent.known;
+        this.memo = memo;
+        this.site = new ParseFailureSite(tokens);
+        this.profile = parent.profile == null ? null : parent.profile.fork();
+        this.pool = parent.pool;
+        this.recognizing = parent.recognizing;
+    }
+
+    /**
+     * Parses tokens within the constraint of a given phrase.
+     * @param phrase Phrase to parse against.
+     * @param start Position of the first token to parse.
+     * @return Tree node if parsing against the phrase resolves, otherwise `null`.
+     *         Upon success, the end position is available from {@link #getPosition()}.
+     */
+    abstract SymbolTreeNode parse(CompiledPhrase phrase, int start);
+
+    /**
+     * Creates a session of the same strategy that parses the same tokens as this one.
+     * @param memo Memo table of the new session.
+     * @return New session.
+     */
+    abstract ParseSession fork(MemoTable memo);
+
+    /**
+     * Parses tokens within the constraint of a single sentence of a phrase.
+     * @param phrase Phrase that owns the sentence.
+     * @param sentence Index of the sentence.
+     * @param start Position of the first token to parse.
+     * @return Tree node if parsing against the sentence resolves, otherwise `null`.
+     *         Upon success, the end position is available from {@link #getPosition()}.
+     */
+    abstract SymbolTreeNode parseSentence(CompiledPhrase phrase, int sentence, int start);
+
+    /**
+     * Makes the session only recognize the tokens: every successful application
+     * results in the same {@link #RECOGNIZED} node, and no other node is built.
+     * @return This session.
+     */
+    ParseSession recognize() {
+        this.recognizing = true;
+        return this;
+    }
+
+    /**
+     * @return End position of the latest successful parse.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Site of the furthest failure encountered.
+     */
+    ParseFailureSite getFailureSite() {
+        return site;
+    }
+
+    /**
+     * Adds the work of the parse to the parser's profile, if it is profiled.
+     */
+    void recordProfile() {
+        if (profile != null) {
+            profile.record();
+        }
+    }
+
+    /**
+     * Finds the phrase a word refers to.
+     * @param word Compiled word.
+     * @return The phrase, or `null` if the word is a token kind.
+     */
+    protected CompiledPhrase find(int word) {
+        return CompiledPhrase.isPhrase(word) ? grammar.phrase(word) : null;
+    }
+
+    /**
+     * @param phraseId ID of the phrase being parsed.
+     * @return New node of the phrase, or the shared node if only recognizing.
+     */
+    protected SymbolTreeNode newNode(String phraseId) {
+        return recognizing ? RECOGNIZED : new SymbolTreeNode(phraseId);
+    }
+
+    /**
+     * Adds a child to a node, unless only recognizing.
+     * @param node Node of the sentence being parsed.
+     * @param child Node or token of the child.
+     */
+    protected void addChild(SymbolTreeNode node, GrammarComponent child) {
+        if (!recognizing) {
+            node.getChildren().add(child);
+        }
+    }
+
+    /**
+     * @param phraseId ID of the operator phrase being parsed.
+     * @param first First operand.
+     * @return New stack of the operators parsed, or a shared one that keeps nothing if only recognizing.
+     */
+    protected OperatorStack newOperation(String phraseId, GrammarComponent first) {
+        return recognizing ? OperatorStack.RECOGNIZING : new OperatorStack(phraseId, first);
+    }
+
+    /**
+     * Parses an inlined phrase in place, without memoizing it.
+     * @param phrase Inlined phrase.
+     * @param start Position of the first token to parse.
+     * @return Tree node if the phrase resolves, otherwise `null`.
+     */
+    protected SymbolTreeNode parseInline(CompiledPhrase phrase, int start) {
+        int[] sentence = phrase.getSentences()[0];
+        SymbolTreeNode node = newNode(phrase.getId());
+        if (profile != null) {
+            profile.enter(phrase);
+            profile.attempted(phrase, 0);
+        }
+        for (int i = 0; i < sentence.length; i++) {
+            if (!matches(sentence[i], start + i)) {
+                report(start + i);
+                if (profile != null) {
+                    profile.failed(phrase, 0, i);
+                    profile.exit();
+                }
+                checkCommit(phrase, 0, i, start, start + i);
+                report(start);
+                return null;
+            }
+            addChild(node, tokens.get(start + i));
+        }
+        if (profile != null) {
+            profile.exit();
+        }
+        position = start + sentence.length;
+        return node;
+    }
+
+    /**
+     * Fails the parse outright if a word of a sentence failed to match past the
+     * commit point of the sentence, unless nothing was consumed before it. Such a
+     * failure may only be part of growing a left recursion, whose growth ends
+     * with a failing sentence; thus the commit points of left-recursive phrases
+     * are ignored.
+     * @param phrase Phrase being parsed.
+     * @param sentence Index of the sentence being parsed.
+     * @param word Index of the word that failed to match.
+     * @param start Position of the first token of the sentence.
+     * @param depth Position the word failed to match at.
+     * @throws CommitFailure If the sentence was committed to.
+     */
+    protected void checkCommit(CompiledPhrase phrase, int sentence, int word, int start, int depth)
+            throws CommitFailure {
+        if (word >= phrase.getCommit(sentence) && depth > start && !table.isLeftRecursive(phrase.getId())) {
+            throw new CommitFailure();
+        }
+    }
+
+    /**
+     * Determines if the candidate sentences of a phrase are tried concurrently. Left-recursive
+     * phrases are not, as their applications depend on the recursion being grown around them,
+     * nor are any phrases of mutually left-recursive grammars, whose entries depend on what was
+     * parsed before them, nor are the phrases of tokens still being lexed or pulled, which are
+     * read by a single thread.
+     * @param phrase Phrase being applied.
+     * @return `true` if the phrase is evaluated by {@link #speculate(CompiledPhrase, int)}.
+     */
+    protected boolean isSpeculative(CompiledPhrase phrase) {
+        return phrase.isParallel() && pipe == null && window == null
+                && !table.isLeftRecursive(phrase.getId()) && !table.isMutuallyLeftRecursive();
+    }
+
+    /**
+     * Evaluates a parallel phrase by parsing each of its candidate sentences in a forked
+     * session. The first sentence in order that matches is kept, and the sessions of the
+     * sentences after it are cancelled. The failures reported by the sentences before it,
+     * and the tokens they examined, are accounted for as though they were tried in turn.
+     * @param phrase Phrase to evaluate.
+     * @param start Position of the first token to parse.
+     * @return Node of the first matching sentence, otherwise `null`.
+     * @throws CommitFailure If a sentence tried before any matched failed past its commit point.
+     */
+    protected SymbolTreeNode speculate(CompiledPhrase phrase, int start) throws CommitFailure {
+        int[] candidates = predict(phrase, start);
+        Race race = new Race(this.race, slot);
+        List<ForkJoinTask<Outcome>> attempts = new ArrayList<>(candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            ParseSession session = fork(MemoTable.from(grammar, start));
+            session.race = race;
+            session.slot = i;
+            int sentence = candidates[i];
+            attempts.add(ForkJoinTask.adapt(() -> session.attempt(phrase, sentence, start)));
+        }
+        // The first candidate is parsed on this thread, while the others may be stolen.
+        for (int i = candidates.length - 1; i > 0; i--) {
+            if (ForkJoinTask.getPool() == pool) {
+                attempts.get(i).fork();
+            }
+            else {
+                pool.execute(attempts.get(i));
+            }
+        }
+        int previous = -1;
+        for (int i = 0; i < candidates.length; i++) {
+            Outcome outcome = i == 0 ? attempts.get(i).invoke() : attempts.get(i).join();
+            reportSkipped(candidates[i], previous, start);
+            examined = Math.max(examined, outcome.examined);
+            if (outcome.failed >= 0) {
+                report(outcome.failed);
+            }
+            if (outcome.node != null || outcome.committed) {
+                for (int j = i + 1; j < candidates.length; j++) {
+                    attempts.get(j).cancel(false);
+                }
+                if (outcome.committed) {
+                    throw new CommitFailure();
+                }
+                position = outcome.position;
+                return outcome.node;
+            }
+            previous = candidates[i];
+        }
+        report(start);
+        return null;
+    }
+
+    /**
+     * Parses a candidate sentence of a parallel phrase within this forked session.
+     * @param phrase Phrase being evaluated.
+     * @param sentence Index of the sentence.
+     * @param start Position of the first token to parse.
+     * @return Outcome of the sentence.
+     * @throws Cancellation If a sentence before it has matched.
+     */
+    private Outcome attempt(CompiledPhrase phrase, int sentence, int start) throws Cancellation {
+        try {
+            SymbolTreeNode node = parseSentence(phrase, sentence, start);
+            if (node != null) {
+                race.finish(slot);
+            }
+            return new Outcome(node, position, examined, failed, false);
+        }
+        catch (CommitFailure failure) {
+            // The applications left open never settled their failures; the site holds the furthest.
+            race.finish(slot);
+            return new Outcome(null, position, examined, site.getReportedPosition(), true);
+        }
+        finally {
+            recordProfile();
+        }
+    }
+
+    /**
+     * Determines if a phrase is only recognized, leaving its children to be parsed when first read.
+     * Left-recursive phrases are not, nor any phrases of mutually left-recursive grammars, as their
+     * applications depend on what was parsed around them, nor the phrases of tokens still being lexed
+     * or pulled, which may be released by then.
+     * @param phrase Phrase being applied.
+     * @param start Position the phrase is applied at.
+     * @return `true` if the phrase is evaluated by {@link #defer(CompiledPhrase, int)}.
+     */
+    protected boolean isLazy(CompiledPhrase phrase, int start) {
+        return phrase.isLazy() && !recognizing && pipe == null && window == null
+                && !table.isLeftRecursive(phrase.getId()) && !table.isMutuallyLeftRecursive()
+                && (phrase != materializing || start != materializingStart);
+    }
+
+    /**
+     * Evaluates a lazy phrase by recognizing it in a forked session. The failures it
+     * reported, and the tokens it examined, are accounted for as though it was parsed
+     * in this session.
+     * @param phrase Phrase to evaluate.
+     * @param start Position of the first token to parse.
+     * @return Node of the phrase whose children are parsed when first read, otherwise `null`.
+     * @throws CommitFailure If a sentence failed past its commit point.
+     */
+    protected SymbolTreeNode defer(CompiledPhrase phrase, int start) throws CommitFailure {
+        ParseSession session = fork(MemoTable.from(grammar, start));
+        session.recognizing = true;
+        session.race = race;
+        session.slot = slot;
+        try {
+            if (session.parse(phrase, start) == null) {
+                report(session.failed);
+                return null;
+            }
+        }
+        catch (CommitFailure failure) {
+            report(session.site.getReportedPosition());
+            throw failure;
+        }
+        finally {
+            examined = Math.max(examined, session.examined);
+            session.recordProfile();
+        }
+        report(session.failed);
+        position = session.position;
+        if (origin == null) {
+            origin = fork(null);
+        }
+        return new SymbolTreeNode(phrase.getId(), new LazyChildren(origin, phrase, start, position));
+    }
+
+    /**
+     * Parses the children of the node of a lazy phrase within this forked session.
+     * @param phrase Lazy phrase.
+     * @param start Position the phrase matched at.
+     * @return Node of the phrase, otherwise `null`.
+     */
+    SymbolTreeNode materialize(CompiledPhrase phrase, int start) {
+        materializing = phrase;
+        materializingStart = start;
+        try {
+            return parse(phrase, start);
+        }
+        finally {
+            recordProfile();
+        }
+    }
+
+    /**
+     * Stops a forked session once a sentence tried before its own has matched,
+     * or before that of any session it was forked from.
+     * @throws Cancellation If the session is cancelled.
+     */
+    protected void checkCancelled() throws Cancellation {
+        if (race != null && race.isCancelled(slot)) {
+            throw new Cancellation();
+        }
+    }
+
+    /**
+     * Begins the first application of a phrase at a position, which lasts
+     * until it is settled, including the growth of any left recursion.
+     * @param application Record of the application.
+     * @param start Position the phrase is applied at.
+     */
+    protected void openApplication(MemoTable.LeftRecursion application, int start) {
+        application.outerExamined = examined;
+        application.outerFailed = failed;
+        examined = start;
+        failed = -1;
+    }
+
+    /**
+     * Settles the first application of a phrase, recording how far
+     * it examined the tokens into its memoized entry.
+     * @param application Record of the application.
+     * @param start Position the phrase was applied at.
+     * @param entry Memoized entry of the application.
+     */
+    protected void settleApplication(MemoTable.LeftRecursion application, int start, MemoTable.Entry entry) {
+        memo.setExamined(start, entry, examined, failed);
+        examined = Math.max(examined, application.outerExamined);
+        failed = Math.max(failed, application.outerFailed);
+    }
+
+    /**
+     * Accounts for the memoized entry of a phrase in the current evaluation,
+     * as though the phrase had been evaluated again.
+     * @param phrase Phrase being applied.
+     * @param start Position the phrase was applied at.
+     * @param entry Memoized entry of the application.
+     */
+    protected void recallEntry(CompiledPhrase phrase, int start, MemoTable.Entry entry) {
+        if (profile != null) {
+            profile.recalled(phrase);
+        }
+        examined = Math.max(examined, start + entry.examined);
+        if (entry.failure >= 0) {
+            report(start + entry.failure);
+        }
+    }
+
+    /**
+     * Pops the innermost application off the stack of applications in progress.
+     * @return Record of the popped application.
+     */
+    protected MemoTable.LeftRecursion popApplication() {
+        MemoTable.LeftRecursion application = applications;
+        application.active = false;
+        applications = application.next;
+        return application;
+    }
+
+    /**
+     * Reports failures of the sentences skipped by prediction before the given
+     * candidate. Any skipped sentence would have failed on the first token, so
+     * this keeps the reported failure site the same as trying every sentence.
+     * @param candidate Index of the candidate sentence about to be tried.
+     * @param previous Index of the previously tried candidate, or -1.
+     * @param start Position the phrase is applied at.
+     */
+    protected void reportSkipped(int candidate, int previous, int start) {
+        if (candidate != previous + 1) {
+            report(start);
+        }
+    }
+
+    /**
+     * Reports a failure at the given position.
+     * @param position Position of the token failing parse.
+     */
+    protected void report(int position) {
+        // Disregard failures at the end of the token list, as there is no token to blame.
+        if (exists(position)) {
+            failed = Math.max(failed, position);
+            site.report(position);
+        }
+    }
+
+    /**
+     * Reports a failure at the given position, blaming a token kept from
+     * there, as it may have been released since.
+     * @param position Position of the token failing parse.
+     * @param token Token at the position, or `null` if past the last token.
+     */
+    protected void report(int position, Token token) {
+        if (token != null) {
+            failed = Math.max(failed, position);
+            site.report(position, token);
+        }
+    }
+
+    /**
+     * Returns the sentences of the phrase that can match at the given position.
+     * @param phrase Phrase being parsed.
+     * @param position Position of the lookahead token.
+     * @return Indices of candidate sentences, in order.
+     */
+    protected int[] predict(CompiledPhrase phrase, int position) {
+        examined = Math.max(examined, position + 1);
+        return table.predict(phrase, exists(position) ? kind(position) : table.getEndColumn());
+    }
+
+    /**
+     * @param depth Position of a token.
+     * @return Kind of the token, or the unknown kind past the last token.
+     */
+    protected int lookahead(int depth) {
+        examined = Math.max(examined, depth + 1);
+        return exists(depth) ? kind(depth) : grammar.getUnknownKind();
+    }
+
+    /**
+     * @param depth Position of a token known to exist.
+     * @return Kind of the token.
+     */
+    protected int kind(int depth) {
+        return kinds[depth - kindsBase];
+    }
+
+    /**
+     * Determines if a repetition phrase tries its word once more: only if it has
+     * not reached the most times the word may match, and the word can match the
+     * lookahead token, as predicted for the repeating sentence of its plain equivalent.
+     * @param phrase Repetition phrase being parsed.
+     * @param count Number of times the word matched so far.
+     * @param depth Position of the lookahead token.
+     * @return `true` if the word is tried again.
+     */
+    protected boolean repeats(CompiledPhrase phrase, int count, int depth) {
+        if (count == phrase.getQuantifier().getMax()) {
+            return false;
+        }
+        int[] candidates = predict(phrase, depth);
+        return candidates.length > 0 && candidates[0] == 0;
+    }
+
+    /**
+     * Determines if there is a token at the given position, waiting for it
+     * to be lexed or pulling it if need be.
+     * @param depth Position of a token.
+     * @return `true` if the token exists, in which case its kind is known.
+     */
+    protected boolean exists(int depth) {
+        if (depth < known) {
+            return true;
+        }
+        if (pipe != null ? !pipe.await(depth) : window == null || !window.fill(depth)) {
+            return false;
+        }
+        // Map every token available so far, rather than waiting for each.
+        int available = pipe != null ? pipe.published() : window.pulled();
+        if (available - kindsBase > kinds.length) {
+            // Drop the kinds of released tokens first, growing only if that does not free enough room.
+            int drop = Math.min(released, known) - kindsBase;
+            int needed = available - kindsBase - drop;
+            int capacity = needed > kinds.length / 2 ? Math.max(needed, kinds.length * 2) : kinds.length;
+            kinds = Arrays.copyOfRange(kinds, drop, drop + capacity);
+            kindsBase += drop;
+        }
+        for (; known < available; known++) {
+            kinds[known - kindsBase] = grammar.kind(tokens.get(known).getId());
+        }
+        return true;
+    }
+
+    /**
+     * Releases the tokens before a position, which are never parsed again.
+     * Tokens pulled from a source are dropped, along with their kinds.
+     * @param end Position parsing has committed to.
+     */
+    protected void releaseTokens(int end) {
+        released = Math.max(released, end);
+        if (window != null) {
+            window.release(released);
+        }
+    }
+
+    /**
+     * Determines if the token at the given position is of the given kind.
+     * @param kind Expected token kind.
+     * @param depth Position of the token.
+     * @return `true` if the token exists and is of the kind.
+     */
+    protected boolean matches(int kind, int depth) {
+        return lookahead(depth) == kind;
+    }
+
+    /**
+     * Recalls an application of a phrase whose memoized entry still holds
+     * its left recursion record, which happens when the phrase is applied
+     * again before its first application finished.
+     * @param entry Memoized entry holding the record.
+     * @return The seed of the application.
+     */
+    protected SymbolTreeNode recallLeftRecursion(MemoTable.Entry entry) {
+        MemoTable.LeftRecursion recursion = entry.leftRecursion;
+        // Phrases involved in a recursion that has since been grown keep their seed.
+        if (recursion.head != null && !recursion.head.application.active) {
+            entry.leftRecursion = null;
+            entry.node = recursion.seed;
+        }
+        else {
+            setupLeftRecursion(recursion);
+        }
+        return recursion.seed;
+    }
+
+    /**
+     * Emits the events of a parsed component and all of its descendants.
+     * @param component Node or token.
+     * @param listener Listener to emit to.
+     */
+    static void emit(GrammarComponent component, ParseListener listener) {
+        // A node is exited once its ID, pushed beneath its children, is popped.
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(component);
+        while (!pending.isEmpty()) {
+            Object next = pending.pop();
+            if (next instanceof Token) {
+                listener.token((Token) next);
+            }
+            else if (next instanceof String) {
+                listener.exitPhrase((String) next);
+            }
+            else {
+                SymbolTreeNode node = (SymbolTreeNode) next;
+                listener.enterPhrase(node.getId());
+                pending.push(node.getId());
+                List<GrammarComponent> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks every application above the recursive one as involved in the recursion.
+     * @param recursion Record of the recursive phrase's first application.
+     */
+    private void setupLeftRecursion(MemoTable.LeftRecursion recursion) {
+        if (recursion.head == null) {
+            recursion.head = new MemoTable.Head(recursion);
+        }
+        MemoTable.Head head = recursion.head;
+        MemoTable.LeftRecursion application = applications;
+        // Overlapping recursions at the same position may have claimed records
+        // below this one, so also stop at the head's own application.
+        while (application != null && application != head.application && application.head != head) {
+            application.head = head;
+            head.involved.set(application.phrase.getIndex());
+            application = application.next;
+        }
+    }
+
+    /**
+     * Sentences of a parallel phrase being parsed concurrently, which the first in order to match wins.
+     */
+    private static final class Race {
+        private final Race parent;
+        private final int parentSlot;
+        // Place of the first sentence known to have matched or failed the parse outright.
+        private final AtomicInteger winner = new AtomicInteger(Integer.MAX_VALUE);
+
+        private Race(Race parent, int parentSlot) {
+            this.parent = parent;
+            this.parentSlot = parentSlot;
+        }
+
+        /**
+         * Ends the race for every sentence after the given one.
+         * @param slot Place of a sentence that matched or failed the parse outright.
+         */
+        private void finish(int slot) {
+            winner.accumulateAndGet(slot, Math::min);
+        }
+
+        /**
+         * @param slot Place of a sentence.
+         * @return `true` if the outcome of the sentence no longer matters.
+         */
+        private boolean isCancelled(int slot) {
+            return winner.get() < slot || parent != null && parent.isCancelled(parentSlot);
+        }
+    }
+
+    /**
+     * Outcome of a candidate sentence of a parallel phrase, as parsed by a forked session.
+     */
+    private static final class Outcome {
+        private final SymbolTreeNode node;
+        private final int position;
+        private final int examined;
+        private final int failed;
+        private final boolean committed;
+
+        private Outcome(SymbolTreeNode node, int position, int examined, int failed, boolean committed) {
+            this.node = node;
+            this.position = position;
+            this.examined = examined;
+            this.failed = failed;
+            this.committed = committed;
+        }
+    }
+
+    /**
+     * Thrown within a forked session whose outcome no longer matters.
+     */
+    static final class Cancellation extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Cancellation() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Thrown when a sentence fails past its commit point, which fails the
+     * parse outright. The failure is already reported to the failure site.
+     */
+    static final class CommitFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private CommitFailure() {
+            super(null, null, false, false);
+        }
+    }
+}
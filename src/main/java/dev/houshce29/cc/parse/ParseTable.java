@@ -0,0 +1,486 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Predictive parse table computed from a grammar. This holds the
+ * classic FIRST and FOLLOW sets of each phrase, and, for each phrase
+ * and lookahead token, the sentences that can possibly match.
+ * <br />
+ * A sentence is only a candidate for a lookahead token that is in its FIRST
+ * set, so sentences that cannot start with the token are never tried. Since
+ * sentences are tried in order, a sentence that can match nothing will always
+ * match, thus sentences after it are never candidates. Left-recursive phrases
+ * are the exception: their recursive sentences are always candidates, as is
+ * every sentence following a sentence that can match nothing, since these
+ * take part in growing the recursion from its seed.
+ * <br />
+ * A phrase is predictive (LL(1)) when every lookahead token selects at most
+ * one sentence; such phrases are parsed without any backtracking. All other
+ * phrases, including left-recursive ones, try their candidates in order.
+ */
+final class ParseTable {
+    private final CompiledGrammar grammar;
+    private final Set<String> nullable;
+    private final Map<String, BitSet> first;
+    private final Map<String, BitSet> follow;
+    private final Map<String, BitSet[]> sentenceFirst;
+    private final Map<String, BitSet> nullableSentences;
+    private final Set<String> leftRecursive;
+    private final boolean mutuallyLeftRecursive;
+    // Indices of the phrases each phrase can apply before consuming a token, by phrase index.
+    private final BitSet[] leftReachable;
+    private final Set<String> predictive;
+    private final int[][][] predictions;
+
+    /**
+     * Privately creates a new instance.
+     * @param analysis Completed analysis of the grammar.
+     */
+    private ParseTable(Analysis analysis) {
+        this.grammar = analysis.grammar;
+        this.nullable = analysis.nullable;
+        this.first = analysis.first;
+        this.follow = analysis.follow;
+        this.sentenceFirst = analysis.sentenceFirst;
+        this.nullableSentences = analysis.nullableSentences;
+        this.leftRecursive = analysis.leftRecursive;
+        this.mutuallyLeftRecursive = analysis.mutuallyLeftRecursive;
+        this.leftReachable = analysis.leftReachable;
+        this.predictive = analysis.predictive;
+        this.predictions = analysis.predictions;
+    }
+
+    /**
+     * Returns the sentences of the phrase that can match at the given position.
+     * @param phrase Phrase being parsed.
+     * @param kinds Kinds of the tokens being parsed.
+     * @param position Position of the lookahead token.
+     * @return Indices of candidate sentences, in order.
+     */
+    int[] predict(CompiledPhrase phrase, int[] kinds, int position) {
+        return predict(phrase, position < kinds.length ? kinds[position] : getEndColumn());
+    }
+
+    /**
+     * Returns the sentences of the phrase that can match the given lookahead.
+     * @param phrase Phrase being parsed.
+     * @param kind Kind of the lookahead token, or the end column past the last token.
+     * @return Indices of candidate sentences, in order.
+     */
+    int[] predict(CompiledPhrase phrase, int kind) {
+        return predictions[phrase.getIndex()][kind];
+    }
+
+    /**
+     * Returns the sentences of the phrase that can match at the given position.
+     * @param phrase Phrase being parsed.
+     * @param tokens Tokens being parsed.
+     * @param position Position of the lookahead token.
+     * @return Indices of candidate sentences, in order.
+     */
+    int[] predict(Phrase phrase, List<Token> tokens, int position) {
+        return predict(grammar.get(phrase.getId()), grammar.kinds(tokens), position);
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return `true` if the phrase is parsed without backtracking.
+     */
+    boolean isPredictive(String phraseId) {
+        return predictive.contains(phraseId);
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return `true` if the phrase can match without consuming tokens.
+     */
+    boolean isNullable(String phraseId) {
+        return nullable.contains(phraseId);
+    }
+
+    /**
+     * Checks that every word repeated more than once by a repetition phrase
+     * consumes a token when it matches, as it would otherwise match forever.
+     * @throws IllegalArgumentException If a repeated word can match without consuming tokens.
+     */
+    void checkRepetitions() throws IllegalArgumentException {
+        for (CompiledPhrase phrase : grammar.getPhrases()) {
+            String repeated = phrase.getPhrase().getRepeated();
+            if (phrase.isRepetition() && phrase.getQuantifier().getMax() > 1 && isNullable(repeated)) {
+                throw new IllegalArgumentException("Repeated word " + repeated + " of phrase "
+                        + phrase.getId() + " can match without consuming tokens.");
+            }
+        }
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return `true` if the phrase can be applied again before consuming a token.
+     */
+    boolean isLeftRecursive(String phraseId) {
+        return leftRecursive.contains(phraseId);
+    }
+
+    /**
+     * Determines if any two phrases can each be applied before the other consumes
+     * a token. The result of such phrases depends on which of them is applied first
+     * at a position, thus on the parse surrounding them.
+     * @return `true` if the grammar has mutually left-recursive phrases.
+     */
+    boolean isMutuallyLeftRecursive() {
+        return mutuallyLeftRecursive;
+    }
+
+    /**
+     * @param phrase A phrase.
+     * @param other Another phrase.
+     * @return `true` if the phrase can apply the other before consuming a token.
+     */
+    boolean leftReaches(CompiledPhrase phrase, CompiledPhrase other) {
+        return leftReachable[phrase.getIndex()].get(other.getIndex());
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return Columns of the tokens that can start the phrase.
+     */
+    BitSet getFirst(String phraseId) {
+        return first.get(phraseId);
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @param sentence Index of a sentence of the phrase.
+     * @return Columns of the tokens that can start the sentence.
+     */
+    BitSet getFirst(String phraseId, int sentence) {
+        return sentenceFirst.get(phraseId)[sentence];
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @param sentence Index of a sentence of the phrase.
+     * @return `true` if the sentence can match without consuming tokens.
+     */
+    boolean isNullable(String phraseId, int sentence) {
+        return nullableSentences.get(phraseId).get(sentence);
+    }
+
+    /**
+     * @param phraseId ID of a phrase.
+     * @return Columns of the tokens that can follow the phrase; the
+     *         end column signifies the end of the token list.
+     */
+    BitSet getFollow(String phraseId) {
+        return follow.get(phraseId);
+    }
+
+    /**
+     * Returns the column of a token, which is the token's kind.
+     * @param tokenId ID of a token.
+     * @return Column of the token, or the end column if not used by the grammar.
+     */
+    int column(String tokenId) {
+        return grammar.kind(tokenId);
+    }
+
+    /**
+     * @return Column representing the end of the token list or any token unused by the grammar.
+     */
+    int getEndColumn() {
+        return grammar.getUnknownKind();
+    }
+
+    /**
+     * Computes the parse table of the grammar.
+     * @param grammar Grammar to compute from.
+     * @return New parse table.
+     */
+    static ParseTable of(Grammar grammar) {
+        return of(CompiledGrammar.of(grammar));
+    }
+
+    /**
+     * Computes the parse table of the compiled grammar.
+     * @param grammar Compiled grammar to compute from.
+     * @return New parse table.
+     */
+    static ParseTable of(CompiledGrammar grammar) {
+        return new ParseTable(new Analysis(grammar));
+    }
+
+    /**
+     * Fixed-point computation of the table's sets.
+     */
+    private static final class Analysis {
+        private final CompiledGrammar grammar;
+        private final Map<String, Phrase> phrases;
+        private final Map<String, Integer> terminals;
+        private final Set<String> nullable = new HashSet<>();
+        private final Map<String, BitSet> first = new HashMap<>();
+        private final Map<String, BitSet> follow = new HashMap<>();
+        private final Map<String, BitSet[]> sentenceFirst = new HashMap<>();
+        private final Map<String, BitSet> nullableSentences = new HashMap<>();
+        private final Set<String> leftRecursive = new HashSet<>();
+        private boolean mutuallyLeftRecursive;
+        private final BitSet[] leftReachable;
+        private final Set<String> predictive = new HashSet<>();
+        private final int[][][] predictions;
+
+        private Analysis(CompiledGrammar grammar) {
+            this.grammar = grammar;
+            this.phrases = grammar.getSourcePhrases();
+            this.terminals = grammar.getKinds();
+            this.predictions = new int[grammar.getPhrases().length][][];
+            this.leftReachable = new BitSet[grammar.getPhrases().length];
+            for (Phrase phrase : phrases.values()) {
+                first.put(phrase.getId(), new BitSet());
+                follow.put(phrase.getId(), new BitSet());
+            }
+            computeNullable();
+            computeFirst();
+            follow.get(grammar.getGrammar().getRoot().getId()).set(terminals.size());
+            computeFollow();
+            computeLeftRecursive();
+            for (CompiledPhrase phrase : grammar.getPhrases()) {
+                computeSentences(phrase.getPhrase());
+                predictions[phrase.getIndex()] = predictions(phrase.getPhrase());
+            }
+        }
+
+        private void computeNullable() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Phrase phrase : phrases.values()) {
+                    if (nullable.contains(phrase.getId())) {
+                        continue;
+                    }
+                    for (List<String> sentence : phrase.getSentences()) {
+                        if (isNullable(sentence, 0)) {
+                            nullable.add(phrase.getId());
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void computeFirst() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Phrase phrase : phrases.values()) {
+                    BitSet phraseFirst = first.get(phrase.getId());
+                    int before = phraseFirst.cardinality();
+                    for (List<String> sentence : phrase.getSentences()) {
+                        phraseFirst.or(first(sentence, 0));
+                    }
+                    changed |= phraseFirst.cardinality() != before;
+                }
+            }
+        }
+
+        private void computeFollow() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Phrase phrase : phrases.values()) {
+                    for (List<String> sentence : phrase.getSentences()) {
+                        for (int i = 0; i < sentence.size(); i++) {
+                            BitSet wordFollow = follow.get(sentence.get(i));
+                            if (wordFollow == null) {
+                                continue;
+                            }
+                            int before = wordFollow.cardinality();
+                            wordFollow.or(first(sentence, i + 1));
+                            if (isNullable(sentence, i + 1)) {
+                                wordFollow.or(follow.get(phrase.getId()));
+                            }
+                            changed |= wordFollow.cardinality() != before;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void computeLeftRecursive() {
+            Map<String, Set<String>> reachable = new HashMap<>();
+            for (String id : phrases.keySet()) {
+                reachable.put(id, leftReachable(id));
+                if (reachable.get(id).contains(id)) {
+                    leftRecursive.add(id);
+                }
+            }
+            for (String id : leftRecursive) {
+                for (String other : reachable.get(id)) {
+                    mutuallyLeftRecursive |= !other.equals(id) && reachable.get(other).contains(id);
+                }
+            }
+            for (CompiledPhrase phrase : grammar.getPhrases()) {
+                BitSet indices = new BitSet();
+                for (String other : reachable.get(phrase.getId())) {
+                    indices.set(grammar.get(other).getIndex());
+                }
+                leftReachable[phrase.getIndex()] = indices;
+            }
+        }
+
+        /**
+         * @param id ID of a phrase.
+         * @return All phrases that can be applied before the phrase consumes a token.
+         */
+        private Set<String> leftReachable(String id) {
+            Set<String> reached = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.push(id);
+            while (!pending.isEmpty()) {
+                for (List<String> sentence : phrases.get(pending.pop()).getSentences()) {
+                    for (String word : sentence) {
+                        if (!phrases.containsKey(word)) {
+                            break;
+                        }
+                        if (reached.add(word)) {
+                            pending.push(word);
+                        }
+                        if (!nullable.contains(word)) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private void computeSentences(Phrase phrase) {
+            List<List<String>> sentences = phrase.getSentences();
+            BitSet[] firsts = new BitSet[sentences.size()];
+            BitSet nullables = new BitSet();
+            for (int i = 0; i < firsts.length; i++) {
+                firsts[i] = first(sentences.get(i), 0);
+                nullables.set(i, isNullable(sentences.get(i), 0));
+            }
+            sentenceFirst.put(phrase.getId(), firsts);
+            nullableSentences.put(phrase.getId(), nullables);
+        }
+
+        private int[][] predictions(Phrase phrase) {
+            BitSet[] firsts = sentenceFirst.get(phrase.getId());
+            BitSet nullables = nullableSentences.get(phrase.getId());
+            // Many tokens select the same candidates, so share them.
+            List<int[]> distinct = new ArrayList<>();
+            boolean recursive = leftRecursive.contains(phrase.getId());
+            BitSet recursions = recursions(phrase);
+            boolean conflicting = recursive;
+            int[][] columns = new int[terminals.size() + 1][];
+            for (int column = 0; column < columns.length; column++) {
+                int[] candidates = new int[firsts.length];
+                int count = 0;
+                for (int i = 0; i < firsts.length; i++) {
+                    if (nullables.get(i) || firsts[i].get(column) || recursions.get(i)) {
+                        candidates[count++] = i;
+                    }
+                    // A sentence that can match nothing always matches, unless
+                    // it's a recursive application that has yet to be seeded.
+                    if (nullables.get(i) && !recursive) {
+                        break;
+                    }
+                }
+                conflicting |= count > 1;
+                columns[column] = share(distinct, Arrays.copyOf(candidates, count));
+            }
+            if (!conflicting) {
+                predictive.add(phrase.getId());
+            }
+            return columns;
+        }
+
+        /**
+         * @param phrase A phrase.
+         * @return Sentences of the phrase that can apply the phrase again before
+         *         consuming a token. These take part in growing its recursion,
+         *         thus are always tried.
+         */
+        private BitSet recursions(Phrase phrase) {
+            BitSet recursions = new BitSet();
+            if (!leftRecursive.contains(phrase.getId())) {
+                return recursions;
+            }
+            List<List<String>> sentences = phrase.getSentences();
+            for (int i = 0; i < sentences.size(); i++) {
+                for (String word : sentences.get(i)) {
+                    if (!phrases.containsKey(word)) {
+                        break;
+                    }
+                    if (word.equals(phrase.getId()) || leftReachable(word).contains(phrase.getId())) {
+                        recursions.set(i);
+                        break;
+                    }
+                    if (!nullable.contains(word)) {
+                        break;
+                    }
+                }
+            }
+            return recursions;
+        }
+
+        private static int[] share(List<int[]> distinct, int[] candidates) {
+            for (int[] shared : distinct) {
+                if (Arrays.equals(shared, candidates)) {
+                    return shared;
+                }
+            }
+            distinct.add(candidates);
+            return candidates;
+        }
+
+        /**
+         * @param sentence Sentence of words.
+         * @param from Index of the first word to consider.
+         * @return `true` if the words from the index can all match nothing.
+         */
+        private boolean isNullable(List<String> sentence, int from) {
+            for (int i = from; i < sentence.size(); i++) {
+                if (!nullable.contains(sentence.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param sentence Sentence of words.
+         * @param from Index of the first word to consider.
+         * @return Columns of the tokens that can start the words from the index.
+         */
+        private BitSet first(List<String> sentence, int from) {
+            BitSet sentenceFirst = new BitSet();
+            for (int i = from; i < sentence.size(); i++) {
+                String word = sentence.get(i);
+                BitSet wordFirst = first.get(word);
+                if (wordFirst == null) {
+                    sentenceFirst.set(terminals.get(word));
+                    break;
+                }
+                sentenceFirst.or(wordFirst);
+                if (!nullable.contains(word)) {
+                    break;
+                }
+            }
+            return sentenceFirst;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package dev.houshce29.cc.parse;
 
 import dev.houshce29.cc.common.CompilerComponent;
-import dev.houshce29.cc.lex.SimpleToken;
 import dev.houshce29.cc.lex.Token;
+import dev.houshce29.cc.lex.TokenPipe;
+import dev.houshce29.cc.lex.TokenSource;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -16,211 +20,378 @@ import java.util.function.Consumer;
 public final class Parser implements CompilerComponent {
     public static final Parser DEFAULT_PARSER = Parser.newBuilder("<EMPTY>").build();
     private final Grammar grammar;
+    private final CompiledGrammar compiledGrammar;
+    private final ParseTable table;
+    private final ParsingStrategy strategy;
+    private final Disambiguator disambiguator;
+    private final Segmenter segmenter;
+    private final ForkJoinPool pool;
+    private final boolean compact;
+    private final ParseProfile profile;
     private final BiConsumer<List<Token>, SymbolTree> afterFunction;
 
     /**
      * Privately creates new instance.
      * @param grammar Grammar to use for this parser.
+     * @param strategy Strategy for traversing the grammar.
+     * @param disambiguator Picks between derivations of ambiguous input.
+     * @param segmenter Parses segments of the tokens concurrently, or `null`.
+     * @param pool Pool to try the sentences of parallel phrases on.
+     * @param compact Whether to build compact symbol trees.
+     * @param profile Profile to record the work of each parse into, or `null`.
      * @param afterFunction Custom logic to run after parsing.
      */
-    private Parser(Grammar grammar, BiConsumer<List<Token>, SymbolTree> afterFunction) {
+    private Parser(Grammar grammar,
+                   ParsingStrategy strategy,
+                   Disambiguator disambiguator,
+                   Segmenter segmenter,
+                   ForkJoinPool pool,
+                   boolean compact,
+                   ParseProfile profile,
+                   BiConsumer<List<Token>, SymbolTree> afterFunction) {
         this.grammar = grammar;
+        this.compiledGrammar = CompiledGrammar.of(grammar);
+        this.table = ParseTable.of(compiledGrammar);
+        this.strategy = strategy;
+        this.disambiguator = disambiguator;
+        this.segmenter = segmenter;
+        this.pool = pool;
+        this.compact = compact;
+        this.profile = profile;
         this.afterFunction = afterFunction;
+        table.checkRepetitions();
+        if (segmenter != null && !grammar.getPhrases().containsKey(segmenter.getPhraseId())) {
+            throw new IllegalArgumentException("Segment phrase " + segmenter.getPhraseId() + " is not in the grammar.");
+        }
     }
 
     /**
-     * Parses the token list into a symbol tree.
+     * Parses the token list into a symbol tree. Phrases may be directly or
+     * indirectly left-recursive; such phrases are grown from their
+     * non-recursive sentences, producing left-associative nodes. Phrases
+     * whose sentences never compete over the same next token are parsed
+     * without backtracking.
+     * <br />
+     * If the parser declares segments, these are parsed concurrently first,
+     * and the whole token list is then parsed reusing their results.
+     * <br />
+     * The tokens may be a {@link TokenPipe} still being filled by the lexer,
+     * in which case each token is parsed as soon as it is lexed; segments
+     * are then not parsed concurrently.
      * @param tokens Tokens to parse into symbol tree.
      * @return Symbol tree parsed from the tokens conforming to the base grammar.
      */
     public SymbolTree parse(List<Token> tokens) {
+        return parse(tokens, null, false);
+    }
+
+    /**
+     * Re-parses a token list after an edit, reusing as much of the previous
+     * parse as possible. Every phrase node whose parse did not look at any of
+     * the edited tokens is reused as is; only the nodes enclosing the edit are
+     * parsed again. The result is the same as parsing the edited tokens in full.
+     * The nodes enclosing the edit recall the reused nodes they hold, so a
+     * root list of N items costs N recalls, while the work of evaluating
+     * phrases depends only on the edit.
+     * <br />
+     * Only trees produced by this method keep what is needed for reuse; given
+     * any other tree, the tokens are parsed in full. The same goes for the
+     * {@link ParsingStrategy#GENERAL} strategy and for grammars with mutually
+     * left-recursive phrases (e.g. `A ::= B x` and `B ::= A y`). The previous tree is left
+     * intact and may be re-parsed again, e.g. with a different edit. Reused
+     * nodes are shared with the previous tree, along with any tokens they hold.
+     * @param previous Tree of the token list before the edit.
+     * @param tokens Token list after the edit.
+     * @param edit Edit made to the previous token list.
+     * @return Symbol tree parsed from the tokens conforming to the base grammar.
+     * @throws IllegalArgumentException If the tokens do not parse, or do not result from the edit.
+     */
+    public SymbolTree reparse(SymbolTree previous, List<Token> tokens, TokenEdit edit) throws IllegalArgumentException {
+        MemoTable memo = previous.getMemo();
+        // Mutually left-recursive phrases parse differently depending on what was parsed before them.
+        if (memo == null || memo.getGrammar() != compiledGrammar || table.isMutuallyLeftRecursive()) {
+            return parse(tokens, null, true);
+        }
+        memo = memo.edit(edit, tokens);
+        if (memo.getTokenCount() != tokens.size()) {
+            throw new IllegalArgumentException("Token edit results in " + memo.getTokenCount()
+                    + " tokens rather than the " + tokens.size() + " given.");
+        }
+        return parse(tokens, memo, true);
+    }
+
+    /**
+     * Internally parses the token list into a symbol tree.
+     * @param tokens Tokens to parse into symbol tree.
+     * @param memo Memo table for the tokens, or `null` to parse them in full.
+     * @param keep Whether the tree keeps the memo table for re-parsing.
+     * @return Symbol tree parsed from the tokens conforming to the base grammar.
+     */
+    private SymbolTree parse(List<Token> tokens, MemoTable memo, boolean keep) {
         try {
-            ParseFailureSite failureSite = new ParseFailureSite(tokens);
-            Optional<SymbolTreeNode> root = parseUsingPhrase(tokens, grammar.getRoot(), failureSite);
-            if (!root.isPresent()) {
-                Token token = failureSite.getFailureToken();
-                throw new IllegalArgumentException("Syntax error near token '" + token.getValue() + "' on line " + token.getLineNumber() + ".");
+            if (memo == null) {
+                memo = newMemo(tokens);
+            }
+            SymbolTree tree;
+            if (compact) {
+                SymbolTreeArena arena = new SymbolTreeArena(compiledGrammar, tokens);
+                stream(tokens, memo, arena);
+                tree = new SymbolTree(arena.finish());
             }
-            SymbolTreeNode rootNode = root.get();
-            int tokenCount = rootNode.tokenCount();
-            if (tokenCount < tokens.size()) {
-                Token token = tokens.get(tokenCount);
-                throw new IllegalArgumentException("Unexpected token '" + token.getValue() + "' on line " + token.getLineNumber() + ".");
+            else {
+                SymbolTreeNode root = parseRoot(strategy.newSession(this, tokens, memo));
+                // A table that grew with tokens still being lexed is not carried over to edits.
+                tree = new SymbolTree(root, keep && memo.getTokenCount() >= 0 ? memo : null);
             }
-            SymbolTree tree = new SymbolTree(root.get());
             afterFunction.accept(tokens, tree);
             return tree;
         }
         catch (StackOverflowError err) {
-            throw new UnsupportedOperationException("FATAL: Parser's grammar is too deep or left-ambiguous.");
+            throw tooDeep();
         }
     }
 
-    @Override
-    public String toString() {
-        return "PARSER\n" + grammar;
+    /**
+     * Parses the token list, emitting the symbol tree to the listener as a
+     * stream of events rather than building it. The events are the same as
+     * those of walking the tree returned by {@link #parse(List)}.
+     * <br />
+     * Except with the {@link ParsingStrategy#GENERAL} strategy, which emits
+     * once parsing is complete, events are emitted as soon as the nodes they
+     * belong to can no longer be backtracked out of; only the nodes of phrases
+     * with alternatives still to try are held in memory until then. Phrases
+     * that are left-recursive, or operator phrases, are held until complete.
+     * Thus a syntax error may be thrown after some events have been emitted.
+     * The after function of the parser is not run.
+     * @param tokens Tokens to parse.
+     * @param listener Listener to emit the events to.
+     * @throws IllegalArgumentException If the tokens do not parse.
+     */
+    public void parse(List<Token> tokens, ParseListener listener) throws IllegalArgumentException {
+        stream(tokens, emptyMemo(tokens), listener);
     }
 
     /**
-     * Returns a new parser from the grammar.
-     * @param grammar Grammar that defines the parser.
-     * @return New parser.
+     * Parses tokens pulled from a source, emitting the symbol tree to the
+     * listener as with {@link #parse(List, ParseListener)}. Tokens are only
+     * pulled as the parse reaches them, and are dropped along with their
+     * memoized results once parsing has committed past them; thus memory is
+     * bounded by the tokens of the phrases still open rather than by every
+     * token, e.g. when parsing a long run of records with a streaming lexer
+     * (see {@link dev.houshce29.cc.lex.Lexer#source(String)}).
+     * <br />
+     * Left-recursive and operator phrases hold on to their tokens until
+     * complete, and the {@link ParsingStrategy#GENERAL} strategy holds on
+     * to every token.
+     * @param source Source to pull the tokens from.
+     * @param listener Listener to emit the events to.
+     * @throws IllegalArgumentException If the tokens do not parse.
      */
-    public static Parser of(Grammar grammar) {
-        return new Parser(grammar, (lt, st) -> {});
+    public void parse(TokenSource source, ParseListener listener) throws IllegalArgumentException {
+        TokenWindow tokens = new TokenWindow(source);
+        stream(tokens, emptyMemo(tokens), listener);
     }
 
     /**
-     * Returns a new parser builder.
-     * @param rootPhraseId ID of the root phrase in the grammar.
-     * @return New builder instance.
+     * Internally parses the token list, emitting the symbol tree to the listener.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens.
+     * @param listener Listener to emit the events to.
+     * @throws IllegalArgumentException If the tokens do not parse.
      */
-    public static Builder newBuilder(String rootPhraseId) {
-        return new Builder(rootPhraseId);
+    private void stream(List<Token> tokens, MemoTable memo, ParseListener listener) throws IllegalArgumentException {
+        if (strategy != ParsingStrategy.GENERAL) {
+            // Produces the same tree as the recursive strategy, and can tell which frames are committed.
+            IterativeParseSession session = new IterativeParseSession(this, tokens, memo, listener);
+            session.finish(parseRoot(session));
+            return;
+        }
+        try {
+            ParseSession.emit(parseRoot(strategy.newSession(this, tokens, memo)), listener);
+        }
+        catch (StackOverflowError err) {
+            throw tooDeep();
+        }
     }
 
     /**
-     * Internally parses tokens within the constraint of a given phrase.
-     * @param tokens Tokens list or sublist to parse.
-     * @param current Current phrase to parse against.
-     * @param site Reported failure site. Used to report parse failures.
-     * @return Tree node if parsing against the current phrase resolves.
+     * Checks that the token list conforms to the grammar without building a
+     * symbol tree or running the after function; the grammar is only used to
+     * recognize the tokens. This produces the same outcome as {@link #parse(List)}.
+     * @param tokens Tokens to validate.
+     * @return Site of the failure if the tokens do not parse, otherwise empty.
      */
-    private Optional<SymbolTreeNode> parseUsingPhrase(List<Token> tokens, Phrase current, ParseFailureSite site) {
-        for (List<String> sentence : current.getSentences()) {
-            Optional<SymbolTreeNode> node = parseUsingSentence(current.getId(), sentence, tokens, site);
-            if (node.isPresent()) {
-                return node;
+    public Optional<ParseFailureSite> validate(List<Token> tokens) {
+        try {
+            ParseSession session = strategy.newSession(this, tokens, emptyMemo(tokens));
+            if (recognizeRoot(session.recognize()) == null) {
+                return Optional.of(session.getFailureSite());
             }
+            return Optional.empty();
+        }
+        catch (StackOverflowError err) {
+            throw tooDeep();
         }
-        // We're targeting a specific path within the token sub list,
-        // so it's not a big deal if this doesn't resolve.
-        site.report(tokens);
-        return Optional.empty();
     }
 
     /**
-     * Internally parses tokens within the constraints of a given sentence.
-     * @param phraseId ID of the phrase that owns the sentence.
-     * @param sentence Sentence to attempt to parse with.
-     * @param tokens Token list or sublist to parse.
-     * @param site Reported failure site. Used to report parse failures.
-     * @return Tree node if parsing against the current sentence resolves.
+     * Internally parses the token list against the root phrase.
+     * @param session Session to parse in.
+     * @return Root node of the symbol tree.
+     * @throws IllegalArgumentException If the tokens do not parse.
      */
-    private Optional<SymbolTreeNode> parseUsingSentence(String phraseId,
-                                                        List<String> sentence,
-                                                        List<Token> tokens,
-                                                        ParseFailureSite site) {
-
-        // Depth of token list to recursively push
-        int depth = 0;
-        SymbolTreeNode node = new SymbolTreeNode(phraseId);
-        for (String id : sentence) {
-            // Unexpected token case for some recursive phrase
-            if (depth == tokens.size()) {
-                return Optional.empty();
-            }
-            Optional<Phrase> phrase = find(id);
-            // This is a phrase, thus need to dig in recursively and dig out children.
-            // If this child does not parse out, this tree path does not work.
-            if (phrase.isPresent()) {
-                Optional<SymbolTreeNode> child = parseUsingPhrase(tokens.subList(depth, tokens.size()), phrase.get(), site);
-                if (!child.isPresent()) {
-                    site.report(tokens);
-                    return Optional.empty();
-                }
-                SymbolTreeNode childNode = child.get();
-                node.getChildren().add(childNode);
-                depth += childNode.tokenCount();
-            }
-            // Else check token match
-            else if (id.equals(tokens.get(depth).getId())) {
-                // Consume the token and push the depth up
-                node.getChildren().add(tokens.get(depth));
-                depth++;
-            }
-            // Else, this doesn't match
-            else {
-                site.report(tokens);
-                return Optional.empty();
-            }
+    private SymbolTreeNode parseRoot(ParseSession session) throws IllegalArgumentException {
+        SymbolTreeNode root = recognizeRoot(session);
+        if (root == null) {
+            throw new IllegalArgumentException(session.getFailureSite().getMessage());
         }
-        // If the entire sentence is traversed, then a node is successfully formed.
-        return Optional.of(node);
+        return root;
     }
 
     /**
-     * Finds a phrase if it exists.
-     * @param id ID of the phrase.
-     * @return Optional maybe containing a phrase.
+     * Internally parses the token list against the root phrase, without
+     * failing; a failed parse is described by the session's failure site.
+     * @param session Session to parse in.
+     * @return Root node of the symbol tree, or `null` if the tokens do not parse.
      */
-    private Optional<Phrase> find(String id) {
-        return Optional.ofNullable(grammar.getPhrases().get(id));
+    private SymbolTreeNode recognizeRoot(ParseSession session) {
+        SymbolTreeNode root;
+        try {
+            root = session.parse(compiledGrammar.getRoot(), 0);
+        }
+        catch (ParseSession.CommitFailure failure) {
+            return null;
+        }
+        finally {
+            session.recordProfile();
+        }
+        if (root != null && session.exists(session.getPosition())) {
+            session.getFailureSite().reportUnexpected(session.getPosition());
+            return null;
+        }
+        return root;
     }
 
     /**
-     * Holder that contains a token that failed the parse phase.
-     * This will track the latest failure in terms of "token-depth";
-     * that is, the token furthest in the token list that caused a
-     * failure.
+     * @return Exception for a parse that exhausted the thread's stack.
      */
-    private static final class ParseFailureSite {
-        private static final Token NOTHING = new SimpleToken("", 1);
-        private int remainingDistance;
-        private final int totalDistance;
-        private Token token = NOTHING;
+    private static UnsupportedOperationException tooDeep() {
+        return new UnsupportedOperationException("FATAL: Parser's grammar is too deep; consider the "
+                + ParsingStrategy.ITERATIVE + " parsing strategy.");
+    }
 
-        /**
-         * Creates a new instance from the token list.
-         * @param initialTokenList Token list.
-         */
-        private ParseFailureSite(List<Token> initialTokenList) {
-            this.totalDistance = initialTokenList.size();
-            this.remainingDistance = initialTokenList.size();
-            if (!initialTokenList.isEmpty()) {
-                token = initialTokenList.get(0);
-            }
-        }
+    /**
+     * @return Grammar this parser parses against.
+     */
+    public Grammar getGrammar() {
+        return grammar;
+    }
 
-        /**
-         * @return The approximate failing token.
-         */
-        private Token getFailureToken() {
-            return token;
-        }
+    @Override
+    public String toString() {
+        return "PARSER\n" + grammar;
+    }
 
-        /**
-         * Reports an approximate failure site.
-         * @param token Approximate token failing parse.
-         * @param remainingDistance Remaining distance to the end of the current token sublist.
-         */
-        private void report(Token token, int remainingDistance) {
-            if (remainingDistance < this.remainingDistance) {
-                this.token = token;
-            }
+    /**
+     * Creates the memo table to parse the tokens in full with, parsing
+     * their segments into it if declared. Segments are not parsed for the
+     * general strategy, which does not memoize, nor for mutually
+     * left-recursive grammars, whose entries depend on the parse around them,
+     * nor for tokens still being lexed, nor if the segment phrase cannot be
+     * reached from the root.
+     * @param tokens Tokens to parse.
+     * @return New memo table.
+     */
+    private MemoTable newMemo(List<Token> tokens) {
+        if (segmenter == null || strategy == ParsingStrategy.GENERAL || table.isMutuallyLeftRecursive()
+                || tokens instanceof TokenPipe || compiledGrammar.get(segmenter.getPhraseId()) == null) {
+            return emptyMemo(tokens);
         }
+        return segmenter.parse(this, tokens);
+    }
 
-        /**
-         * Reports an approximate failing site.
-         * @param tokens Sub-list of remaining tokens to be parsed.
-         */
-        private void report(List<Token> tokens) {
-            if (!tokens.isEmpty()) {
-                report(tokens.get(0), tokens.size());
-            }
+    /**
+     * Creates an empty memo table to parse the tokens with. Tokens still
+     * being lexed or pulled get a table that grows as the parse reaches them.
+     * @param tokens Tokens to parse.
+     * @return New memo table.
+     */
+    private MemoTable emptyMemo(List<Token> tokens) {
+        if (tokens instanceof TokenPipe || tokens instanceof TokenWindow) {
+            return new MemoTable(compiledGrammar);
         }
+        return new MemoTable(compiledGrammar, tokens.size());
+    }
 
-        /**
-         * Clears the current fail site data. Due to the fact that
-         * the parser traverses a tree, there will be a lot of false-
-         * positives pointing at deeply-nested failures, so upon creating
-         * a new node, this method should be called to ensure that any
-         * future failures are recorded.
-         */
-        private void clear() {
-            this.token = NOTHING;
-            this.remainingDistance = totalDistance;
-        }
+    /**
+     * @return Grammar of this parser, with every word resolved ahead of time.
+     */
+    CompiledGrammar getCompiledGrammar() {
+        return compiledGrammar;
+    }
+
+    /**
+     * @return Parse table of the grammar.
+     */
+    ParseTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return Strategy for traversing the grammar.
+     */
+    ParsingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return Profile to record the work of each parse into, or `null` if not profiled.
+     */
+    ParseProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return Pool to try the sentences of parallel phrases on.
+     */
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return Disambiguator used by the general parsing strategy.
+     */
+    Disambiguator getDisambiguator() {
+        return disambiguator;
+    }
+
+    /**
+     * Returns a new parser from the grammar.
+     * @param grammar Grammar that defines the parser.
+     * @return New parser.
+     */
+    public static Parser of(Grammar grammar) {
+        return of(grammar, ParsingStrategy.RECURSIVE);
+    }
+
+    /**
+     * Returns a new parser from the grammar.
+     * @param grammar Grammar that defines the parser.
+     * @param strategy Strategy for traversing the grammar.
+     * @return New parser.
+     */
+    public static Parser of(Grammar grammar, ParsingStrategy strategy) {
+        return new Parser(grammar, strategy, Disambiguator.PREFER_FIRST, null,
+                ForkJoinPool.commonPool(), false, null, (lt, st) -> {});
+    }
+
+    /**
+     * Returns a new parser builder.
+     * @param rootPhraseId ID of the root phrase in the grammar.
+     * @return New builder instance.
+     */
+    public static Builder newBuilder(String rootPhraseId) {
+        return new Builder(rootPhraseId);
     }
 
     /**
@@ -229,6 +400,13 @@ public final class Parser implements CompilerComponent {
     public static final class Builder {
         private Phrase.Builder currentPhrase;
         private Grammar.Builder grammar;
+        private ParsingStrategy strategy = ParsingStrategy.RECURSIVE;
+        private Disambiguator disambiguator = Disambiguator.PREFER_FIRST;
+        private String segmentPhraseId;
+        private String[] syncTokenIds;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private boolean compact;
+        private ParseProfile profile;
         private BiConsumer<List<Token>, SymbolTree> afterFunction;
 
         private Builder(String rootId) {
@@ -260,9 +438,95 @@ public final class Parser implements CompilerComponent {
             return after((t, tree) -> afterFunction.accept(tree));
         }
 
+        /**
+         * Sets the strategy for traversing the grammar while parsing.
+         * The default strategy is {@link ParsingStrategy#RECURSIVE}.
+         * @param strategy Parsing strategy.
+         * @return This builder.
+         */
+        public Builder strategy(ParsingStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets the logic that picks between the derivations of ambiguous input.
+         * This only applies to the {@link ParsingStrategy#GENERAL} strategy.
+         * The default is {@link Disambiguator#PREFER_FIRST}.
+         * @param disambiguator Disambiguator to use.
+         * @return This builder.
+         */
+        public Builder disambiguator(Disambiguator disambiguator) {
+            this.disambiguator = disambiguator;
+            return this;
+        }
+
+        /**
+         * Declares the segments of the tokens to parse concurrently, for languages
+         * made of independent top-level elements (e.g. declarations). The tokens
+         * are split before every sync token, each segment is parsed against the
+         * given phrase on the pool, and the whole token list is then parsed
+         * reusing the results. The symbol tree is the same as without segments;
+         * parts of a segment's parse that looked past its end are parsed again.
+         * This does not apply to the {@link ParsingStrategy#GENERAL} strategy.
+         * @param phraseId ID of the phrase repeated by the root, which each segment is parsed against.
+         * @param syncTokenIds IDs of the tokens that start an element of the phrase.
+         * @return This builder.
+         */
+        public Builder segments(String phraseId, String... syncTokenIds) {
+            this.segmentPhraseId = phraseId;
+            this.syncTokenIds = syncTokenIds;
+            return this;
+        }
+
+        /**
+         * Sets the pool to parse segments and the sentences of parallel phrases on.
+         * The default is the {@link ForkJoinPool#commonPool()}.
+         * @param pool Fork/join pool.
+         * @return This builder.
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Makes the parser build compact symbol trees. Rather than an object
+         * per node, each node and token is stored as a few ints in arrays shared
+         * by the whole tree, and read through lightweight node views created as
+         * they are visited; this takes several times less memory and garbage
+         * collection. As nodes are only held until the parser commits to them
+         * (see {@link Parser#parse(List, ParseListener)}), the memory of parsing stays
+         * low as well. The children of compact nodes are read-only, views of the
+         * same node are not the same instance, and trees cannot be re-parsed
+         * incrementally: {@link Parser#reparse(SymbolTree, List, TokenEdit)} parses in full.
+         * @return This builder.
+         */
+        public Builder compact() {
+            this.compact = true;
+            return this;
+        }
+
+        /**
+         * Profiles the parser, recording the work of every parse into the given
+         * profile: how often each phrase is applied and each of its sentences
+         * fails, and the tokens parsed by failing sentences, which are parsed again
+         * by the next. This slows parsing down, and does not apply to the
+         * {@link ParsingStrategy#GENERAL} strategy.
+         * @param profile Profile to record into.
+         * @return This builder.
+         */
+        public Builder profile(ParseProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
         /**
          * Adds a sentence to the current phrase.
-         * @param sentence Sentence to be added to current phrase.
+         * @param sentence Sentence to be added to current phrase,
+         *                 optionally with a {@link Phrase#COMMIT} marker.
+         *                 Words ending with a {@link Quantifier} suffix are
+         *                 quantified, unless given with the {@link Phrase#LITERAL} prefix.
          * @return This builder.
          */
         public Builder sentence(String... sentence) {
@@ -270,6 +534,74 @@ public final class Parser implements CompilerComponent {
             return this;
         }
 
+        /**
+         * Makes the current phrase parallel: its candidate sentences are tried
+         * concurrently on the pool, and the first in order that matches is kept,
+         * as when they are tried one after another. This cuts the latency of
+         * phrases whose sentences each take long to fail, at the cost of the work
+         * done by sentences whose outcome turns out not to matter. It does not apply
+         * to left-recursive phrases, to tokens still being lexed or pulled, nor to
+         * the {@link ParsingStrategy#GENERAL} strategy.
+         * @return This builder.
+         */
+        public Builder parallel() {
+            currentPhrase.setParallel(true);
+            return this;
+        }
+
+        /**
+         * Makes the current phrase lazy: its nodes only record where the phrase
+         * matched, and their children are parsed the first time they are read
+         * (see {@link SymbolTreeNode#isMaterialized()}). The phrase is still
+         * recognized in full to find where it ends, but no node is built within
+         * it, so parts of a large tree that are never read cost no memory. The
+         * tokens must not be modified while any of its nodes is yet to be read. It
+         * does not apply to left-recursive phrases, to tokens still being lexed or
+         * pulled, to streamed or compact trees, nor to the
+         * {@link ParsingStrategy#GENERAL} strategy.
+         * @return This builder.
+         */
+        public Builder lazy() {
+            currentPhrase.setLazy(true);
+            return this;
+        }
+
+        /**
+         * Makes the current phrase an operator phrase, which consists of
+         * operands joined by binary operators (e.g. `1 + 2 * 3`). Rather than
+         * one phrase per precedence level, declare the operators with
+         * {@link #operator(String, int)}. Only a node per operator applied is
+         * created; an operand on its own is not wrapped in a node of the phrase.
+         * @param operand Word (e.g. token or phrase) of each operand.
+         * @return This builder.
+         */
+        public Builder operand(String operand) {
+            currentPhrase.setOperand(operand);
+            return this;
+        }
+
+        /**
+         * Adds a left-associative binary operator to the current operator phrase.
+         * @param tokenId ID of the operator's token.
+         * @param precedence Precedence of the operator; higher precedence binds tighter.
+         * @return This builder.
+         */
+        public Builder operator(String tokenId, int precedence) {
+            return operator(tokenId, precedence, Associativity.LEFT);
+        }
+
+        /**
+         * Adds a binary operator to the current operator phrase.
+         * @param tokenId ID of the operator's token.
+         * @param precedence Precedence of the operator; higher precedence binds tighter.
+         * @param associativity Grouping of consecutive operators of the same precedence.
+         * @return This builder.
+         */
+        public Builder operator(String tokenId, int precedence, Associativity associativity) {
+            currentPhrase.addOperator(tokenId, precedence, associativity);
+            return this;
+        }
+
         /**
          * Branches the grammar to start a new phrase definition.
          * @param id ID of the next phrase.
@@ -284,10 +616,17 @@ public final class Parser implements CompilerComponent {
         /**
          * Builds the parser.
          * @return New parser.
+         * @throws IllegalArgumentException If the segment phrase is not in the grammar, or a
+         *                                  word repeated more than once can match without consuming tokens.
          */
-        public Parser build() {
+        public Parser build() throws IllegalArgumentException {
             applyCurrentPhrase();
-            return Parser.of(grammar.build());
+            if (afterFunction == null) {
+                afterFunction = (lt, st) -> {};
+            }
+            Segmenter segmenter = segmentPhraseId == null ? null
+                    : new Segmenter(segmentPhraseId, new HashSet<>(Arrays.asList(syncTokenIds)), pool);
+            return new Parser(grammar.build(), strategy, disambiguator, segmenter, pool, compact, profile, afterFunction);
         }
 
         /**
@@ -0,0 +1,597 @@
+package dev.houshce29.cc.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the Java source of a standalone parser class from a grammar,
+ * ahead of time. The generated class has a method per phrase and per
+ * sentence, checks tokens inline, and picks the candidate sentences of each
+ * phrase with a switch on the lookahead token, as predicted by the parse
+ * table. Its static `parse(List<Token>)` method produces the same symbol
+ * tree and syntax errors as {@link ParsingStrategy#RECURSIVE}, without the
+ * after function.
+ * <br />
+ * Left-recursive phrases are grown from their seed as usual, but grammars
+ * with mutually left-recursive phrases are not supported.
+ */
+public final class ParserGenerator {
+    private static final String INDENT = "    ";
+    private final CompiledGrammar grammar;
+    private final ParseTable table;
+    // Identifier of each phrase in the names of its generated methods, by index.
+    private final String[] names;
+    // Whether any sentence has a commit point that is not ignored.
+    private final boolean committing;
+
+    /**
+     * Privately creates a new instance.
+     * @param grammar Compiled grammar to generate from.
+     * @throws IllegalArgumentException If the grammar has mutually left-recursive phrases,
+     *                                  or a repeated word that can match without consuming tokens.
+     */
+    private ParserGenerator(CompiledGrammar grammar) throws IllegalArgumentException {
+        this.grammar = grammar;
+        this.table = ParseTable.of(grammar);
+        if (table.isMutuallyLeftRecursive()) {
+            throw new IllegalArgumentException("Cannot generate a parser of mutually left-recursive phrases.");
+        }
+        table.checkRepetitions();
+        Set<String> taken = new HashSet<>();
+        CompiledPhrase[] phrases = grammar.getPhrases();
+        this.names = new String[phrases.length];
+        for (CompiledPhrase phrase : phrases) {
+            String name = identifier(phrase.getId());
+            while (!taken.add(name)) {
+                name += "_";
+            }
+            names[phrase.getIndex()] = name;
+        }
+        this.committing = Arrays.stream(phrases).anyMatch(phrase -> IntStream.range(0, phrase.getSentences().length)
+                .anyMatch(sentence -> commit(phrase, sentence) < Integer.MAX_VALUE));
+    }
+
+    /**
+     * Generates the source of the parser class.
+     * @param className Fully qualified name of the class to generate.
+     * @return Java source of the class.
+     */
+    public String generate(String className) {
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+        StringBuilder source = new StringBuilder();
+        if (dot > 0) {
+            source.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        source.append("import dev.houshce29.cc.common.GrammarComponent;\n")
+                .append("import dev.houshce29.cc.lex.Token;\n")
+                .append("import dev.houshce29.cc.parse.SymbolTree;\n")
+                .append("import dev.houshce29.cc.parse.SymbolTreeNode;\n\n")
+                .append("import java.util.ArrayDeque;\n")
+                .append("import java.util.Deque;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n * Parser generated from the grammar of root phrase ")
+                .append(comment(grammar.getRoot().getId()).replace("*/", "*\\/"))
+                .append(". Do not edit.\n */\n")
+                .append("public final class ").append(simpleName).append(" {\n");
+        generateFields(source);
+        generateEntryPoint(source, simpleName);
+        for (CompiledPhrase phrase : grammar.getPhrases()) {
+            generatePhrase(source, phrase);
+        }
+        generateHelpers(source);
+        return source.append("}\n").toString();
+    }
+
+    /**
+     * Returns a new generator from the grammar.
+     * @param grammar Grammar to generate a parser of.
+     * @return New generator.
+     * @throws IllegalArgumentException If the grammar has mutually left-recursive phrases.
+     */
+    public static ParserGenerator of(Grammar grammar) throws IllegalArgumentException {
+        return new ParserGenerator(CompiledGrammar.of(grammar));
+    }
+
+    /**
+     * Returns a new generator from the grammar of the parser.
+     * @param parser Parser to generate an equivalent of.
+     * @return New generator.
+     * @throws IllegalArgumentException If the grammar has mutually left-recursive phrases.
+     */
+    public static ParserGenerator of(Parser parser) throws IllegalArgumentException {
+        return new ParserGenerator(parser.getCompiledGrammar());
+    }
+
+    private void generateFields(StringBuilder source) {
+        line(source, 1, "private static final int UNKNOWN = " + grammar.getUnknownKind() + ";");
+        for (CompiledPhrase phrase : grammar.getPhrases()) {
+            if (phrase.isOperatorPhrase()) {
+                // Operators of the phrase by token kind, along with their precedence and associativity.
+                int[] precedences = new int[grammar.getUnknownKind() + 1];
+                boolean[] operators = new boolean[precedences.length];
+                boolean[] right = new boolean[precedences.length];
+                for (int kind = 0; kind < precedences.length; kind++) {
+                    Phrase.Operator operator = phrase.getOperator(kind);
+                    if (operator != null) {
+                        operators[kind] = true;
+                        precedences[kind] = operator.getPrecedence();
+                        right[kind] = operator.getAssociativity() == Associativity.RIGHT;
+                    }
+                }
+                String suffix = "_" + phrase.getIndex();
+                line(source, 1, "private static final boolean[] OPERATORS" + suffix + " = {" + join(operators) + "};");
+                line(source, 1, "private static final int[] PRECEDENCES" + suffix + " = {"
+                        + join(Arrays.stream(precedences).mapToObj(Integer::toString).toArray()) + "};");
+                line(source, 1, "private static final boolean[] RIGHT" + suffix + " = {" + join(right) + "};");
+            }
+            else if (phrase.isRepetition()) {
+                // Whether the word of the phrase is tried again, by lookahead token kind.
+                boolean[] repeats = new boolean[grammar.getUnknownKind() + 1];
+                for (int kind = 0; kind < repeats.length; kind++) {
+                    List<Integer> candidates = candidates(phrase, kind);
+                    repeats[kind] = !candidates.isEmpty() && candidates.get(0) == 0;
+                }
+                line(source, 1, "private static final boolean[] REPEATS_" + phrase.getIndex() + " = {" + join(repeats) + "};");
+            }
+        }
+        line(source, 1, "private final List<Token> tokens;");
+        line(source, 1, "private final int[] kinds;");
+        line(source, 1, "// End position plus one of each phrase application, or -1 if it failed; by phrase, then position.");
+        line(source, 1, "private final int[][] ends = new int[" + grammar.getPhrases().length + "][];");
+        line(source, 1, "private final SymbolTreeNode[][] nodes = new SymbolTreeNode[" + grammar.getPhrases().length + "][];");
+        line(source, 1, "private int position;");
+        line(source, 1, "private int failure = -1;");
+        source.append('\n');
+    }
+
+    private void generateEntryPoint(StringBuilder source, String simpleName) {
+        line(source, 1, "private " + simpleName + "(List<Token> tokens) {");
+        line(source, 2, "this.tokens = tokens;");
+        line(source, 2, "this.kinds = new int[tokens.size()];");
+        line(source, 2, "for (int i = 0; i < kinds.length; i++) {");
+        line(source, 3, "kinds[i] = kind(tokens.get(i).getId());");
+        line(source, 2, "}");
+        line(source, 1, "}");
+        source.append('\n');
+        line(source, 1, "/**");
+        line(source, 1, " * Parses the token list into a symbol tree.");
+        line(source, 1, " * @param tokens Tokens to parse into symbol tree.");
+        line(source, 1, " * @return Symbol tree parsed from the tokens.");
+        line(source, 1, " * @throws IllegalArgumentException If the tokens do not parse.");
+        line(source, 1, " */");
+        line(source, 1, "public static SymbolTree parse(List<Token> tokens) throws IllegalArgumentException {");
+        line(source, 2, simpleName + " parser = new " + simpleName + "(tokens);");
+        line(source, 2, "SymbolTreeNode root;");
+        line(source, 2, "try {");
+        line(source, 3, "root = parser.parse" + names[grammar.getRoot().getIndex()] + "(0);");
+        line(source, 2, "}");
+        line(source, 2, "catch (StackOverflowError err) {");
+        line(source, 3, "throw new UnsupportedOperationException(\"FATAL: Parser's grammar is too deep.\");");
+        line(source, 2, "}");
+        if (committing) {
+            line(source, 2, "catch (Committed committed) {");
+            line(source, 3, "root = null;");
+            line(source, 2, "}");
+        }
+        line(source, 2, "if (root == null) {");
+        line(source, 3, "Token token = parser.failure >= 0 ? tokens.get(parser.failure) : tokens.isEmpty() ? null : tokens.get(0);");
+        line(source, 3, "throw new IllegalArgumentException(\"Syntax error near token '\" + (token == null ? \"\" : token.getValue())");
+        line(source, 5, "+ \"' on line \" + (token == null ? 1 : token.getLineNumber()) + \".\");");
+        line(source, 2, "}");
+        line(source, 2, "if (parser.position < tokens.size()) {");
+        line(source, 3, "Token token = tokens.get(parser.position);");
+        line(source, 3, "throw new IllegalArgumentException(\"Unexpected token '\" + token.getValue()");
+        line(source, 5, "+ \"' on line \" + token.getLineNumber() + \".\");");
+        line(source, 2, "}");
+        line(source, 2, "return new SymbolTree(root);");
+        line(source, 1, "}");
+        source.append('\n');
+        line(source, 1, "private static int kind(String tokenId) {");
+        line(source, 2, "switch (tokenId) {");
+        String[] tokenIds = new String[grammar.getUnknownKind()];
+        grammar.getKinds().forEach((tokenId, kind) -> tokenIds[kind] = tokenId);
+        for (int kind = 0; kind < tokenIds.length; kind++) {
+            line(source, 3, "case " + quote(tokenIds[kind]) + ":");
+            line(source, 4, "return " + kind + ";");
+        }
+        line(source, 3, "default:");
+        line(source, 4, "return UNKNOWN;");
+        line(source, 2, "}");
+        line(source, 1, "}");
+        source.append('\n');
+    }
+
+    /**
+     * Generates the application of the phrase, which memoizes its result
+     * by position and grows it from its seed if left-recursive, along with
+     * the evaluation of its sentences.
+     */
+    private void generatePhrase(StringBuilder source, CompiledPhrase phrase) {
+        String name = names[phrase.getIndex()];
+        int index = phrase.getIndex();
+        line(source, 1, "// " + comment(phrase.getPhrase().toString()));
+        line(source, 1, "private SymbolTreeNode parse" + name + "(int start) {");
+        line(source, 2, "if (ends[" + index + "] == null) {");
+        line(source, 3, "ends[" + index + "] = new int[kinds.length + 1];");
+        line(source, 3, "nodes[" + index + "] = new SymbolTreeNode[kinds.length + 1];");
+        line(source, 2, "}");
+        line(source, 2, "int[] end = ends[" + index + "];");
+        line(source, 2, "SymbolTreeNode[] node = nodes[" + index + "];");
+        line(source, 2, "if (end[start] != 0) {");
+        line(source, 3, "position = end[start] - 1;");
+        line(source, 3, "return node[start];");
+        line(source, 2, "}");
+        if (table.isLeftRecursive(phrase.getId())) {
+            line(source, 2, "// Left-recursive; applications within the first evaluation fail, making its result the seed.");
+            line(source, 2, "end[start] = -1;");
+            line(source, 2, "SymbolTreeNode grown = evaluate" + name + "(start);");
+            line(source, 2, "while (grown != null && position + 1 > end[start]) {");
+            line(source, 3, "node[start] = grown;");
+            line(source, 3, "end[start] = position + 1;");
+            line(source, 3, "grown = evaluate" + name + "(start);");
+            line(source, 2, "}");
+        }
+        else {
+            line(source, 2, "node[start] = evaluate" + name + "(start);");
+            line(source, 2, "end[start] = node[start] == null ? -1 : position + 1;");
+        }
+        line(source, 2, "position = end[start] - 1;");
+        line(source, 2, "return node[start];");
+        line(source, 1, "}");
+        source.append('\n');
+        if (phrase.isOperatorPhrase()) {
+            generateOperation(source, phrase);
+            return;
+        }
+        if (phrase.isRepetition()) {
+            generateRepetition(source, phrase);
+            return;
+        }
+        generateDispatch(source, phrase);
+        int[][] sentences = phrase.getSentences();
+        for (int i = 0; i < sentences.length; i++) {
+            generateSentence(source, phrase, i);
+        }
+    }
+
+    /**
+     * Generates the dispatch of the phrase's candidate sentences on the lookahead token.
+     */
+    private void generateDispatch(StringBuilder source, CompiledPhrase phrase) {
+        String name = names[phrase.getIndex()];
+        // Kinds by candidate sentences; the unknown kind's candidates are the default.
+        Map<List<Integer>, List<Integer>> cases = new LinkedHashMap<>();
+        int unknown = grammar.getUnknownKind();
+        List<Integer> fallback = candidates(phrase, unknown);
+        for (int kind = 0; kind < unknown; kind++) {
+            List<Integer> candidates = candidates(phrase, kind);
+            if (!candidates.equals(fallback)) {
+                cases.computeIfAbsent(candidates, c -> new ArrayList<>()).add(kind);
+            }
+        }
+        line(source, 1, "private SymbolTreeNode evaluate" + name + "(int start) {");
+        line(source, 2, "SymbolTreeNode node;");
+        line(source, 2, "switch (lookahead(start)) {");
+        for (Map.Entry<List<Integer>, List<Integer>> group : cases.entrySet()) {
+            for (int kind : group.getValue()) {
+                line(source, 3, "case " + kind + ":");
+            }
+            generateCandidates(source, phrase, group.getKey());
+        }
+        line(source, 3, "default:");
+        generateCandidates(source, phrase, fallback);
+        line(source, 2, "}");
+        line(source, 2, "report(start);");
+        line(source, 2, "return null;");
+        line(source, 1, "}");
+        source.append('\n');
+    }
+
+    private void generateCandidates(StringBuilder source, CompiledPhrase phrase, List<Integer> candidates) {
+        int previous = -1;
+        for (int candidate : candidates) {
+            // Like the parse session, report the failure of skipped sentences.
+            if (candidate != previous + 1) {
+                line(source, 4, "report(start);");
+            }
+            line(source, 4, "if ((node = sentence" + names[phrase.getIndex()] + "_" + candidate + "(start)) != null) {");
+            line(source, 5, "return node;");
+            line(source, 4, "}");
+            previous = candidate;
+        }
+        line(source, 4, "break;");
+    }
+
+    private void generateSentence(StringBuilder source, CompiledPhrase phrase, int index) {
+        int[] sentence = phrase.getSentences()[index];
+        line(source, 1, "private SymbolTreeNode sentence" + names[phrase.getIndex()] + "_" + index + "(int start) {");
+        line(source, 2, "SymbolTreeNode node = new SymbolTreeNode(" + quote(phrase.getId()) + ");");
+        if (Arrays.stream(sentence).anyMatch(CompiledPhrase::isPhrase)) {
+            line(source, 2, "SymbolTreeNode child;");
+        }
+        line(source, 2, "int depth = start;");
+        int commit = commit(phrase, index);
+        for (int i = 0; i < sentence.length; i++) {
+            int word = sentence[i];
+            if (CompiledPhrase.isPhrase(word)) {
+                line(source, 2, "if ((child = parse" + names[~word] + "(depth)) == null) {");
+                if (i >= commit) {
+                    line(source, 3, "commit(start, depth);");
+                }
+                line(source, 3, "return null;");
+                line(source, 2, "}");
+                line(source, 2, "node.getChildren().add(child);");
+                line(source, 2, "depth = position;");
+            }
+            else {
+                line(source, 2, "if (lookahead(depth) != " + word + ") {");
+                line(source, 3, "report(depth);");
+                if (i >= commit) {
+                    line(source, 3, "commit(start, depth);");
+                }
+                line(source, 3, "return null;");
+                line(source, 2, "}");
+                line(source, 2, "node.getChildren().add(tokens.get(depth++));");
+            }
+        }
+        line(source, 2, "position = depth;");
+        line(source, 2, "return node;");
+        line(source, 1, "}");
+        source.append('\n');
+    }
+
+    /**
+     * Generates the evaluation of an operator phrase, which stops before
+     * an operator that is not followed by an operand.
+     */
+    private void generateOperation(StringBuilder source, CompiledPhrase phrase) {
+        String name = names[phrase.getIndex()];
+        String suffix = "_" + phrase.getIndex();
+        line(source, 1, "private SymbolTreeNode evaluate" + name + "(int start) {");
+        line(source, 2, "GrammarComponent first = operand" + name + "(start);");
+        line(source, 2, "if (first == null) {");
+        line(source, 3, "return null;");
+        line(source, 2, "}");
+        line(source, 2, "Operation operation = new Operation(" + quote(phrase.getId()) + ", first);");
+        line(source, 2, "int depth = position;");
+        line(source, 2, "while (OPERATORS" + suffix + "[lookahead(depth)]) {");
+        line(source, 3, "GrammarComponent operand = operand" + name + "(depth + 1);");
+        line(source, 3, "if (operand == null) {");
+        line(source, 4, "break;");
+        line(source, 3, "}");
+        line(source, 3, "int kind = kinds[depth];");
+        line(source, 3, "operation.push(PRECEDENCES" + suffix + "[kind], RIGHT" + suffix + "[kind], tokens.get(depth), operand);");
+        line(source, 3, "depth = position;");
+        line(source, 2, "}");
+        line(source, 2, "report(depth);");
+        line(source, 2, "position = depth;");
+        line(source, 2, "return operation.finish();");
+        line(source, 1, "}");
+        source.append('\n');
+        int operand = phrase.getOperand();
+        line(source, 1, "private GrammarComponent operand" + name + "(int start) {");
+        if (CompiledPhrase.isPhrase(operand)) {
+            line(source, 2, "return parse" + names[~operand] + "(start);");
+        }
+        else {
+            line(source, 2, "if (lookahead(start) == " + operand + ") {");
+            line(source, 3, "position = start + 1;");
+            line(source, 3, "return tokens.get(start);");
+            line(source, 2, "}");
+            line(source, 2, "report(start);");
+            line(source, 2, "return null;");
+        }
+        line(source, 1, "}");
+        source.append('\n');
+    }
+
+    /**
+     * Generates the evaluation of a repetition phrase, which matches its
+     * word as many times as it can, stopping where the word fails to match.
+     */
+    private void generateRepetition(StringBuilder source, CompiledPhrase phrase) {
+        String name = names[phrase.getIndex()];
+        Quantifier quantifier = phrase.getQuantifier();
+        int repeated = phrase.getRepeated();
+        line(source, 1, "private SymbolTreeNode evaluate" + name + "(int start) {");
+        line(source, 2, "SymbolTreeNode node = new SymbolTreeNode(" + quote(phrase.getId()) + ");");
+        line(source, 2, "int depth = start;");
+        String loop = (quantifier.getMax() == 1 ? "if" : "while") + " (REPEATS_" + phrase.getIndex() + "[lookahead(depth)]";
+        if (CompiledPhrase.isPhrase(repeated)) {
+            line(source, 2, "SymbolTreeNode child;");
+            line(source, 2, loop + " && (child = parse" + names[~repeated] + "(depth)) != null) {");
+            line(source, 3, "node.getChildren().add(child);");
+            line(source, 3, "depth = position;");
+        }
+        else {
+            // The lookahead token is predicted to be the repeated token.
+            line(source, 2, loop + ") {");
+            line(source, 3, "node.getChildren().add(tokens.get(depth++));");
+        }
+        // The word is expected where it stops, unless it matched the most times it may.
+        if (quantifier.getMax() == 1) {
+            line(source, 2, "}");
+            line(source, 2, "else {");
+            line(source, 3, "report(depth);");
+            line(source, 2, "}");
+        }
+        else {
+            line(source, 2, "}");
+            line(source, 2, "report(depth);");
+        }
+        if (quantifier.getMin() > 0) {
+            line(source, 2, "if (depth == start) {");
+            line(source, 3, "return null;");
+            line(source, 2, "}");
+        }
+        line(source, 2, "position = depth;");
+        line(source, 2, "return node;");
+        line(source, 1, "}");
+        source.append('\n');
+    }
+
+    private void generateHelpers(StringBuilder source) {
+        line(source, 1, "private int lookahead(int depth) {");
+        line(source, 2, "return depth < kinds.length ? kinds[depth] : UNKNOWN;");
+        line(source, 1, "}");
+        source.append('\n');
+        line(source, 1, "private void report(int depth) {");
+        line(source, 2, "if (depth < kinds.length && depth > failure) {");
+        line(source, 3, "failure = depth;");
+        line(source, 2, "}");
+        line(source, 1, "}");
+        source.append('\n');
+        if (committing) {
+            line(source, 1, "private static void commit(int start, int depth) {");
+            line(source, 2, "if (depth > start) {");
+            line(source, 3, "throw new Committed();");
+            line(source, 2, "}");
+            line(source, 1, "}");
+            source.append('\n');
+            line(source, 1, "// Thrown when a sentence fails past its commit point, which fails the parse outright.");
+            line(source, 1, "private static final class Committed extends RuntimeException {");
+            line(source, 2, "private Committed() {");
+            line(source, 3, "super(null, null, false, false);");
+            line(source, 2, "}");
+            line(source, 1, "}");
+            source.append('\n');
+        }
+        line(source, 1, "// Operands and operators of an operator phrase, each operator applied once the next binds looser.");
+        line(source, 1, "private static final class Operation {");
+        line(source, 2, "private final String phraseId;");
+        line(source, 2, "private final Deque<GrammarComponent> operands = new ArrayDeque<>();");
+        line(source, 2, "private final Deque<Token> operators = new ArrayDeque<>();");
+        line(source, 2, "private final Deque<Integer> precedences = new ArrayDeque<>();");
+        line(source, 2, "private final Deque<Boolean> right = new ArrayDeque<>();");
+        source.append('\n');
+        line(source, 2, "private Operation(String phraseId, GrammarComponent first) {");
+        line(source, 3, "this.phraseId = phraseId;");
+        line(source, 3, "operands.push(first);");
+        line(source, 2, "}");
+        source.append('\n');
+        line(source, 2, "private void push(int precedence, boolean rightAssociative, Token token, GrammarComponent operand) {");
+        line(source, 3, "while (!precedences.isEmpty() && (precedences.peek() > precedence");
+        line(source, 5, "|| precedences.peek() == precedence && !right.peek())) {");
+        line(source, 4, "apply();");
+        line(source, 3, "}");
+        line(source, 3, "precedences.push(precedence);");
+        line(source, 3, "right.push(rightAssociative);");
+        line(source, 3, "operators.push(token);");
+        line(source, 3, "operands.push(operand);");
+        line(source, 2, "}");
+        source.append('\n');
+        line(source, 2, "private SymbolTreeNode finish() {");
+        line(source, 3, "while (!operators.isEmpty()) {");
+        line(source, 4, "apply();");
+        line(source, 3, "}");
+        line(source, 3, "GrammarComponent result = operands.pop();");
+        line(source, 3, "if (result instanceof SymbolTreeNode) {");
+        line(source, 4, "return (SymbolTreeNode) result;");
+        line(source, 3, "}");
+        line(source, 3, "SymbolTreeNode node = new SymbolTreeNode(phraseId);");
+        line(source, 3, "node.getChildren().add(result);");
+        line(source, 3, "return node;");
+        line(source, 2, "}");
+        source.append('\n');
+        line(source, 2, "private void apply() {");
+        line(source, 3, "GrammarComponent operand = operands.pop();");
+        line(source, 3, "SymbolTreeNode node = new SymbolTreeNode(phraseId);");
+        line(source, 3, "node.getChildren().add(operands.pop());");
+        line(source, 3, "node.getChildren().add(operators.pop());");
+        line(source, 3, "node.getChildren().add(operand);");
+        line(source, 3, "precedences.pop();");
+        line(source, 3, "right.pop();");
+        line(source, 3, "operands.push(node);");
+        line(source, 2, "}");
+        line(source, 1, "}");
+    }
+
+    /**
+     * @param phrase A phrase.
+     * @param sentence Index of one of the phrase's sentences.
+     * @return Number of words before the commit point of the sentence, or
+     *         {@link Integer#MAX_VALUE} if it has none or it is ignored.
+     */
+    private int commit(CompiledPhrase phrase, int sentence) {
+        return table.isLeftRecursive(phrase.getId()) ? Integer.MAX_VALUE : phrase.getCommit(sentence);
+    }
+
+    /**
+     * @param phrase A phrase.
+     * @param kind Kind of the lookahead token.
+     * @return Indices of the phrase's candidate sentences for the token.
+     */
+    private List<Integer> candidates(CompiledPhrase phrase, int kind) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int candidate : table.predict(phrase, new int[] {kind}, 0)) {
+            candidates.add(candidate);
+        }
+        return candidates;
+    }
+
+    private static void line(StringBuilder source, int depth, String line) {
+        for (int i = 0; i < depth; i++) {
+            source.append(INDENT);
+        }
+        source.append(line).append('\n');
+    }
+
+    private static String join(Object[] values) {
+        return String.join(", ", Arrays.stream(values).map(String::valueOf).toArray(String[]::new));
+    }
+
+    private static String join(boolean[] values) {
+        String[] words = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            words[i] = String.valueOf(values[i]);
+        }
+        return String.join(", ", words);
+    }
+
+    /**
+     * @param text Any text.
+     * @return The text as a Java string literal.
+     */
+    private static String quote(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            }
+            else if (c < ' ' || c > '~') {
+                literal.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * @param text Any text.
+     * @return The text with backslashes escaped, so that it cannot form a unicode escape in a comment.
+     */
+    private static String comment(String text) {
+        return text.replace("\\", "\\\\").replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * @param id ID of a phrase.
+     * @return The ID with every character invalid in a Java identifier replaced.
+     */
+    private static String identifier(String id) {
+        StringBuilder identifier = new StringBuilder();
+        for (char c : id.toCharArray()) {
+            identifier.append(Character.isJavaIdentifierPart(c) && c < 128 ? c : '_');
+        }
+        return identifier.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+import java.util.List;
+
+/**
+ * Strategy for traversing the grammar while parsing. The recursive and
+ * iterative strategies produce the exact same symbol tree for the same
+ * grammar and tokens:
+ * <br />
+ * <ul>
+ *     <li>
+ *         Recursive - Descends into phrases using the thread's stack.
+ *                     This is the most efficient method.
+ *     </li>
+ *     <li>
+ *         Iterative - Descends into phrases using a stack kept on the heap.
+ *                     This is slightly less efficient, but can handle any
+ *                     amount of nesting.
+ *     </li>
+ *     <li>
+ *         General - Considers every sentence of every phrase at once rather
+ *                   than in order. Any grammar, including ambiguous ones,
+ *                   is parsed in polynomial time.
+ *     </li>
+ * </ul>
+ */
+public enum ParsingStrategy {
+
+    /**
+     * Default strategy. Phrases are parsed by recursively descending into
+     * their sentences, thus deeply nested input (e.g. thousands of nested
+     * brackets) may exhaust the thread's stack, which fails the parse.
+     */
+    RECURSIVE {
+        @Override
+        ParseSession newSession(Parser parser, List<Token> tokens, MemoTable memo) {
+            return new RecursiveParseSession(parser, tokens, memo);
+        }
+    },
+
+    /**
+     * Strategy that keeps the phrases being parsed on a stack in heap memory.
+     * Memory use grows predictably with the nesting depth of the input, and
+     * the thread's stack is never exhausted regardless of depth.
+     */
+    ITERATIVE {
+        @Override
+        ParseSession newSession(Parser parser, List<Token> tokens, MemoTable memo) {
+            return new IterativeParseSession(parser, tokens, memo);
+        }
+    },
+
+    /**
+     * Strategy that parses with the Earley algorithm, which follows every
+     * derivation of the tokens at the same time. This never backtracks, and
+     * its worst case is cubic in the number of tokens, even for ambiguous
+     * grammars; unambiguous input is parsed in near-linear time.
+     * <br />
+     * Since sentences are not tried in order, an earlier sentence does not
+     * shadow a later one. Where the tokens can be parsed into a phrase in
+     * more than one way, the parser's {@link Disambiguator} picks the node.
+     * The symbol tree is built recursively once every derivation is known,
+     * thus extremely deep nesting may still exhaust the thread's stack.
+     */
+    GENERAL {
+        @Override
+        ParseSession newSession(Parser parser, List<Token> tokens, MemoTable memo) {
+            return new EarleyParseSession(parser, tokens, memo);
+        }
+    };
+
+    /**
+     * Creates a new parse session for this strategy.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens, which may hold entries of a previous parse.
+     * @return New parse session.
+     */
+    abstract ParseSession newSession(Parser parser, List<Token> tokens, MemoTable memo);
+}
@@ -4,14 +4,40 @@ import dev.houshce29.cc.common.GrammarComponent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a collection of tokens or other phrases that form grammar.
+ * A phrase may instead be an operator phrase, whose operands are joined by
+ * binary operators, or the repetition phrase implied by a quantified word.
  */
 public class Phrase implements GrammarComponent {
+    /**
+     * Marker of the commit point of a sentence, past which a failure is a syntax
+     * error rather than a cue to try the next sentence; it is not a word of the sentence.
+     */
+    public static final String COMMIT = "<COMMIT>";
+    /**
+     * Prefix of a word that is a token ID matched as is, even if it ends with
+     * the suffix of a {@link Quantifier}; the prefix is not part of the ID.
+     */
+    public static final String LITERAL = "\\";
     private final String id;
     private final List<List<String>> sentences;
+    private final List<Integer> commits;
+    private final String operand;
+    private final Map<String, Operator> operators;
+    private final boolean parallel;
+    private final boolean lazy;
+    private final String repeated;
+    private final Quantifier quantifier;
+    private final Set<String> literals;
 
     /**
      * Privately creates a phrase.
@@ -19,19 +45,117 @@ public class Phrase implements GrammarComponent {
      *           WARNING: having this identifier the same
      *           as a token can cause the token to be ignored.
      * @param sentences List of list of tokens and other phrases making up grammar.
+     * @param commits Commit point of each sentence, or -1 for those without.
+     * @param operand Word of the operands if this is an operator phrase, otherwise `null`.
+     * @param operators Operators keyed from their token IDs.
+     * @param parallel Whether the sentences are tried concurrently.
+     * @param lazy Whether the children of the phrase's nodes are parsed when first read.
+     * @param repeated Word repeated if this is a repetition phrase, otherwise `null`.
+     * @param quantifier Number of times the word is repeated, or `null`.
+     * @param literals Words of the phrase that are token IDs matched as is.
      */
-    private Phrase(String id, List<List<String>> sentences) {
+    private Phrase(String id, List<List<String>> sentences, List<Integer> commits,
+                   String operand, Map<String, Operator> operators, boolean parallel,
+                   boolean lazy, String repeated, Quantifier quantifier, Set<String> literals) {
         this.id = id;
         this.sentences = sentences;
+        this.commits = commits;
+        this.operand = operand;
+        this.operators = operators;
+        this.parallel = parallel;
+        this.lazy = lazy;
+        this.repeated = repeated;
+        this.quantifier = quantifier;
+        this.literals = literals;
     }
 
     /**
+     * Returns all sentences for this phrase. The sentences of an
+     * operator phrase are its equivalent in plain grammar: the operand,
+     * followed by `PHRASE OPERATOR PHRASE` for each operator. Those of a
+     * repetition phrase are right-recursive, e.g. `ITEM ITEM*` and nothing
+     * for `ITEM*`.
      * @return All sentences for this phrase.
      */
     public List<List<String>> getSentences() {
         return sentences;
     }
 
+    /**
+     * Returns the commit point of a sentence.
+     * @param sentence Index of a sentence.
+     * @return Number of words before the commit point, or -1 if the sentence has none.
+     */
+    public int getCommit(int sentence) {
+        return commits.get(sentence);
+    }
+
+    /**
+     * @return `true` if the sentences of this phrase are tried concurrently.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @return `true` if the children of the nodes of this phrase are parsed when first read.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * @return `true` if this is an operator phrase.
+     */
+    public boolean isOperatorPhrase() {
+        return operand != null;
+    }
+
+    /**
+     * @return Word of the operands of this operator phrase, or `null` if this is not one.
+     */
+    public String getOperand() {
+        return operand;
+    }
+
+    /**
+     * Returns the operator of the given token.
+     * @param tokenId ID of the token.
+     * @return The operator, or `null` if the token is not an operator of this phrase.
+     */
+    public Operator getOperator(String tokenId) {
+        return operators.get(tokenId);
+    }
+
+    /**
+     * @return `true` if this is a repetition phrase, implied by a quantified word.
+     */
+    public boolean isRepetition() {
+        return quantifier != null;
+    }
+
+    /**
+     * @return Word repeated by this repetition phrase, or `null` if this is not one.
+     */
+    public String getRepeated() {
+        return repeated;
+    }
+
+    /**
+     * @return Number of times the word of this repetition phrase is repeated, or `null` if this is not one.
+     */
+    public Quantifier getQuantifier() {
+        return quantifier;
+    }
+
+    /**
+     * @return Words of this phrase that are token IDs matched as is, given
+     *         with the {@link #LITERAL} prefix or as operators.
+     */
+    Set<String> getLiterals() {
+        return literals;
+    }
+
     @Override
     public String getId() {
         return id;
@@ -50,8 +174,15 @@ public class Phrase implements GrammarComponent {
                 .replaceAll(".", " ");
 
         for (int i = 0; i < sentences.size(); i++) {
-            for (String word : sentences.get(i)) {
-                builder.append(word).append(" ");
+            List<String> sentence = sentences.get(i);
+            for (int j = 0; j < sentence.size(); j++) {
+                if (j == commits.get(i)) {
+                    builder.append(COMMIT).append(" ");
+                }
+                builder.append(sentence.get(j)).append(" ");
+            }
+            if (sentence.size() == commits.get(i)) {
+                builder.append(COMMIT).append(" ");
             }
             builder.append("\n");
             if (i < sentences.size() - 1) {
@@ -66,12 +197,92 @@ public class Phrase implements GrammarComponent {
         return new Builder(id);
     }
 
+    /**
+     * Creates the repetition phrase implied by a quantified word.
+     * @param word Quantified word, which is the ID of the phrase.
+     * @return New repetition phrase, or `null` if the word is not quantified.
+     */
+    static Phrase repetition(String word) {
+        Quantifier quantifier = Quantifier.of(word);
+        if (quantifier == null) {
+            return null;
+        }
+        String repeated = word.substring(0, word.length() - 1);
+        List<List<String>> equivalent = new ArrayList<>();
+        if (quantifier == Quantifier.OPTIONAL) {
+            equivalent.add(Collections.singletonList(repeated));
+        }
+        else {
+            equivalent.add(Arrays.asList(repeated, word));
+        }
+        equivalent.add(quantifier == Quantifier.ONE_OR_MORE
+                ? Collections.singletonList(repeated)
+                : Collections.emptyList());
+        return new Phrase(word, equivalent, Collections.nCopies(equivalent.size(), -1),
+                null, Collections.emptyMap(), false, false, repeated, quantifier, Collections.emptySet());
+    }
+
+    /**
+     * A binary operator of an operator phrase.
+     */
+    public static final class Operator {
+        private final String tokenId;
+        private final int precedence;
+        private final Associativity associativity;
+
+        private Operator(String tokenId, int precedence, Associativity associativity) {
+            this.tokenId = tokenId;
+            this.precedence = precedence;
+            this.associativity = associativity;
+        }
+
+        /**
+         * @return ID of the operator's token.
+         */
+        public String getTokenId() {
+            return tokenId;
+        }
+
+        /**
+         * @return Precedence of the operator; higher precedence binds tighter.
+         */
+        public int getPrecedence() {
+            return precedence;
+        }
+
+        /**
+         * @return Grouping of consecutive operators of the same precedence.
+         */
+        public Associativity getAssociativity() {
+            return associativity;
+        }
+
+        /**
+         * Determines if this operator takes the operand between it and
+         * the given operator that follows it.
+         * @param next Operator that follows this one.
+         * @return `true` if this operator binds before the next one.
+         */
+        boolean bindsBefore(Operator next) {
+            return precedence > next.precedence
+                    || (precedence == next.precedence && associativity == Associativity.LEFT);
+        }
+    }
+
     /**
      * Builder for creating phrases.
      */
     public static final class Builder {
         private final String id;
         private List<List<String>> sentences = new ArrayList<>();
+        private final List<Integer> commits = new ArrayList<>();
+        private String operand;
+        private final Map<String, Operator> operators = new LinkedHashMap<>();
+        private boolean parallel;
+        private boolean lazy;
+        // Words given with the literal prefix, and quantified words given without it.
+        private final Set<String> literals = new HashSet<>();
+        private final Set<String> quantified = new HashSet<>();
 
         private Builder(String id) {
             this.id = id;
@@ -90,11 +301,69 @@ public class Phrase implements GrammarComponent {
         /**
          * Adds a sentence to the phrase being built.
          * @param sentence Ordered list of each word (e.g. token or phrase)
-         *                 for this phrase being built.
+         *                 for this phrase being built, optionally with a
+         *                 {@link Phrase#COMMIT} marker. A word may be quantified
+         *                 with a {@link Quantifier} suffix, or given with the
+         *                 {@link Phrase#LITERAL} prefix to be matched as is.
+         * @return This builder.
+         * @throws IllegalArgumentException If the sentence has more than one commit point.
+         */
+        public Builder addSentence(List<String> sentence) throws IllegalArgumentException {
+            int commit = sentence.indexOf(COMMIT);
+            if (commit >= 0 && commit != sentence.lastIndexOf(COMMIT)) {
+                throw new IllegalArgumentException("Sentence of phrase " + id + " has more than one commit point.");
+            }
+            List<String> words = new ArrayList<>(sentence.size());
+            for (String word : sentence) {
+                if (!COMMIT.equals(word)) {
+                    words.add(word(word));
+                }
+            }
+            sentences.add(words);
+            commits.add(commit);
+            return this;
+        }
+
+        /**
+         * Makes the phrase being built an operator phrase by
+         * declaring the word of its operands.
+         * @param operand Word (e.g. token or phrase) of each operand.
+         * @return This builder.
+         */
+        public Builder setOperand(String operand) {
+            this.operand = word(operand);
+            return this;
+        }
+
+        /**
+         * Adds a binary operator to the operator phrase being built.
+         * @param tokenId ID of the operator's token.
+         * @param precedence Precedence of the operator; higher precedence binds tighter.
+         * @param associativity Grouping of consecutive operators of the same precedence.
+         * @return This builder.
+         */
+        public Builder addOperator(String tokenId, int precedence, Associativity associativity) {
+            operators.put(tokenId, new Operator(tokenId, precedence, associativity));
+            return this;
+        }
+
+        /**
+         * Sets whether the sentences of the phrase being built are tried concurrently.
+         * @param parallel `true` to try the sentences concurrently.
+         * @return This builder.
+         */
+        public Builder setParallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        /**
+         * Sets whether the children of the nodes of the phrase being built are parsed when first read.
+         * @param lazy `true` to parse the children when first read.
          * @return This builder.
          */
-        public Builder addSentence(List<String> sentence) {
-            sentences.add(sentence);
+        public Builder setLazy(boolean lazy) {
+            this.lazy = lazy;
             return this;
         }
 
@@ -103,7 +372,55 @@ public class Phrase implements GrammarComponent {
          * @return New phrase instance.
          */
         public Phrase build() {
-            return new Phrase(id, sentences);
+            for (String literal : literals) {
+                if (quantified.contains(literal)) {
+                    throw new IllegalArgumentException("Word " + literal + " of phrase " + id
+                            + " is both quantified and matched as is.");
+                }
+            }
+            if (operand == null) {
+                if (!operators.isEmpty()) {
+                    throw new IllegalArgumentException("Operator phrase " + id + " requires an operand.");
+                }
+                return new Phrase(id, sentences, commits, null, Collections.emptyMap(), parallel, lazy, null, null,
+                        new HashSet<>(literals));
+            }
+            if (!sentences.isEmpty()) {
+                throw new IllegalArgumentException("Operator phrase " + id + " cannot also have sentences.");
+            }
+            if (parallel) {
+                throw new IllegalArgumentException("Operator phrase " + id + " cannot be parallel.");
+            }
+            if (lazy) {
+                throw new IllegalArgumentException("Operator phrase " + id + " cannot be lazy.");
+            }
+            List<List<String>> equivalent = new ArrayList<>();
+            equivalent.add(Collections.singletonList(operand));
+            // Operators are token IDs, never quantified.
+            Set<String> matchedAsIs = new HashSet<>(literals);
+            for (String tokenId : operators.keySet()) {
+                equivalent.add(Arrays.asList(id, tokenId, id));
+                matchedAsIs.add(tokenId);
+            }
+            return new Phrase(id, equivalent, Collections.nCopies(equivalent.size(), -1),
+                    operand, new HashMap<>(operators), false, false, null, null, matchedAsIs);
+        }
+
+        /**
+         * Strips the literal prefix off a word, noting which words are matched as is.
+         * @param word Word as given.
+         * @return Word of the phrase.
+         */
+        private String word(String word) {
+            if (word.startsWith(LITERAL) && word.length() > LITERAL.length()) {
+                String literal = word.substring(LITERAL.length());
+                literals.add(literal);
+                return literal;
+            }
+            if (Quantifier.of(word) != null) {
+                quantified.add(word);
+            }
+            return word;
         }
     }
 }
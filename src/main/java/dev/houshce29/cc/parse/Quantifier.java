@@ -0,0 +1,87 @@
+package dev.houshce29.cc.parse;
+
+/**
+ * Number of times a quantified word of a sentence is repeated, written
+ * as a suffix of the word:
+ * <br />
+ * <ul>
+ *     <li>
+ *         Optional - `ITEM?` matches `ITEM` at most once.
+ *     </li>
+ *     <li>
+ *         Zero or more - `ITEM*` matches `ITEM` any number of times.
+ *     </li>
+ *     <li>
+ *         One or more - `ITEM+` matches `ITEM` at least once.
+ *     </li>
+ * </ul>
+ * A word given with the {@link Phrase#LITERAL} prefix, e.g. `\C++`, is a
+ * token ID matched as is instead.
+ */
+public enum Quantifier {
+
+    /**
+     * The word matches at most once.
+     */
+    OPTIONAL('?', 0, 1),
+
+    /**
+     * The word matches any number of times.
+     */
+    ZERO_OR_MORE('*', 0, Integer.MAX_VALUE),
+
+    /**
+     * The word matches at least once.
+     */
+    ONE_OR_MORE('+', 1, Integer.MAX_VALUE);
+
+    private final char suffix;
+    private final int min;
+    private final int max;
+
+    Quantifier(char suffix, int min, int max) {
+        this.suffix = suffix;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return Suffix of the quantified word.
+     */
+    public char getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return Fewest times the word must match.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return Most times the word may match.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the quantifier of a word, which is any word ending
+     * with the suffix of a quantifier, other than the suffix alone.
+     * @param word Word of a sentence.
+     * @return The quantifier, or `null` if the word is not quantified.
+     */
+    static Quantifier of(String word) {
+        if (word.length() < 2) {
+            return null;
+        }
+        char last = word.charAt(word.length() - 1);
+        for (Quantifier quantifier : values()) {
+            if (quantifier.suffix == last) {
+                return quantifier;
+            }
+        }
+        return null;
+    }
+}
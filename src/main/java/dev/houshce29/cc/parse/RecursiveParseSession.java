@@ -0,0 +1,372 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Parse session that descends into phrases recursively. Nesting
+ * depth is bounded by the size of the thread's stack.
+ */
+final class RecursiveParseSession extends ParseSession {
+
+    /**
+     * Creates a new instance.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @param memo Memo table for the tokens.
+     */
+    RecursiveParseSession(Parser parser, List<Token> tokens, MemoTable memo) {
+        super(parser, tokens, memo);
+    }
+
+    /**
+     * Creates a new instance that parses the same tokens as another session.
+     * @param parent Session to fork from.
+     * @param memo Memo table of the new session.
+     */
+    private RecursiveParseSession(RecursiveParseSession parent, MemoTable memo) {
+        super(parent, memo);
+    }
+
+    @Override
+    SymbolTreeNode parse(CompiledPhrase phrase, int start) {
+        return parseUsingPhrase(phrase, start);
+    }
+
+    @Override
+    ParseSession fork(MemoTable memo) {
+        return new RecursiveParseSession(this, memo);
+    }
+
+    @Override
+    SymbolTreeNode parseSentence(CompiledPhrase phrase, int sentence, int start) {
+        return parseUsingSentence(phrase, sentence, start, null, 0);
+    }
+
+    /**
+     * Internally parses tokens within the constraint of a given phrase.
+     * @param phrase Current phrase to parse against.
+     * @param start Position of the first token to parse.
+     * @return Tree node if parsing against the phrase resolves, otherwise `null`.
+     */
+    private SymbolTreeNode parseUsingPhrase(CompiledPhrase phrase, int start) {
+        checkCancelled();
+        if (phrase.isInlined()) {
+            return parseInline(phrase, start);
+        }
+        MemoTable.Entry entry = recall(phrase, start);
+        if (entry == null) {
+            MemoTable.LeftRecursion application = new MemoTable.LeftRecursion(phrase, applications);
+            applications = application;
+            entry = new MemoTable.Entry(application);
+            memo.put(phrase, start, entry);
+            openApplication(application, start);
+            if (profile != null) {
+                profile.enter(phrase);
+            }
+            SymbolTreeNode node = evaluate(phrase, start);
+            popApplication();
+            entry.length = position - start;
+            // Phrase turned out to be left-recursive; grow it from its seed.
+            if (application.head != null) {
+                application.seed = node;
+                node = answerLeftRecursion(phrase, start, entry);
+            }
+            else {
+                entry.leftRecursion = null;
+                entry.node = node;
+            }
+            settleApplication(application, start, entry);
+            if (profile != null) {
+                profile.exit();
+            }
+            return node;
+        }
+        position = start + entry.length;
+        recallEntry(phrase, start, entry);
+        // Phrase was applied again before its first application finished.
+        if (entry.leftRecursion != null) {
+            return recallLeftRecursion(entry);
+        }
+        return entry.node;
+    }
+
+    /**
+     * Tries each candidate sentence of the phrase in order. A candidate
+     * resumes after the words it shares with the previous one that matched.
+     * @param phrase Phrase to evaluate.
+     * @param start Position of the first token to parse.
+     * @return Node of the first matching sentence, otherwise `null`.
+     */
+    private SymbolTreeNode evaluate(CompiledPhrase phrase, int start) {
+        if (phrase.isOperatorPhrase()) {
+            return evaluateOperation(phrase, start);
+        }
+        if (phrase.isRepetition()) {
+            return evaluateRepetition(phrase, start);
+        }
+        if (isLazy(phrase, start)) {
+            return defer(phrase, start);
+        }
+        if (isSpeculative(phrase)) {
+            return speculate(phrase, start);
+        }
+        Attempt attempt = phrase.isSharingPrefixes() ? new Attempt(phrase, start) : null;
+        int previous = -1;
+        for (int index : predict(phrase, start)) {
+            reportSkipped(index, previous, start);
+            int resume = attempt == null || previous < 0 ? 0
+                    : Math.min(attempt.matched, phrase.getSharedPrefix(index, previous));
+            SymbolTreeNode node = parseUsingSentence(phrase, index, start, attempt, resume);
+            if (node != null) {
+                return node;
+            }
+            previous = index;
+        }
+        // We're targeting a specific path within the token list,
+        // so it's not a big deal if this doesn't resolve.
+        report(start);
+        return null;
+    }
+
+    /**
+     * Parses operands joined by the operators of an operator phrase. Parsing
+     * stops before an operator that is not followed by an operand.
+     * @param phrase Operator phrase to evaluate.
+     * @param start Position of the first token to parse.
+     * @return Node of the loosest operator, or of the sole operand; otherwise `null`.
+     */
+    private SymbolTreeNode evaluateOperation(CompiledPhrase phrase, int start) {
+        GrammarComponent first = parseOperand(phrase.getOperand(), start);
+        if (first == null) {
+            return null;
+        }
+        OperatorStack stack = newOperation(phrase.getId(), first);
+        int depth = position;
+        Phrase.Operator operator;
+        while ((operator = phrase.getOperator(lookahead(depth))) != null) {
+            GrammarComponent operand = parseOperand(phrase.getOperand(), depth + 1);
+            if (operand == null) {
+                break;
+            }
+            stack.push(operator, tokens.get(depth), operand);
+            depth = position;
+        }
+        report(depth);
+        position = depth;
+        return stack.finish();
+    }
+
+    /**
+     * Parses the word of a repetition phrase as many times as it matches, in a
+     * single loop. Parsing stops where the word fails to match; matches are
+     * never given back for whatever follows the repetition to match instead.
+     * @param phrase Repetition phrase to evaluate.
+     * @param start Position of the first token to parse.
+     * @return Node holding every match of the word, otherwise `null` if it matched too few times.
+     */
+    private SymbolTreeNode evaluateRepetition(CompiledPhrase phrase, int start) {
+        SymbolTreeNode node = newNode(phrase.getId());
+        int depth = start;
+        int count = 0;
+        while (repeats(phrase, count, depth)) {
+            GrammarComponent element = parseOperand(phrase.getRepeated(), depth);
+            if (element == null) {
+                break;
+            }
+            addChild(node, element);
+            depth = position;
+            count++;
+        }
+        // The word is expected where it stops, unless it matched the most times it may.
+        if (count < phrase.getQuantifier().getMax()) {
+            report(depth);
+        }
+        if (count < phrase.getQuantifier().getMin()) {
+            return null;
+        }
+        position = depth;
+        return node;
+    }
+
+    /**
+     * Parses a single operand of an operator phrase, or a single match of the word of a repetition phrase.
+     * @param operand Word of the operand.
+     * @param start Position of the first token to parse.
+     * @return Node or token of the operand if it resolves, otherwise `null`.
+     */
+    private GrammarComponent parseOperand(int operand, int start) {
+        CompiledPhrase phrase = find(operand);
+        if (phrase != null) {
+            return parseUsingPhrase(phrase, start);
+        }
+        if (matches(operand, start)) {
+            position = start + 1;
+            return tokens.get(start);
+        }
+        report(start);
+        return null;
+    }
+
+    /**
+     * Internally parses tokens within the constraints of a given sentence.
+     * @param phrase Phrase that owns the sentence.
+     * @param index Index of the sentence to attempt to parse with.
+     * @param start Position of the first token to parse.
+     * @param attempt Words of the previous sentence that matched, or `null` if not kept.
+     * @param resume Number of leading words already matched by the previous sentence.
+     * @return Tree node if parsing against the current sentence resolves, otherwise `null`.
+     */
+    private SymbolTreeNode parseUsingSentence(CompiledPhrase phrase, int index, int start,
+                                              Attempt attempt, int resume) {
+        int[] sentence = phrase.getSentences()[index];
+        SymbolTreeNode node = newNode(phrase.getId());
+        int depth = start;
+        if (resume > 0) {
+            for (int i = 0; i < resume && !recognizing; i++) {
+                addChild(node, attempt.node.getChildren().get(i));
+            }
+            depth = attempt.depths[resume];
+        }
+        if (attempt != null) {
+            attempt.node = node;
+            attempt.matched = resume;
+        }
+        if (profile != null) {
+            profile.attempted(phrase, index);
+        }
+        int resumed = depth;
+        for (int i = resume; i < sentence.length; i++) {
+            int word = sentence[i];
+            CompiledPhrase wordPhrase = find(word);
+            // This is a phrase, thus need to dig in recursively and dig out children.
+            // If this child does not parse out, this tree path does not work.
+            if (wordPhrase != null) {
+                SymbolTreeNode child = parseUsingPhrase(wordPhrase, depth);
+                if (child == null) {
+                    if (profile != null) {
+                        profile.failed(phrase, index, depth - resumed);
+                    }
+                    checkCommit(phrase, index, i, start, depth);
+                    return null;
+                }
+                addChild(node, child);
+                depth = position;
+            }
+            // Else check token match
+            else if (matches(word, depth)) {
+                // Consume the token and push the depth up
+                addChild(node, tokens.get(depth));
+                depth++;
+            }
+            // Else, this doesn't match
+            else {
+                report(depth);
+                if (profile != null) {
+                    profile.failed(phrase, index, depth - resumed);
+                }
+                checkCommit(phrase, index, i, start, depth);
+                return null;
+            }
+            if (attempt != null) {
+                attempt.depths[++attempt.matched] = depth;
+            }
+        }
+        // If the entire sentence is traversed, then a node is successfully formed.
+        position = depth;
+        return node;
+    }
+
+    /**
+     * Recalls the memoized application of a phrase, taking into account
+     * any left recursion being grown at the position.
+     * @param phrase Phrase being applied.
+     * @param start Position the phrase is applied at.
+     * @return Memoized entry, or `null` if the phrase must be evaluated.
+     */
+    private MemoTable.Entry recall(CompiledPhrase phrase, int start) {
+        MemoTable.Entry entry = memo.get(phrase, start);
+        MemoTable.Head head = memo.getHead(start);
+        if (head == null) {
+            return entry;
+        }
+        // Phrases not involved in the growing recursion may not take part in it;
+        // those unable to reach its head are unaffected by it and evaluated as usual.
+        if (entry == null && !head.involves(phrase) && table.leftReaches(phrase, head.phrase)) {
+            return new MemoTable.Entry((SymbolTreeNode) null);
+        }
+        // Involved phrases are re-evaluated once per growth.
+        if (entry != null && head.reevaluate(phrase)) {
+            entry.node = evaluate(phrase, start);
+            entry.leftRecursion = null;
+            entry.length = position - start;
+        }
+        return entry;
+    }
+
+    /**
+     * Answers the first application of a left-recursive phrase. Only the
+     * head of the recursion is grown; involved phrases answer their seed.
+     * @param phrase Applied phrase.
+     * @param start Position the phrase was applied at.
+     * @param entry Memoized entry of the application.
+     * @return Resulting node, otherwise `null`.
+     */
+    private SymbolTreeNode answerLeftRecursion(CompiledPhrase phrase, int start, MemoTable.Entry entry) {
+        MemoTable.LeftRecursion recursion = entry.leftRecursion;
+        if (recursion.head.phrase != phrase) {
+            return recursion.seed;
+        }
+        entry.leftRecursion = null;
+        entry.node = recursion.seed;
+        if (entry.node == null) {
+            return null;
+        }
+        return growLeftRecursion(phrase, start, entry, recursion.head);
+    }
+
+    /**
+     * Repeatedly re-evaluates the head of a left recursion, each time
+     * consuming the previous result, until it no longer grows.
+     * @param phrase Head phrase.
+     * @param start Position the phrase was applied at.
+     * @param entry Memoized entry of the head, holding the seed.
+     * @param head Left recursion being grown.
+     * @return Largest node grown.
+     */
+    private SymbolTreeNode growLeftRecursion(CompiledPhrase phrase, int start, MemoTable.Entry entry,
+                                             MemoTable.Head head) {
+        memo.setHead(start, head);
+        while (true) {
+            head.eval = (BitSet) head.involved.clone();
+            SymbolTreeNode node = evaluate(phrase, start);
+            if (node == null || position <= start + entry.length) {
+                break;
+            }
+            entry.node = node;
+            entry.length = position - start;
+        }
+        memo.setHead(start, null);
+        position = start + entry.length;
+        return entry.node;
+    }
+
+    /**
+     * The words of the sentence last tried by an evaluation that matched,
+     * kept for the next candidate to resume after those it shares.
+     */
+    private static final class Attempt {
+        // Position after each matched word, starting with the position before the first.
+        private final int[] depths;
+        private SymbolTreeNode node;
+        private int matched;
+
+        private Attempt(CompiledPhrase phrase, int start) {
+            this.depths = new int[phrase.getLongestSentence() + 1];
+            this.depths[0] = start;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a token list into segments that start at sync tokens and parses
+ * a phrase against each segment concurrently. The memo tables of the
+ * segments are then spliced into one for the whole token list, keeping
+ * only the entries that never examined past the end of their segment.
+ * Such entries are exactly what a parse of the whole list would memoize,
+ * so the sequential parse that follows recalls them rather than parsing
+ * the segments again, and produces the same symbol tree.
+ */
+final class Segmenter {
+    // Most tokens parsed by a single task before its segments are split among more tasks.
+    private static final int TASK_TOKENS = 2048;
+    private final String phraseId;
+    private final Set<String> syncTokenIds;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new instance.
+     * @param phraseId ID of the phrase to parse each segment against.
+     * @param syncTokenIds IDs of the tokens that start a segment.
+     * @param pool Pool to parse the segments on.
+     */
+    Segmenter(String phraseId, Set<String> syncTokenIds, ForkJoinPool pool) {
+        this.phraseId = phraseId;
+        this.syncTokenIds = syncTokenIds;
+        this.pool = pool;
+    }
+
+    /**
+     * @return ID of the phrase each segment is parsed against.
+     */
+    String getPhraseId() {
+        return phraseId;
+    }
+
+    /**
+     * Parses the segments of the token list concurrently.
+     * @param parser Parser whose grammar to parse against.
+     * @param tokens Tokens to parse.
+     * @return Memo table for the whole token list, holding the entries of the segments.
+     */
+    MemoTable parse(Parser parser, List<Token> tokens) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 1; i < tokens.size(); i++) {
+            if (syncTokenIds.contains(tokens.get(i).getId())) {
+                starts.add(i);
+            }
+        }
+        starts.add(tokens.size());
+        MemoTable[] segments = new MemoTable[starts.size() - 1];
+        pool.invoke(new SegmentTask(parser, tokens, starts, segments, 0, segments.length));
+
+        MemoTable memo = new MemoTable(parser.getCompiledGrammar(), tokens.size());
+        for (int i = 0; i < segments.length; i++) {
+            memo.splice(segments[i], starts.get(i));
+        }
+        return memo;
+    }
+
+    /**
+     * Task parsing a range of segments, which is split in half until small enough.
+     */
+    private final class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Parser parser;
+        private final List<Token> tokens;
+        private final List<Integer> starts;
+        private final MemoTable[] segments;
+        private final int from;
+        private final int to;
+
+        private SegmentTask(Parser parser, List<Token> tokens, List<Integer> starts,
+                            MemoTable[] segments, int from, int to) {
+            this.parser = parser;
+            this.tokens = tokens;
+            this.starts = starts;
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && starts.get(to) - starts.get(from) > TASK_TOKENS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentTask(parser, tokens, starts, segments, from, middle),
+                        new SegmentTask(parser, tokens, starts, segments, middle, to));
+                return;
+            }
+            CompiledPhrase phrase = parser.getCompiledGrammar().get(phraseId);
+            for (int i = from; i < to; i++) {
+                List<Token> segment = tokens.subList(starts.get(i), starts.get(i + 1));
+                MemoTable memo = new MemoTable(parser.getCompiledGrammar(), segment.size());
+                // Whether the segment parses does not matter; the entries are kept either way.
+                ParseSession session = parser.getStrategy().newSession(parser, segment, memo);
+                try {
+                    session.parse(phrase, 0);
+                }
+                catch (ParseSession.CommitFailure failure) {
+                    // Unless it fails past a commit point, leaving applications unfinished.
+                    memo = new MemoTable(parser.getCompiledGrammar(), segment.size());
+                }
+                finally {
+                    session.recordProfile();
+                }
+                segments[i] = memo;
+            }
+        }
+    }
+}
@@ -7,19 +7,37 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract symbol tree containing parsed syntax.
  */
 public class SymbolTree {
     private final SymbolTreeNode root;
+    // Memo table of the parse that produced this tree, kept for re-parsing edits.
+    private final MemoTable memo;
+    // Components by ID, built by the first search and rebuilt once the tree is modified.
+    private volatile SymbolTreeIndex index;
 
     /**
      * Creates a new instance off of the given node as the root.
      * @param root Root of the tree.
      */
     public SymbolTree(SymbolTreeNode root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a new instance off of the given node as the root,
+     * keeping the memo table of the parse that produced it.
+     * @param root Root of the tree.
+     * @param memo Memo table of the parse, or `null`.
+     */
+    SymbolTree(SymbolTreeNode root, MemoTable memo) {
         this.root = root;
+        this.memo = memo;
     }
 
     /**
@@ -69,10 +87,12 @@ public class SymbolTree {
      * <pre>{@code
      *   [ROOT, SUM, LITERAL:1, PLUS:+, LITERAL:2, DIFF, LITERAL:3, MINUS:-, LITERAL:1]
      * }</pre>
-     * @return
+     * @return Ordered list of grammar components.
      */
     public List<GrammarComponent> flatten() {
-        return flatten(root);
+        List<GrammarComponent> flat = new ArrayList<>();
+        spliterator().forEachRemaining(flat::add);
+        return flat;
     }
 
     /**
@@ -81,45 +101,57 @@ public class SymbolTree {
      */
     public List<String> flattenAsString() {
         List<String> asString = new ArrayList<>();
-        for (GrammarComponent component : flatten()) {
-            StringBuilder builder = new StringBuilder(component.getId());
-            if (component instanceof Token) {
-                builder.append(":")
-                        .append(((Token) component).getValue());
-            }
-            asString.add(builder.toString());
-        }
+        spliterator().forEachRemaining(component -> asString.add(component instanceof Token
+                ? component.getId() + ":" + ((Token) component).getValue()
+                : component.getId()));
         return asString;
     }
 
     /**
-     * Recursively flattens a node's structure.
-     * @param node Node to flatten.
-     * @return Ordered list of grammar components.
+     * Streams the components of this tree in the order of {@link #flatten()},
+     * without building any intermediate list. The stream may be made parallel,
+     * in which case it is split into whole subtrees. The tree must not be
+     * modified while streamed.
+     * @return Ordered stream of grammar components.
      */
-    private List<GrammarComponent> flatten(SymbolTreeNode node) {
-        List<GrammarComponent> flat = new ArrayList<>();
-        flat.add(node);
-        for (GrammarComponent component : node.getChildren()) {
-            if (component instanceof SymbolTreeNode) {
-                flat.addAll(flatten((SymbolTreeNode) component));
-            }
-            else {
-                flat.add(component);
-            }
-        }
-        return flat;
+    public Stream<GrammarComponent> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Traverses the components of this tree in the order of {@link #flatten()},
+     * on an explicit stack rather than by recursion, thus regardless of depth.
+     * It splits off the first half of the outermost siblings left to visit,
+     * along with everything before them.
+     * @return Ordered spliterator of grammar components.
+     */
+    public Spliterator<GrammarComponent> spliterator() {
+        return new SymbolTreeSpliterator(root);
     }
 
     /**
      * Finds all components within the tree of the given type and ID.
+     * The first search indexes the components of the tree by ID, in a
+     * single traversal, and later searches only read the index, until
+     * the children of any node are modified.
      * @param id ID to search for.
      * @param type Type of component to return.
      * @param <T> Type of component to return.
-     * @return List of components of the given type and ID.
+     * @return List of components of the given type and ID, in document order.
      */
     public <T extends GrammarComponent> List<T> find(String id, Class<T> type) {
-        return findIn(root, id, type);
+        SymbolTreeIndex current = index;
+        if (current == null || current.isStale()) {
+            current = new SymbolTreeIndex(root);
+            index = current;
+        }
+        List<T> found = new ArrayList<>();
+        for (GrammarComponent component : current.get(id)) {
+            if (type.isInstance(component)) {
+                found.add(type.cast(component));
+            }
+        }
+        return found;
     }
 
     /**
@@ -137,26 +169,10 @@ public class SymbolTree {
     }
 
     /**
-     * Internal recursive method to find all matching components within a node and downward.
-     * @param node Node to search in (including its descendants).
-     * @param id ID to search for.
-     * @param type Type of component to return.
-     * @param <T> Type of component to return.
-     * @return List of components of the given type and ID within the node.
+     * @return Memo table of the parse that produced this tree, or `null` if not kept.
      */
-    private <T extends GrammarComponent> List<T> findIn(SymbolTreeNode node, String id, Class<T> type) {
-        List<T> found = new ArrayList<>();
-        for (GrammarComponent component : node.getChildren()) {
-            // Add if type and ID are equal
-            if (type.isInstance(component) && id.equals(component.getId())) {
-                found.add(type.cast(component));
-            }
-            // If a node, examine further down the tree as well and add all
-            if (component instanceof SymbolTreeNode) {
-                found.addAll(findIn((SymbolTreeNode) component, id, type));
-            }
-        }
-        return found;
+    MemoTable getMemo() {
+        return memo;
     }
 
     /**
@@ -0,0 +1,166 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact symbol tree, built from the events of a parse. Each node is a
+ * record of ints held in growable arrays rather than an object with a list
+ * of children, so the whole tree is a handful of arrays that are freed at
+ * once. Nodes are read through lightweight {@link SymbolTreeNode} views,
+ * created as they are visited.
+ * <br />
+ * Records are laid out in document order, thus a node's first child, if
+ * any, is the record right after it, and its next sibling is the record
+ * right after its subtree. Tokens take no record: every token is in the
+ * tree exactly once and in order, so the tokens of a node are those of its
+ * span that are not within a child node.
+ */
+final class SymbolTreeArena implements ParseListener {
+    private static final int INITIAL_CAPACITY = 64;
+    private final CompiledGrammar grammar;
+    private final List<Token> tokens;
+    // Records: phrase index, record after the subtree, and span of tokens.
+    private int[] phrases = new int[INITIAL_CAPACITY];
+    private int[] subtreeEnds = new int[INITIAL_CAPACITY];
+    private int[] tokenStarts = new int[INITIAL_CAPACITY];
+    private int[] tokenEnds = new int[INITIAL_CAPACITY];
+    private int size;
+    // Nodes still being built.
+    private int[] open = new int[INITIAL_CAPACITY];
+    private int depth;
+    private int tokenCount;
+
+    /**
+     * Creates a new, empty instance.
+     * @param grammar Compiled grammar the tokens are parsed against.
+     * @param tokens Tokens being parsed.
+     */
+    SymbolTreeArena(CompiledGrammar grammar, List<Token> tokens) {
+        this.grammar = grammar;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public void enterPhrase(String phraseId) {
+        if (size == phrases.length) {
+            phrases = Arrays.copyOf(phrases, size * 2);
+            subtreeEnds = Arrays.copyOf(subtreeEnds, size * 2);
+            tokenStarts = Arrays.copyOf(tokenStarts, size * 2);
+            tokenEnds = Arrays.copyOf(tokenEnds, size * 2);
+        }
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        phrases[size] = grammar.get(phraseId).getIndex();
+        tokenStarts[size] = tokenCount;
+        open[depth++] = size++;
+    }
+
+    @Override
+    public void exitPhrase(String phraseId) {
+        int record = open[--depth];
+        subtreeEnds[record] = size;
+        tokenEnds[record] = tokenCount;
+    }
+
+    @Override
+    public void token(Token token) {
+        tokenCount++;
+    }
+
+    /**
+     * Trims the records to the tree, once every event has been received.
+     * @return Root node of the tree.
+     */
+    SymbolTreeNode finish() {
+        phrases = Arrays.copyOf(phrases, size);
+        subtreeEnds = Arrays.copyOf(subtreeEnds, size);
+        tokenStarts = Arrays.copyOf(tokenStarts, size);
+        tokenEnds = Arrays.copyOf(tokenEnds, size);
+        open = null;
+        return new Node(0);
+    }
+
+    /**
+     * View of a node record. Its children are read-only.
+     */
+    private final class Node extends SymbolTreeNode {
+
+        private Node(int record) {
+            super(grammar.getPhrases()[phrases[record]].getId(), new Children(record));
+        }
+    }
+
+    /**
+     * Read-only view of the children of a node record.
+     */
+    private final class Children extends AbstractList<GrammarComponent> {
+        private final int record;
+
+        private Children(int record) {
+            this.record = record;
+        }
+
+        @Override
+        public GrammarComponent get(int index) {
+            if (index >= 0) {
+                Iterator<GrammarComponent> children = iterator();
+                for (int i = 0; children.hasNext(); i++) {
+                    GrammarComponent child = children.next();
+                    if (i == index) {
+                        return child;
+                    }
+                }
+            }
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        @Override
+        public Iterator<GrammarComponent> iterator() {
+            return new Iterator<GrammarComponent>() {
+                // Next child record, and position of the next token.
+                private int child = record + 1;
+                private int position = tokenStarts[record];
+
+                @Override
+                public boolean hasNext() {
+                    return child < subtreeEnds[record] || position < tokenEnds[record];
+                }
+
+                @Override
+                public GrammarComponent next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    // A child node starting at the next token holds it, or is empty and comes before it.
+                    if (child < subtreeEnds[record] && tokenStarts[child] == position) {
+                        Node node = new Node(child);
+                        position = tokenEnds[child];
+                        child = subtreeEnds[child];
+                        return node;
+                    }
+                    return tokens.get(position++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int count = 0;
+            int position = tokenStarts[record];
+            for (int child = record + 1; child < subtreeEnds[record]; child = subtreeEnds[child]) {
+                // Every child node, along with the tokens before it.
+                count += 1 + tokenStarts[child] - position;
+                position = tokenEnds[child];
+            }
+            return count + tokenEnds[record] - position;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Components of a symbol tree by ID, in document order, gathered in a single
+ * traversal. The index is current until the children of any node it
+ * traversed are modified, as told by {@link SymbolTreeNode#modifications()}.
+ */
+final class SymbolTreeIndex {
+    private final Map<String, List<GrammarComponent>> components = new HashMap<>();
+    private final long modifications;
+
+    /**
+     * Creates a new instance over every component below the root, which is left out.
+     * @param root Root of the tree.
+     */
+    SymbolTreeIndex(SymbolTreeNode root) {
+        // Read before traversing, so that modifications made meanwhile make the index stale.
+        modifications = SymbolTreeNode.modifications();
+        root.indexed();
+        Deque<Iterator<GrammarComponent>> stack = new ArrayDeque<>();
+        stack.push(root.getChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<GrammarComponent> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            GrammarComponent component = children.next();
+            components.computeIfAbsent(component.getId(), id -> new ArrayList<>()).add(component);
+            if (component instanceof SymbolTreeNode) {
+                SymbolTreeNode node = (SymbolTreeNode) component;
+                node.indexed();
+                stack.push(node.getChildren().iterator());
+            }
+        }
+    }
+
+    /**
+     * @param id ID to search for.
+     * @return Components of the given ID, in document order.
+     */
+    List<GrammarComponent> get(String id) {
+        return components.getOrDefault(id, Collections.emptyList());
+    }
+
+    /**
+     * @return `true` if the children of a node were modified since they were indexed.
+     */
+    boolean isStale() {
+        return modifications != SymbolTreeNode.modifications();
+    }
+}
@@ -3,22 +3,43 @@ package dev.houshce29.cc.parse;
 import dev.houshce29.cc.common.GrammarComponent;
 import dev.houshce29.cc.lex.Token;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * A single, non-terminating node within the SymbolTree.
  */
 public class SymbolTreeNode implements GrammarComponent {
+    // Modifications of children that were indexed by the search of any tree.
+    private static final AtomicLong MODIFICATIONS = new AtomicLong();
     private final String id;
-    private final List<GrammarComponent> children = new ArrayList<>();
+    private final List<GrammarComponent> children;
 
     /**
      * Creates a new instance.
      * @param id ID of this node.
      */
     public SymbolTreeNode(String id) {
+        this(id, new Children());
+    }
+
+    /**
+     * Creates a new instance over the given children.
+     * @param id ID of this node.
+     * @param children Children of this node.
+     */
+    SymbolTreeNode(String id, List<GrammarComponent> children) {
         this.id = id;
+        this.children = children;
     }
 
     @Override
@@ -29,12 +50,22 @@ public class SymbolTreeNode implements GrammarComponent {
     /**
      * @return The mutable list of children for this node.
      *         From the Parser, these will either be other nodes
-     *         or tokens.
+     *         or tokens. The children of a compact tree's nodes
+     *         are read-only. Modifying the list makes the searches
+     *         of any tree holding this node index it again.
      */
     public List<GrammarComponent> getChildren() {
         return children;
     }
 
+    /**
+     * @return `false` if this is the node of a lazy phrase whose children
+     *         are yet to be parsed, which happens when they are first read.
+     */
+    public boolean isMaterialized() {
+        return !(children instanceof LazyChildren) || ((LazyChildren) children).isMaterialized();
+    }
+
     /**
      * Returns the child component at the given index.
      * @param index Index of child.
@@ -71,16 +102,13 @@ public class SymbolTreeNode implements GrammarComponent {
      *         node down.
      */
     public int tokenCount() {
-        int count = 0;
-        for (GrammarComponent component : getChildren()) {
-            if (component instanceof SymbolTreeNode) {
-                count += ((SymbolTreeNode) component).tokenCount();
-            }
-            else if (component instanceof Token) {
-                count++;
+        int[] count = {0};
+        walk((component, depth) -> {
+            if (component instanceof Token) {
+                count[0]++;
             }
-        }
-        return count;
+        });
+        return count[0];
     }
 
     /**
@@ -136,9 +164,42 @@ public class SymbolTreeNode implements GrammarComponent {
         return children.size();
     }
 
+    /**
+     * Renders this node and its descendants a line each, padded by a dash
+     * per level of depth.
+     * @return Rendered subtree.
+     */
     @Override
     public String toString() {
-        return toString("| ");
+        StringBuilder builder = new StringBuilder("| ").append(getId());
+        walk((component, depth) -> {
+            builder.append("\n| ");
+            for (int i = 0; i < depth; i++) {
+                builder.append("- ");
+            }
+            builder.append(component instanceof Token ? component.toString() : component.getId());
+        });
+        return builder.toString();
+    }
+
+    /**
+     * Makes later modifications of the children of this node count
+     * towards {@link #modifications()}, as they were indexed.
+     */
+    void indexed() {
+        List<GrammarComponent> list = children instanceof LazyChildren ? ((LazyChildren) children).materialize() : children;
+        // Other children, e.g. of a compact tree, are read-only.
+        if (list instanceof Children) {
+            ((Children) list).indexed = true;
+        }
+    }
+
+    /**
+     * @return Number of modifications of indexed children so far, which
+     *         the index of a tree is only current for while unchanged.
+     */
+    static long modifications() {
+        return MODIFICATIONS.get();
     }
 
     /**
@@ -158,20 +219,134 @@ public class SymbolTreeNode implements GrammarComponent {
         throw new IllegalArgumentException(component.getId() + " was expected to be a tree node.");
     }
 
-    private String toString(String treeDepthPadding) {
-        String childPadding = treeDepthPadding + "- ";
-        StringBuilder builder = new StringBuilder(treeDepthPadding)
-                .append(getId());
-        for (GrammarComponent component : getChildren()) {
-            builder.append("\n");
+    /**
+     * Visits the components below this node depth first, in order. Iterated
+     * on an explicit stack, as left-recursive lists make trees as deep as they
+     * are long.
+     * @param visitor Visitor of each component and its depth below this node,
+     *                starting at 1 for the children of this node.
+     */
+    private void walk(ObjIntConsumer<GrammarComponent> visitor) {
+        Deque<Iterator<GrammarComponent>> stack = new ArrayDeque<>();
+        stack.push(getChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<GrammarComponent> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            GrammarComponent component = children.next();
+            visitor.accept(component, stack.size());
             if (component instanceof SymbolTreeNode) {
-                builder.append(((SymbolTreeNode) component).toString(childPadding));
+                stack.push(((SymbolTreeNode) component).getChildren().iterator());
             }
-            else {
-                builder.append(childPadding)
-                        .append(component instanceof Token ? component.toString() : component.getId());
+        }
+    }
+
+    /**
+     * Mutable children of a node, which count their modifications once
+     * indexed. Sub-lists count as modified once made, as they may write
+     * through to the list directly.
+     */
+    private static final class Children extends ArrayList<GrammarComponent> {
+        private static final long serialVersionUID = 1L;
+        private transient volatile boolean indexed;
+
+        @Override
+        public GrammarComponent set(int index, GrammarComponent element) {
+            modified();
+            return super.set(index, element);
+        }
+
+        @Override
+        public boolean add(GrammarComponent element) {
+            modified();
+            return super.add(element);
+        }
+
+        @Override
+        public void add(int index, GrammarComponent element) {
+            modified();
+            super.add(index, element);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends GrammarComponent> elements) {
+            modified();
+            return super.addAll(elements);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends GrammarComponent> elements) {
+            modified();
+            return super.addAll(index, elements);
+        }
+
+        @Override
+        public GrammarComponent remove(int index) {
+            modified();
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object element) {
+            modified();
+            return super.remove(element);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> elements) {
+            modified();
+            return super.removeAll(elements);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> elements) {
+            modified();
+            return super.retainAll(elements);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super GrammarComponent> filter) {
+            modified();
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<GrammarComponent> operator) {
+            modified();
+            super.replaceAll(operator);
+        }
+
+        @Override
+        public void sort(Comparator<? super GrammarComponent> comparator) {
+            modified();
+            super.sort(comparator);
+        }
+
+        @Override
+        public void clear() {
+            modified();
+            super.clear();
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            modified();
+            super.removeRange(fromIndex, toIndex);
+        }
+
+        @Override
+        public List<GrammarComponent> subList(int fromIndex, int toIndex) {
+            modified();
+            return super.subList(fromIndex, toIndex);
+        }
+
+        private void modified() {
+            // Children still being built by the parser were never indexed, and count nothing.
+            if (indexed) {
+                MODIFICATIONS.incrementAndGet();
             }
         }
-        return builder.toString();
     }
 }
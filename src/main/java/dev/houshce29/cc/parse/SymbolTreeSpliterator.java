@@ -0,0 +1,170 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Traverses the components of a subtree in document order, as flattened by
+ * {@link SymbolTree#flatten()}, on an explicit stack of the sibling ranges
+ * yet to be visited. It splits off the first half of the outermost range
+ * left, along with everything before it, so each part covers whole subtrees.
+ */
+final class SymbolTreeSpliterator implements Spliterator<GrammarComponent> {
+    private static final int INITIAL_DEPTH = 16;
+    // Components to visit before the ranges, the last of which holds the innermost range.
+    private final List<GrammarComponent> pending;
+    private int visited;
+    // Ranges of siblings yet to be visited, outermost first.
+    private List<GrammarComponent>[] siblings;
+    private int[] next;
+    private int[] end;
+    private int depth;
+    private long estimate;
+
+    /**
+     * Creates a new instance over a subtree.
+     * @param root Root of the subtree, which is visited first.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SymbolTreeSpliterator(SymbolTreeNode root) {
+        this(new ArrayList<>(), new List[INITIAL_DEPTH], new int[INITIAL_DEPTH], new int[INITIAL_DEPTH],
+                0, Long.MAX_VALUE);
+        pending.add(root);
+        push(root);
+    }
+
+    /**
+     * Creates a new instance over a part split off from another.
+     * @param pending Components to visit first.
+     * @param siblings Ranges of siblings.
+     * @param next Start of each range.
+     * @param end End of each range.
+     * @param depth Number of ranges.
+     * @param estimate Estimated number of components.
+     */
+    private SymbolTreeSpliterator(List<GrammarComponent> pending, List<GrammarComponent>[] siblings,
+                                  int[] next, int[] end, int depth, long estimate) {
+        this.pending = pending;
+        this.siblings = siblings;
+        this.next = next;
+        this.end = end;
+        this.depth = depth;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super GrammarComponent> action) {
+        if (visited < pending.size()) {
+            action.accept(pending.get(visited++));
+            return true;
+        }
+        while (depth > 0) {
+            int top = depth - 1;
+            if (next[top] == end[top]) {
+                siblings[--depth] = null;
+                continue;
+            }
+            GrammarComponent component = siblings[top].get(next[top]++);
+            if (component instanceof SymbolTreeNode) {
+                push((SymbolTreeNode) component);
+            }
+            action.accept(component);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<GrammarComponent> trySplit() {
+        while (depth > 0 && next[depth - 1] == end[depth - 1]) {
+            siblings[--depth] = null;
+        }
+        int level = splittableLevel();
+        // A single node left innermost is visited first anyway, so it is set aside to split its children.
+        while (level < 0 && depth > 0 && end[depth - 1] - next[depth - 1] == 1) {
+            GrammarComponent component = siblings[depth - 1].get(next[depth - 1]);
+            if (!(component instanceof SymbolTreeNode)) {
+                return null;
+            }
+            next[depth - 1]++;
+            pending.add(component);
+            push((SymbolTreeNode) component);
+            level = splittableLevel();
+        }
+        if (level < 0) {
+            return null;
+        }
+        // The prefix takes whatever is pending, the ranges from that level in,
+        // and the first half of its range; this keeps the rest of its range.
+        int middle = next[level] + (end[level] - next[level]) / 2;
+        int count = depth - level;
+        int capacity = Math.max(INITIAL_DEPTH, count);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<GrammarComponent>[] prefixSiblings = new List[capacity];
+        int[] prefixNext = new int[capacity];
+        int[] prefixEnd = new int[capacity];
+        System.arraycopy(siblings, level, prefixSiblings, 0, count);
+        System.arraycopy(next, level, prefixNext, 0, count);
+        System.arraycopy(end, level, prefixEnd, 0, count);
+        prefixEnd[0] = middle;
+        Arrays.fill(siblings, level + 1, depth, null);
+        next[level] = middle;
+        depth = level + 1;
+        estimate >>>= 1;
+        SymbolTreeSpliterator prefix = new SymbolTreeSpliterator(
+                new ArrayList<>(pending.subList(visited, pending.size())),
+                prefixSiblings, prefixNext, prefixEnd, count, estimate);
+        pending.clear();
+        visited = 0;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * @return Level of the outermost range with at least two siblings left, or -1 if none.
+     */
+    private int splittableLevel() {
+        for (int level = 0; level < depth; level++) {
+            if (end[level] - next[level] > 1) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the children of a node as the innermost range.
+     * @param node Node being visited.
+     */
+    private void push(SymbolTreeNode node) {
+        if (depth == siblings.length) {
+            siblings = Arrays.copyOf(siblings, depth * 2);
+            next = Arrays.copyOf(next, depth * 2);
+            end = Arrays.copyOf(end, depth * 2);
+        }
+        List<GrammarComponent> children = node.getChildren();
+        // Children read through iteration only, e.g. of a compact tree, are copied once.
+        if (!(children instanceof RandomAccess)) {
+            children = new ArrayList<>(children);
+        }
+        siblings[depth] = children;
+        next[depth] = 0;
+        end[depth] = children.size();
+        depth++;
+    }
+}
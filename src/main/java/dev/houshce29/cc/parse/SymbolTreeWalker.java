@@ -0,0 +1,207 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.Token;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Walks a symbol tree in document order, calling back as each node is
+ * entered and exited and as each token is visited. Each callback returns
+ * an {@link Action} that may skip a subtree, or the siblings after it, or
+ * stop the walk.
+ * <br />
+ * The walk runs on an explicit stack rather than by recursion, thus
+ * regardless of depth, and the stack is kept for the next walk, so a
+ * walker allocates nothing per node once it has grown to the depth of the
+ * trees walked. A walker may walk again from within its own callbacks, but
+ * is not safe to use from several threads at once. Children that are
+ * neither nodes nor tokens are passed over.
+ */
+public abstract class SymbolTreeWalker {
+    private static final int INITIAL_DEPTH = 16;
+    // Nodes being walked, with the position of their next child; children read through
+    // iteration only, e.g. of a compact tree, are walked with an iterator instead.
+    private SymbolTreeNode[] nodes = new SymbolTreeNode[INITIAL_DEPTH];
+    private int[] next = new int[INITIAL_DEPTH];
+    private Iterator<?>[] iterators = new Iterator<?>[INITIAL_DEPTH];
+    private int depth;
+
+    /**
+     * What the walk does after a callback.
+     */
+    public enum Action {
+
+        /**
+         * The walk carries on.
+         */
+        CONTINUE,
+
+        /**
+         * The children of the entered node are not walked, nor is it exited.
+         * Returned upon visiting a token or exiting a node, the walk carries on.
+         */
+        SKIP_SUBTREE,
+
+        /**
+         * The siblings after the node or token are not walked, and its parent
+         * is exited next. If returned upon entering a node, its children are
+         * not walked either, nor is it exited.
+         */
+        SKIP_SIBLINGS,
+
+        /**
+         * The walk ends at once, with no further callback.
+         */
+        STOP
+    }
+
+    /**
+     * Called as a node is entered, before any of its children.
+     * @param node The node.
+     * @return What to do next; {@link Action#CONTINUE} by default.
+     */
+    public Action enter(SymbolTreeNode node) {
+        return Action.CONTINUE;
+    }
+
+    /**
+     * Called as a node is exited, after all of its children.
+     * @param node The node.
+     * @return What to do next; {@link Action#CONTINUE} by default.
+     */
+    public Action exit(SymbolTreeNode node) {
+        return Action.CONTINUE;
+    }
+
+    /**
+     * Called for each token of the tree.
+     * @param token The token.
+     * @return What to do next; {@link Action#CONTINUE} by default.
+     */
+    public Action visitToken(Token token) {
+        return Action.CONTINUE;
+    }
+
+    /**
+     * Walks a whole symbol tree, starting at its root.
+     * @param tree Tree to walk.
+     * @return `true` if the walk completed, `false` if a callback stopped it.
+     */
+    public boolean walk(SymbolTree tree) {
+        return walk(tree.getRoot());
+    }
+
+    /**
+     * Walks the subtree of a node, starting at the node itself.
+     * @param root Node to walk from.
+     * @return `true` if the walk completed, `false` if a callback stopped it.
+     */
+    public boolean walk(SymbolTreeNode root) {
+        // Walks started from within a callback use the stack above the walk in progress.
+        int base = depth;
+        try {
+            Action action = enter(root);
+            if (action != Action.CONTINUE) {
+                return action != Action.STOP;
+            }
+            push(root);
+            while (depth > base) {
+                int top = depth - 1;
+                GrammarComponent child = nextChild(top);
+                if (child == null) {
+                    SymbolTreeNode node = nodes[top];
+                    pop();
+                    action = exit(node);
+                    if (action == Action.STOP) {
+                        return false;
+                    }
+                    if (action == Action.SKIP_SIBLINGS && depth > base) {
+                        skipSiblings(depth - 1);
+                    }
+                    continue;
+                }
+                if (child instanceof SymbolTreeNode) {
+                    action = enter((SymbolTreeNode) child);
+                    if (action == Action.CONTINUE) {
+                        push((SymbolTreeNode) child);
+                    }
+                }
+                else if (child instanceof Token) {
+                    action = visitToken((Token) child);
+                }
+                else {
+                    action = Action.CONTINUE;
+                }
+                if (action == Action.STOP) {
+                    return false;
+                }
+                if (action == Action.SKIP_SIBLINGS) {
+                    skipSiblings(top);
+                }
+            }
+            return true;
+        }
+        finally {
+            while (depth > base) {
+                pop();
+            }
+        }
+    }
+
+    /**
+     * Returns the next child of a node being walked.
+     * @param level Level of the node on the stack.
+     * @return The child, or `null` if every child was walked.
+     */
+    private GrammarComponent nextChild(int level) {
+        Iterator<?> iterator = iterators[level];
+        if (iterator != null) {
+            return iterator.hasNext() ? (GrammarComponent) iterator.next() : null;
+        }
+        List<GrammarComponent> children = nodes[level].getChildren();
+        return next[level] < children.size() ? children.get(next[level]++) : null;
+    }
+
+    /**
+     * Passes over the remaining children of a node being walked.
+     * @param level Level of the node on the stack.
+     */
+    private void skipSiblings(int level) {
+        if (iterators[level] != null) {
+            iterators[level] = Collections.emptyIterator();
+        }
+        else {
+            next[level] = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @param node Node whose children to walk next.
+     */
+    private void push(SymbolTreeNode node) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            next = Arrays.copyOf(next, depth * 2);
+            iterators = Arrays.copyOf(iterators, depth * 2);
+        }
+        List<GrammarComponent> children = node.getChildren();
+        nodes[depth] = node;
+        next[depth] = 0;
+        iterators[depth] = children instanceof RandomAccess ? null : children.iterator();
+        depth++;
+    }
+
+    /**
+     * Removes the innermost node being walked, releasing it.
+     */
+    private void pop() {
+        depth--;
+        nodes[depth] = null;
+        iterators[depth] = null;
+    }
+}
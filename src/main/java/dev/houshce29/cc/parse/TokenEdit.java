@@ -0,0 +1,64 @@
+package dev.houshce29.cc.parse;
+
+/**
+ * Edit made to a token list: a run of tokens starting at a position
+ * is replaced by another run of tokens, either of which may be empty.
+ */
+public final class TokenEdit {
+    private final int start;
+    private final int removed;
+    private final int inserted;
+
+    /**
+     * Privately creates a new instance.
+     * @param start Position of the first replaced token.
+     * @param removed Number of tokens removed.
+     * @param inserted Number of tokens inserted in their place.
+     */
+    private TokenEdit(int start, int removed, int inserted) {
+        this.start = start;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    /**
+     * @return Position of the first replaced token.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return Number of tokens removed from the previous token list.
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return Number of tokens inserted in place of the removed ones.
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenEdit[start=" + start + ", removed=" + removed + ", inserted=" + inserted + "]";
+    }
+
+    /**
+     * Returns a new edit.
+     * @param start Position of the first replaced token.
+     * @param removed Number of tokens removed from the previous token list.
+     * @param inserted Number of tokens inserted in place of the removed ones.
+     * @return New edit.
+     * @throws IllegalArgumentException If any argument is negative.
+     */
+    public static TokenEdit of(int start, int removed, int inserted) throws IllegalArgumentException {
+        if (start < 0 || removed < 0 || inserted < 0) {
+            throw new IllegalArgumentException("Token edit may not have negative positions or counts.");
+        }
+        return new TokenEdit(start, removed, inserted);
+    }
+}
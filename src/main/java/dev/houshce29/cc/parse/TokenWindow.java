@@ -0,0 +1,118 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.Token;
+import dev.houshce29.cc.lex.TokenSource;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Token list that pulls its tokens from a source as they are first read,
+ * and only holds on to those from the last released position onward.
+ * Reading a released token is an error, as it can no longer be pulled;
+ * only the first token is always kept, as syntax errors without a better
+ * site are blamed on it.
+ */
+final class TokenWindow extends AbstractList<Token> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 64;
+    private final TokenSource source;
+    private Token[] buffer = new Token[INITIAL_CAPACITY];
+    private Token firstToken;
+    // Position of the first token held, its index within the buffer, and the number of tokens held.
+    private int offset;
+    private int first;
+    private int count;
+    private boolean exhausted;
+
+    /**
+     * Creates a new instance.
+     * @param source Source to pull the tokens from.
+     */
+    TokenWindow(TokenSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Pulls tokens until the one at the index, or until the source runs out.
+     * @param index Position of a token.
+     * @return `true` if the token exists, `false` if there are fewer tokens.
+     */
+    boolean fill(int index) {
+        while (index >= offset + count && !exhausted) {
+            Token token = source.next();
+            if (token == null) {
+                exhausted = true;
+            }
+            else {
+                append(token);
+            }
+        }
+        return index < offset + count;
+    }
+
+    /**
+     * @return Number of tokens pulled so far.
+     */
+    int pulled() {
+        return offset + count;
+    }
+
+    /**
+     * Drops the tokens before a position.
+     * @param position Position of the first token to hold on to.
+     */
+    void release(int position) {
+        int drop = Math.min(position - offset, count);
+        if (drop > 0) {
+            Arrays.fill(buffer, first, first + drop, null);
+            first += drop;
+            count -= drop;
+            offset += drop;
+        }
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index == 0 && firstToken != null) {
+            return firstToken;
+        }
+        if (index < offset) {
+            throw new IllegalStateException("Token at position " + index + " has already been released.");
+        }
+        if (!fill(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return buffer[first + index - offset];
+    }
+
+    /**
+     * Pulls every remaining token.
+     * @return Number of tokens.
+     */
+    @Override
+    public int size() {
+        fill(Integer.MAX_VALUE);
+        return offset + count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !fill(0);
+    }
+
+    private void append(Token token) {
+        if (firstToken == null) {
+            firstToken = token;
+        }
+        if (first + count == buffer.length) {
+            // Move the tokens held to the front, growing the buffer only if they fill most of it.
+            Token[] tokens = count > buffer.length / 2 ? new Token[buffer.length * 2] : buffer;
+            System.arraycopy(buffer, first, tokens, 0, count);
+            Arrays.fill(tokens, count, Math.min(first + count, tokens.length), null);
+            buffer = tokens;
+            first = 0;
+        }
+        buffer[first + count++] = token;
+    }
+}
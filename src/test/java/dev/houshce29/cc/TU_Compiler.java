@@ -0,0 +1,128 @@
+package dev.houshce29.cc;
+
+import dev.houshce29.cc.common.CompilationException;
+import dev.houshce29.cc.lex.Lexer;
+import dev.houshce29.cc.lex.MatchingStrategy;
+import dev.houshce29.cc.lex.RegexFactory;
+import dev.houshce29.cc.parse.ParseFailureSite;
+import dev.houshce29.cc.parse.Parser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class TU_Compiler {
+    private ExecutorService executor;
+    private Compiler compiler;
+    private Compiler pipelined;
+
+    @Before
+    public void beforeEach() {
+        executor = Executors.newSingleThreadExecutor();
+        compiler = Compiler.newBuilder()
+                .setLexer(Lexer.newBuilder()
+                        .ignore(RegexFactory.anyAmountWhitespaceRegex())
+                        .on("[0-9]+", MatchingStrategy.SPAN)
+                            .generate("LITERAL")
+                        .on("\\+")
+                            .generate("PLUS")
+                        .on("!")
+                            .error(in -> new IllegalStateException("Bad input " + in.getCapturedValue())))
+                .setParser(Parser.newBuilder("SUM")
+                            .sentence("SUM", "PLUS", "LITERAL")
+                            .sentence("LITERAL"))
+                .setGenerator((tokens, tree) -> tree.flattenAsString())
+                .build();
+        pipelined = compiler.toBuilder()
+                .setPipelineExecutor(executor)
+                .build();
+    }
+
+    @After
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCompilePipelined() {
+        Assert.assertEquals("[SUM, SUM, LITERAL:1, PLUS:+, LITERAL:2]", compiler.compile("1 + 2").toString());
+        Assert.assertEquals(compiler.compile("1 + 2"), pipelined.compile("1 + 2"));
+        StringBuilder input = new StringBuilder("0");
+        for (int i = 1; i < 50; i++) {
+            input.append(" + ").append(i);
+        }
+        Assert.assertEquals(compiler.compile(input.toString()), pipelined.compile(input.toString()));
+    }
+
+    @Test
+    public void testCompilePipelinedErrors() {
+        // A syntax error alone, then preceding a lexer error, which takes precedence.
+        for (String input : new String[] {"1 + + 2", "1 + + 2 !"}) {
+            Throwable expected = failure(compiler, input);
+            Throwable actual = failure(pipelined, input);
+            Assert.assertEquals(expected.getClass(), actual.getClass());
+            Assert.assertEquals(expected.getMessage(), actual.getMessage());
+        }
+        Assert.assertEquals("Bad input !", failure(pipelined, "1 + + 2 !").getMessage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildPipelinedWithLexerAfterFunction() {
+        compiler.toBuilder()
+                .setLexer(Lexer.newBuilder()
+                        .on("[0-9]+", MatchingStrategy.SPAN)
+                            .generate("LITERAL")
+                        .after(tokens -> tokens.remove(0)))
+                .setPipelineExecutor(executor)
+                .build();
+    }
+
+    @Test
+    public void testValidate() {
+        AtomicInteger stages = new AtomicInteger();
+        Compiler validating = compiler.toBuilder()
+                .setSemanticAnalyzer((tokens, tree) -> stages.incrementAndGet())
+                .setGenerator((tokens, tree) -> stages.incrementAndGet())
+                .build();
+        Assert.assertFalse(validating.validate("1 + 2").isPresent());
+
+        // The sum cannot take the first plus, which is left over.
+        Optional<ParseFailureSite> site = validating.validate("1 + + 2");
+        Assert.assertTrue(site.isPresent());
+        Assert.assertEquals(1, site.get().getPosition());
+        Assert.assertEquals("PLUS", site.get().getFailureToken().getId());
+        Assert.assertEquals("Unexpected token '+' on line 1.", site.get().getMessage());
+
+        Assert.assertEquals("Bad input !", failure(validating::validate, "1 + 2 !").getMessage());
+        Assert.assertEquals(0, stages.get());
+        validating.compile("1 + 2");
+        Assert.assertEquals(2, stages.get());
+    }
+
+    /**
+     * @return Cause of the compilation failure of the input.
+     */
+    private static Throwable failure(Compiler compiler, String input) {
+        return failure(compiler::compile, input);
+    }
+
+    /**
+     * @return Cause of the compilation failure of the input by the stage.
+     */
+    private static Throwable failure(Consumer<String> stage, String input) {
+        try {
+            stage.accept(input);
+        }
+        catch (CompilationException ex) {
+            return ex.getCause();
+        }
+        Assert.fail("Failed to catch compilation failure of: " + input);
+        return null;
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class TU_Lexer {
@@ -111,6 +112,76 @@ public class TU_Lexer {
         Assert.assertEquals("x", tokens.get(1).getValue());
     }
 
+    @Test
+    public void testLexIntoPipe() throws InterruptedException {
+        TokenPipe pipe = new TokenPipe();
+        Thread lexing = new Thread(() -> lexer.lex(PROGRAM, pipe));
+        lexing.start();
+        validateToken(pipe.get(0), "ARTICLE", "the", 2);
+        Assert.assertEquals(lexer.lex(PROGRAM), pipe);
+        lexing.join();
+        Assert.assertEquals(8, pipe.published());
+    }
+
+    @Test(expected = IncorrectException.class)
+    public void testLexIntoPipeThrowsExceptionWhenRead() {
+        TokenPipe pipe = new TokenPipe();
+        try {
+            lexer.lex(PROGRAM + " TORNADO", pipe);
+        }
+        catch (IncorrectException ex) {
+            // The tokens before the error remain readable.
+            validateToken(pipe.get(7), "STRING_LITERAL", "COCKADOODLEDOO", 3);
+        }
+        pipe.size();
+    }
+
+    @Test
+    public void testLexIntoPipeWithAfterFunction() {
+        Lexer filtering = Lexer.newBuilder()
+                .on("a")
+                    .create(ctx -> new SimpleToken("A", ctx))
+                .after(tokens -> tokens.remove(0))
+                .build();
+        Assert.assertTrue(filtering.hasAfterFunction());
+        Assert.assertFalse(lexer.hasAfterFunction());
+        TokenPipe pipe = new TokenPipe();
+        try {
+            filtering.lex("aa", pipe);
+            Assert.fail("Failed to catch after function.");
+        }
+        catch (UnsupportedOperationException ex) {
+            // Readers of the pipe fail rather than wait.
+            try {
+                pipe.size();
+                Assert.fail("Failed to fail the pipe.");
+            }
+            catch (UnsupportedOperationException failure) {
+                Assert.assertSame(ex, failure);
+            }
+        }
+    }
+
+    @Test
+    public void testLexerSource() {
+        TokenSource source = lexer.source(PROGRAM);
+        List<Token> tokens = new ArrayList<>();
+        for (Token token = source.next(); token != null; token = source.next()) {
+            tokens.add(token);
+        }
+        Assert.assertEquals(lexer.lex(PROGRAM), tokens);
+        Assert.assertNull(source.next());
+    }
+
+    @Test(expected = IncorrectException.class)
+    public void testLexerSourceThrowsExceptionWhenReached() {
+        TokenSource source = lexer.source(PROGRAM + " TORNADO");
+        for (int i = 0; i < 8; i++) {
+            Assert.assertNotNull(source.next());
+        }
+        source.next();
+    }
+
     private void validateToken(Token token, String expectedId, String expectedValue, int expectedLineNumber) {
         Assert.assertEquals(expectedId, token.getId());
         Assert.assertEquals(expectedValue, token.getValue());
@@ -0,0 +1,65 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.SimpleToken;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class TU_CompiledGrammar {
+    private CompiledGrammar grammar;
+
+    @Before
+    public void beforeEach() {
+        grammar = CompiledGrammar.of(Grammar.from(Phrase.newBuilder("SUM")
+                        .setOperand("VALUE")
+                        .addOperator("PLUS", 1, Associativity.LEFT)
+                        .addOperator("TIMES", 2, Associativity.LEFT)
+                        .build())
+                .addPhrase(Phrase.newBuilder("VALUE")
+                        .addSentence("NUMBER")
+                        .addSentence("LP", "SUM", "RP"))
+                .build());
+    }
+
+    @Test
+    public void testSentences() {
+        CompiledPhrase value = grammar.get("VALUE");
+        int[][] sentences = value.getSentences();
+        Assert.assertEquals(2, sentences.length);
+        Assert.assertArrayEquals(new int[] { grammar.kind("NUMBER") }, sentences[0]);
+        Assert.assertEquals(grammar.kind("LP"), sentences[1][0]);
+        Assert.assertTrue(CompiledPhrase.isPhrase(sentences[1][1]));
+        Assert.assertSame(grammar.get("SUM"), grammar.phrase(sentences[1][1]));
+        Assert.assertEquals(grammar.kind("RP"), sentences[1][2]);
+    }
+
+    @Test
+    public void testRoot() {
+        Assert.assertSame(grammar.get("SUM"), grammar.getRoot());
+        Assert.assertSame(grammar.getRoot(), grammar.getPhrases()[grammar.getRoot().getIndex()]);
+    }
+
+    @Test
+    public void testOperators() {
+        CompiledPhrase sum = grammar.get("SUM");
+        Assert.assertTrue(sum.isOperatorPhrase());
+        Assert.assertSame(grammar.get("VALUE"), grammar.phrase(sum.getOperand()));
+        Assert.assertEquals(2, sum.getOperator(grammar.kind("TIMES")).getPrecedence());
+        Assert.assertNull(sum.getOperator(grammar.kind("NUMBER")));
+        Assert.assertNull(sum.getOperator(grammar.getUnknownKind()));
+    }
+
+    @Test
+    public void testKinds() {
+        Assert.assertEquals(grammar.getUnknownKind(), grammar.kind("UNUSED"));
+        Assert.assertFalse(grammar.getKinds().containsKey("SUM"));
+        int[] kinds = grammar.kinds(Arrays.asList(
+                new SimpleToken("NUMBER", "1", 0),
+                new SimpleToken("PLUS", "+", 0),
+                new SimpleToken("UNUSED", "?", 0)));
+        Assert.assertArrayEquals(new int[] {
+                grammar.kind("NUMBER"), grammar.kind("PLUS"), grammar.getUnknownKind() }, kinds);
+    }
+}
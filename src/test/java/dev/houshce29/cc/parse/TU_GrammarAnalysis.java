@@ -0,0 +1,79 @@
+package dev.houshce29.cc.parse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TU_GrammarAnalysis {
+
+    @Test
+    public void testAnalyze() {
+        GrammarAnalysis analysis = Parser.newBuilder("ADDER")
+                    .sentence("ADD")
+                .branch("ADD")
+                    .sentence("ADD", "PLUS", "EXPRESSION")
+                    .sentence("EXPRESSION")
+                .branch("EXPRESSION")
+                    .sentence("LP", "ADD", "RP")
+                    .sentence("LITERAL")
+                    .sentence("LITERAL", "STAR", "LITERAL")
+                .branch("UNUSED")
+                    .sentence("LITERL")
+                .build()
+                .getGrammar()
+                .analyze(Arrays.asList("PLUS", "STAR", "LP", "RP", "LITERAL"));
+
+        Assert.assertEquals(Collections.singleton("ADD"), analysis.getLeftRecursivePhrases());
+        Assert.assertFalse(analysis.isMutuallyLeftRecursive());
+        Assert.assertEquals(Collections.singleton("UNUSED"), analysis.getUnreachablePhrases());
+        Assert.assertEquals(Collections.singleton("LITERL"), analysis.getUndefinedWords());
+        // The product is never tried, as the literal on its own matches first
+        Assert.assertEquals(Collections.singletonMap("EXPRESSION", Collections.singletonList(2)),
+                analysis.getShadowedSentences());
+        Assert.assertTrue(analysis.hasDefects());
+
+        Assert.assertEquals(1, analysis.getFanOut("ADDER"));
+        Assert.assertEquals(2, analysis.getFanOut("ADD"));
+        Assert.assertEquals(2, analysis.getFanOut("EXPRESSION"));
+        Assert.assertFalse(analysis.getFanOuts().containsKey("UNUSED"));
+    }
+
+    @Test
+    public void testAnalyzeOperatorPhrase() {
+        GrammarAnalysis analysis = Parser.newBuilder("EXPRESSION")
+                    .operand("VALUE")
+                    .operator("PLUS", 1)
+                .branch("VALUE")
+                    .sentence("LITERAL")
+                    .sentence("LP", "EXPRESSION", "RP")
+                    .sentence()
+                    .sentence("STAR")
+                .build()
+                .getGrammar()
+                .analyze();
+
+        Assert.assertTrue(analysis.getLeftRecursivePhrases().isEmpty());
+        Assert.assertTrue(analysis.getUndefinedWords().isEmpty());
+        // Nothing is tried after the empty sentence, which always matches
+        Assert.assertEquals(Collections.singletonMap("VALUE", Collections.singletonList(3)),
+                analysis.getShadowedSentences());
+        Assert.assertEquals(1, analysis.getFanOut("EXPRESSION"));
+        Assert.assertEquals(2, analysis.getFanOut("VALUE"));
+        Assert.assertEquals("  __ANALYSIS__\n  LEFT RECURSIVE: \n  UNREACHABLE: \n  UNDEFINED: \n"
+                + "  SHADOWED: VALUE[3]\n  FAN-OUT: EXPRESSION=1 VALUE=2\n", analysis.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFanOutOfUnreachablePhrase() {
+        Parser.newBuilder("A")
+                    .sentence("LITERAL")
+                .branch("B")
+                    .sentence("LITERAL")
+                .build()
+                .getGrammar()
+                .analyze()
+                .getFanOut("B");
+    }
+}
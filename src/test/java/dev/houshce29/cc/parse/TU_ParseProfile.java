@@ -0,0 +1,80 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.SimpleToken;
+import dev.houshce29.cc.lex.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TU_ParseProfile {
+
+    @Test
+    public void testProfile() {
+        for (ParsingStrategy strategy : new ParsingStrategy[] {ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE}) {
+            ParseProfile profile = new ParseProfile();
+            Parser parser = Parser.newBuilder("STATEMENT")
+                        .sentence("CALL")
+                        .sentence("NAME")
+                    .branch("CALL")
+                        .sentence("NAME", "LP", "RP")
+                    .branch("NAME")
+                        .sentence("LITERAL")
+                        .sentence("ID")
+                    .strategy(strategy)
+                    .profile(profile)
+                    .build();
+            List<Token> tokens = Collections.singletonList(new SimpleToken("LITERAL", 0));
+            parser.parse(tokens);
+
+            // The call consumes the name before failing on the missing parenthesis
+            ParseProfile.PhraseProfile call = profile.get("CALL");
+            Assert.assertEquals(1, call.getApplications());
+            Assert.assertEquals(1, call.getAttempts(0));
+            Assert.assertEquals(1, call.getFailures(0));
+            Assert.assertEquals(1, call.getWastedTokens(0));
+
+            ParseProfile.PhraseProfile statement = profile.get("STATEMENT");
+            Assert.assertEquals(1, statement.getApplications());
+            Assert.assertEquals(1, statement.getBacktracks());
+            Assert.assertEquals(0, statement.getWastedTokens());
+            Assert.assertEquals(1, statement.getSuccesses(1));
+
+            // The name is recalled by the second sentence of the statement
+            ParseProfile.PhraseProfile name = profile.get("NAME");
+            Assert.assertEquals(1, name.getApplications());
+            Assert.assertEquals(1, name.getRecalls());
+            Assert.assertEquals(3, name.getMaxDepth());
+            Assert.assertEquals(0, name.getAttempts(1));
+
+            parser.validate(tokens);
+            Assert.assertEquals(2, profile.get("CALL").getApplications());
+            Assert.assertEquals(3, profile.getPhrases().size());
+            Assert.assertTrue(profile.toString().startsWith("  __PROFILE__\n"));
+
+            profile.clear();
+            Assert.assertNull(profile.get("CALL"));
+        }
+    }
+
+    @Test
+    public void testProfileSortedByTime() {
+        ParseProfile profile = new ParseProfile();
+        Parser parser = Parser.newBuilder("LIST")
+                    .sentence("ITEM", "LIST")
+                    .sentence()
+                .branch("ITEM")
+                    .sentence("LITERAL", "LITERAL")
+                    .sentence("LITERAL")
+                .profile(profile)
+                .build();
+        parser.parse(Collections.nCopies(50, new SimpleToken("LITERAL", 0)));
+
+        List<ParseProfile.PhraseProfile> phrases = profile.getPhrases();
+        Assert.assertEquals(2, phrases.size());
+        Assert.assertTrue(phrases.get(0).getNanos() >= phrases.get(1).getNanos());
+        Assert.assertEquals(26, profile.get("LIST").getApplications());
+        Assert.assertEquals(25, profile.get("ITEM").getAttempts(0));
+    }
+}
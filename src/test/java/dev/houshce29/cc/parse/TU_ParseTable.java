@@ -0,0 +1,137 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.SimpleToken;
+import dev.houshce29.cc.lex.Token;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TU_ParseTable {
+    private ParseTable table;
+    private Grammar grammar;
+
+    @Before
+    public void beforeEach() {
+        grammar = Grammar.from(Phrase.newBuilder("STATEMENT")
+                        .addSentence("IF", "EXPRESSION", "BLOCK")
+                        .addSentence("WHILE", "EXPRESSION", "BLOCK")
+                        .addSentence("EXPRESSION", "SEMICOLON")
+                        .build())
+                .addPhrase(Phrase.newBuilder("EXPRESSION")
+                        .addSentence("LITERAL")
+                        .addSentence("LP", "EXPRESSION", "RP"))
+                .addPhrase(Phrase.newBuilder("BLOCK")
+                        .addSentence("LB", "STATEMENTS", "RB"))
+                .addPhrase(Phrase.newBuilder("STATEMENTS")
+                        .addSentence("STATEMENT", "STATEMENTS")
+                        .addSentence())
+                .build();
+        table = ParseTable.of(grammar);
+    }
+
+    @Test
+    public void testFirst() {
+        Assert.assertTrue(table.getFirst("STATEMENT").get(table.column("IF")));
+        Assert.assertTrue(table.getFirst("STATEMENT").get(table.column("WHILE")));
+        Assert.assertTrue(table.getFirst("STATEMENT").get(table.column("LITERAL")));
+        Assert.assertTrue(table.getFirst("STATEMENT").get(table.column("LP")));
+        Assert.assertEquals(4, table.getFirst("STATEMENT").cardinality());
+        Assert.assertEquals(4, table.getFirst("STATEMENTS").cardinality());
+    }
+
+    @Test
+    public void testFollow() {
+        Assert.assertTrue(table.getFollow("STATEMENT").get(table.getEndColumn()));
+        Assert.assertTrue(table.getFollow("STATEMENTS").get(table.column("RB")));
+        Assert.assertTrue(table.getFollow("EXPRESSION").get(table.column("LB")));
+        Assert.assertTrue(table.getFollow("EXPRESSION").get(table.column("SEMICOLON")));
+        Assert.assertTrue(table.getFollow("EXPRESSION").get(table.column("RP")));
+        Assert.assertEquals(3, table.getFollow("EXPRESSION").cardinality());
+    }
+
+    @Test
+    public void testNullable() {
+        Assert.assertTrue(table.isNullable("STATEMENTS"));
+        Assert.assertFalse(table.isNullable("STATEMENT"));
+    }
+
+    @Test
+    public void testPredict() {
+        Phrase statement = grammar.getPhrases().get("STATEMENT");
+        Assert.assertTrue(table.isPredictive("STATEMENT"));
+        Assert.assertArrayEquals(new int[] {1}, table.predict(statement, tokens("WHILE"), 0));
+        Assert.assertArrayEquals(new int[] {2}, table.predict(statement, tokens("LP"), 0));
+        Assert.assertArrayEquals(new int[0], table.predict(statement, tokens("RB"), 0));
+        Assert.assertArrayEquals(new int[0], table.predict(statement, Collections.emptyList(), 0));
+    }
+
+    @Test
+    public void testPredictNullableSentence() {
+        Phrase statements = grammar.getPhrases().get("STATEMENTS");
+        // The empty sentence must still be tried whenever the first one fails.
+        Assert.assertFalse(table.isPredictive("STATEMENTS"));
+        Assert.assertArrayEquals(new int[] {0, 1}, table.predict(statements, tokens("IF"), 0));
+
+        // Sentences after an empty sentence can never be reached.
+        Grammar unreachable = Grammar.from(Phrase.newBuilder("OPTIONAL")
+                        .addSentence()
+                        .addSentence("RB")
+                        .build())
+                .build();
+        ParseTable optional = ParseTable.of(unreachable);
+        Assert.assertTrue(optional.isPredictive("OPTIONAL"));
+        Assert.assertArrayEquals(new int[] {0}, optional.predict(unreachable.getRoot(), tokens("RB"), 0));
+    }
+
+    @Test
+    public void testPredictConflict() {
+        Phrase call = Phrase.newBuilder("CALL")
+                .addSentence("ID", "LP", "RP")
+                .addSentence("ID")
+                .build();
+        ParseTable conflicting = ParseTable.of(Grammar.from(call).build());
+        Assert.assertFalse(conflicting.isPredictive("CALL"));
+        Assert.assertArrayEquals(new int[] {0, 1}, conflicting.predict(call, tokens("ID"), 0));
+        // Conflicting phrases still never try sentences that cannot start with the token.
+        Assert.assertArrayEquals(new int[0], conflicting.predict(call, tokens("LP"), 0));
+    }
+
+    @Test
+    public void testSentenceFirst() {
+        Assert.assertTrue(table.getFirst("STATEMENT", 0).get(table.column("IF")));
+        Assert.assertEquals(1, table.getFirst("STATEMENT", 0).cardinality());
+        Assert.assertEquals(2, table.getFirst("STATEMENT", 2).cardinality());
+        Assert.assertTrue(table.getFirst("STATEMENTS", 1).isEmpty());
+        Assert.assertTrue(table.isNullable("STATEMENTS", 1));
+        Assert.assertFalse(table.isNullable("STATEMENTS", 0));
+    }
+
+    @Test
+    public void testPredictLeftRecursion() {
+        Grammar leftRecursive = Grammar.from(Phrase.newBuilder("SUM")
+                        .addSentence("SUM", "PLUS", "LITERAL")
+                        .addSentence("LITERAL")
+                        .build())
+                .build();
+        ParseTable recursive = ParseTable.of(leftRecursive);
+        Assert.assertTrue(recursive.isLeftRecursive("SUM"));
+        Assert.assertFalse(recursive.isPredictive("SUM"));
+        Assert.assertArrayEquals(new int[] {0, 1},
+                recursive.predict(leftRecursive.getRoot(), tokens("LITERAL"), 0));
+        // The recursive sentence is always tried in order to grow the seed.
+        Assert.assertArrayEquals(new int[] {0},
+                recursive.predict(leftRecursive.getRoot(), tokens("PLUS"), 0));
+    }
+
+    private static List<Token> tokens(String... ids) {
+        Token[] tokens = new Token[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            tokens[i] = new SimpleToken(ids[i], 0);
+        }
+        return Arrays.asList(tokens);
+    }
+}
@@ -3,13 +3,17 @@ package dev.houshce29.cc.parse;
 import dev.houshce29.cc.common.GrammarComponent;
 import dev.houshce29.cc.lex.SimpleToken;
 import dev.houshce29.cc.lex.Token;
+import dev.houshce29.cc.lex.TokenPipe;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class TU_Parser {
     private static final PlusToken PLUS = new PlusToken();
@@ -92,14 +96,984 @@ public class TU_Parser {
         }
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test(expected = IllegalArgumentException.class)
     public void testParseAmbiguousGrammar() {
+        // Left recursion without a non-recursive sentence can never match.
         Parser.newBuilder("AMBIGUOUS")
                 .sentence("AMBIGUOUS")
                 .build()
                 .parse(ADDER);
     }
 
+    @Test
+    public void testParseLeftRecursion() {
+        Parser leftRecursive = Parser.newBuilder("SUM")
+                    .sentence("SUM", "PLUS", "LITERAL")
+                    .sentence("LITERAL")
+                .build();
+
+        // 1 + 2 + 3 => ((1 + 2) + 3)
+        SymbolTree tree = leftRecursive.parse(Arrays.asList(
+                new LiteralToken(1), PLUS, new LiteralToken(2), PLUS, new LiteralToken(3)));
+        SymbolTreeNode root = tree.getRoot();
+        Assert.assertTrue(root.is("SUM", "PLUS", "LITERAL"));
+        Assert.assertEquals("3", root.getToken(2).getValue());
+        Assert.assertTrue(root.getNode(0).is("SUM", "PLUS", "LITERAL"));
+        Assert.assertEquals("2", root.getNode(0).getToken(2).getValue());
+        Assert.assertTrue(root.getNode(0).getNode(0).is("LITERAL"));
+        Assert.assertEquals(2, tree.findNodes("SUM").size());
+    }
+
+    @Test
+    public void testParseIndirectLeftRecursion() {
+        Parser leftRecursive = Parser.newBuilder("SUM")
+                    .sentence("TERM", "PLUS", "LITERAL")
+                    .sentence("LITERAL")
+                .branch("TERM")
+                    .sentence("SUM")
+                .build();
+
+        SymbolTree tree = leftRecursive.parse(Arrays.asList(
+                new LiteralToken(1), PLUS, new LiteralToken(2), PLUS, new LiteralToken(3)));
+        List<String> expected = Arrays.asList(
+                "SUM", "TERM", "SUM", "TERM", "SUM", "LITERAL:1", "PLUS:+", "LITERAL:2", "PLUS:+", "LITERAL:3");
+        Assert.assertEquals(expected, tree.flattenAsString());
+    }
+
+    @Test
+    public void testParseIterativeStrategy() {
+        Parser iterative = Parser.newBuilder("ADDER")
+                    .sentence("ADD")
+                .branch("ADD")
+                    .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                .branch("EXPRESSION")
+                    .sentence("LITERAL")
+                    .sentence("LP", "ADD", "RP")
+                .strategy(ParsingStrategy.ITERATIVE)
+                .build();
+
+        Assert.assertEquals(parser.parse(ADDER).flattenAsString(), iterative.parse(ADDER).flattenAsString());
+    }
+
+    @Test
+    public void testParseIterativeStrategyLeftRecursion() {
+        Parser iterative = Parser.newBuilder("SUM")
+                    .sentence("TERM", "PLUS", "LITERAL")
+                    .sentence("LITERAL")
+                .branch("TERM")
+                    .sentence("SUM")
+                .strategy(ParsingStrategy.ITERATIVE)
+                .build();
+
+        SymbolTree tree = iterative.parse(Arrays.asList(
+                new LiteralToken(1), PLUS, new LiteralToken(2), PLUS, new LiteralToken(3)));
+        List<String> expected = Arrays.asList(
+                "SUM", "TERM", "SUM", "TERM", "SUM", "LITERAL:1", "PLUS:+", "LITERAL:2", "PLUS:+", "LITERAL:3");
+        Assert.assertEquals(expected, tree.flattenAsString());
+    }
+
+    @Test
+    public void testParseIterativeStrategyDeepNesting() {
+        int depth = 100000;
+        List<Token> nested = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            nested.add(LP);
+        }
+        nested.add(new LiteralToken(1));
+        for (int i = 0; i < depth; i++) {
+            nested.add(RP);
+        }
+        Parser iterative = Parser.newBuilder("EXPRESSION")
+                    .sentence("LITERAL")
+                    .sentence("LP", "EXPRESSION", "RP")
+                .strategy(ParsingStrategy.ITERATIVE)
+                .build();
+
+        // Walk down the nesting without recursion
+        SymbolTreeNode node = iterative.parse(nested).getRoot();
+        int nesting = 0;
+        while (node.is("LP", "EXPRESSION", "RP")) {
+            node = node.getNode(1);
+            nesting++;
+        }
+        Assert.assertEquals(depth, nesting);
+        Assert.assertTrue(node.is("LITERAL"));
+    }
+
+    @Test
+    public void testParseRunsAfterFunction() {
+        List<SymbolTree> after = new ArrayList<>();
+        SymbolTree tree = Parser.newBuilder("EXPRESSION")
+                    .sentence("LITERAL")
+                .after(root -> after.add(root))
+                .build()
+                .parse(Arrays.asList(new LiteralToken(1)));
+        Assert.assertEquals(Arrays.asList(tree), after);
+    }
+
+    @Test
+    public void testParseGeneralStrategy() {
+        Parser general = Parser.newBuilder("ADDER")
+                    .sentence("ADD")
+                .branch("ADD")
+                    .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                .branch("EXPRESSION")
+                    .sentence("LITERAL")
+                    .sentence("LP", "ADD", "RP")
+                .strategy(ParsingStrategy.GENERAL)
+                .build();
+
+        Assert.assertEquals(parser.parse(ADDER).flattenAsString(), general.parse(ADDER).flattenAsString());
+    }
+
+    @Test
+    public void testParseGeneralStrategyLaterSentence() {
+        // Ordered choice commits to the first sentence, leaving the RP unparsed.
+        Parser.Builder builder = Parser.newBuilder("EXPRESSION")
+                    .sentence("LP")
+                    .sentence("LP", "RP");
+        List<Token> tokens = Arrays.asList(LP, RP);
+        try {
+            builder.build().parse(tokens);
+            Assert.fail("Expected ordered choice to commit to the first sentence.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Unexpected token ')' on line 0.", ex.getMessage());
+        }
+
+        SymbolTree tree = builder.strategy(ParsingStrategy.GENERAL).build().parse(tokens);
+        Assert.assertTrue(tree.getRoot().is("LP", "RP"));
+    }
+
+    @Test
+    public void testParseGeneralStrategyAmbiguous() {
+        Parser.Builder builder = Parser.newBuilder("SUM")
+                    .sentence("SUM", "PLUS", "SUM")
+                    .sentence("LITERAL")
+                .strategy(ParsingStrategy.GENERAL);
+        List<Token> tokens = Arrays.asList(
+                new LiteralToken(1), PLUS, new LiteralToken(2), PLUS, new LiteralToken(3));
+
+        // 1 + 2 + 3 => ((1 + 2) + 3)
+        SymbolTreeNode root = builder.build().parse(tokens).getRoot();
+        Assert.assertTrue(root.getNode(0).is("SUM", "PLUS", "SUM"));
+        Assert.assertTrue(root.getNode(2).is("LITERAL"));
+
+        // 1 + 2 + 3 => (1 + (2 + 3))
+        List<Integer> counts = new ArrayList<>();
+        root = builder.disambiguator(alternatives -> {
+                    counts.add(alternatives.size());
+                    return alternatives.get(alternatives.size() - 1);
+                })
+                .build()
+                .parse(tokens)
+                .getRoot();
+        Assert.assertTrue(root.getNode(0).is("LITERAL"));
+        Assert.assertTrue(root.getNode(2).is("SUM", "PLUS", "SUM"));
+        Assert.assertEquals(Arrays.asList(2), counts);
+    }
+
+    @Test
+    public void testParseGeneralStrategySyntaxError() {
+        Parser general = Parser.newBuilder("ADDER")
+                    .sentence("ADD")
+                .branch("ADD")
+                    .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                .branch("EXPRESSION")
+                    .sentence("LITERAL")
+                    .sentence("LP", "ADD", "RP")
+                .strategy(ParsingStrategy.GENERAL)
+                .build();
+        List<Token> badSyntax = new ArrayList<>(ADDER);
+        badSyntax.set(2, PLUS);
+        try {
+            general.parse(badSyntax);
+            Assert.fail("Failed to catch bad syntax.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Syntax error near token '+' on line 0.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseOperatorPhrase() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser operators = Parser.newBuilder("EXPRESSION")
+                        .operand("TERM")
+                        .operator("PLUS", 1)
+                        .operator("TIMES", 2)
+                        .operator("POWER", 3, Associativity.RIGHT)
+                    .branch("TERM")
+                        .sentence("LITERAL")
+                        .sentence("LP", "EXPRESSION", "RP")
+                    .strategy(strategy)
+                    .build();
+
+            // 1 + 2 * 3 ^ 4 ^ 5 + 6 => (1 + (2 * (3 ^ (4 ^ 5)))) + 6
+            SymbolTreeNode root = operators.parse(Arrays.asList(
+                    new LiteralToken(1), PLUS, new LiteralToken(2), new SimpleToken("TIMES", "*", 0),
+                    new LiteralToken(3), new SimpleToken("POWER", "^", 0), new LiteralToken(4),
+                    new SimpleToken("POWER", "^", 0), new LiteralToken(5), PLUS, new LiteralToken(6))).getRoot();
+            Assert.assertTrue(root.is("EXPRESSION", "PLUS", "TERM"));
+            SymbolTreeNode sum = root.getNode(0);
+            Assert.assertTrue(sum.is("TERM", "PLUS", "EXPRESSION"));
+            SymbolTreeNode product = sum.getNode(2);
+            Assert.assertTrue(product.is("TERM", "TIMES", "EXPRESSION"));
+            SymbolTreeNode power = product.getNode(2);
+            Assert.assertTrue(power.is("TERM", "POWER", "EXPRESSION"));
+            Assert.assertTrue(power.getNode(2).is("TERM", "POWER", "TERM"));
+            Assert.assertEquals("5", power.getNode(2).getNode(2).getToken(0).getValue());
+        }
+    }
+
+    @Test
+    public void testParseOperatorPhraseSoleOperand() {
+        Parser operators = Parser.newBuilder("STATEMENT")
+                    .sentence("EXPRESSION")
+                .branch("EXPRESSION")
+                    .operand("TERM")
+                    .operator("PLUS", 1)
+                .branch("TERM")
+                    .sentence("LITERAL")
+                .build();
+
+        // No node is created for the operator phrase without an operator
+        SymbolTreeNode root = operators.parse(Arrays.asList(new LiteralToken(1))).getRoot();
+        Assert.assertTrue(root.is("TERM"));
+        Assert.assertTrue(root.getNode(0).is("LITERAL"));
+    }
+
+    @Test
+    public void testParseOperatorPhraseMissingOperand() {
+        Parser operators = Parser.newBuilder("EXPRESSION")
+                    .operand("LITERAL")
+                    .operator("PLUS", 1)
+                .build();
+        try {
+            operators.parse(Arrays.asList(new LiteralToken(1), PLUS, new LiteralToken(2), PLUS));
+            Assert.fail("Failed to catch dangling operator.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Unexpected token '+' on line 0.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseNullablePhraseAtEndOfInput() {
+        Token a = new SimpleToken("A", "a", 0);
+        Token b = new SimpleToken("B", "b", 0);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            // A nullable phrase matches nothing at the end of the tokens, as anywhere else
+            Parser list = Parser.newBuilder("LIST")
+                        .sentence("A", "LIST")
+                        .sentence("A")
+                        .sentence()
+                    .strategy(strategy)
+                    .build();
+            Assert.assertEquals(Arrays.asList("LIST", "A:a", "LIST", "A:a", "LIST"),
+                    list.parse(Arrays.asList(a, a)).flattenAsString());
+
+            Parser trailing = Parser.newBuilder("PAIR")
+                        .sentence("B", "EMPTY")
+                        .sentence("EMPTY", "B")
+                    .branch("EMPTY")
+                        .sentence()
+                    .strategy(strategy)
+                    .build();
+            Assert.assertEquals(Arrays.asList("PAIR", "B:b", "EMPTY"),
+                    trailing.parse(Collections.singletonList(b)).flattenAsString());
+        }
+    }
+
+    @Test
+    public void testParseRepetition() {
+        Token name = new SimpleToken("NAME", "f", 0);
+        Token comma = new SimpleToken("COMMA", ",", 0);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser repeating = Parser.newBuilder("CALL")
+                        .sentence("NAME", "LP", "ARGUMENTS?", "RP")
+                    .branch("ARGUMENTS")
+                        .sentence("LITERAL", "ARGUMENT*")
+                    .branch("ARGUMENT")
+                        .sentence("COMMA", "LITERAL")
+                    .strategy(strategy)
+                    .build();
+
+            // f(1, 2, 3)
+            SymbolTreeNode root = repeating.parse(Arrays.asList(name, LP, new LiteralToken(1), comma,
+                    new LiteralToken(2), comma, new LiteralToken(3), RP)).getRoot();
+            Assert.assertTrue(root.is("NAME", "LP", "ARGUMENTS?", "RP"));
+            Assert.assertTrue(root.getNode(2).is("ARGUMENTS"));
+            SymbolTreeNode arguments = root.getNode(2).getNode(0);
+            Assert.assertTrue(arguments.is("LITERAL", "ARGUMENT*"));
+            // Every match is a child of the same node, rather than nested
+            Assert.assertTrue(arguments.getNode(1).is("ARGUMENT", "ARGUMENT"));
+            Assert.assertEquals("3", arguments.getNode(1).getNode(1).getToken(1).getValue());
+
+            // f()
+            root = repeating.parse(Arrays.asList(name, LP, RP)).getRoot();
+            Assert.assertTrue(root.getNode(2).getChildren().isEmpty());
+        }
+    }
+
+    @Test
+    public void testParseRepetitionOfManyMatches() {
+        Parser repeating = Parser.newBuilder("PROGRAM")
+                    .sentence("STATEMENT+")
+                .branch("STATEMENT")
+                    .sentence("LITERAL", "PLUS")
+                    .sentence("LITERAL")
+                .build();
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            tokens.add(new LiteralToken(i));
+            tokens.add(PLUS);
+        }
+
+        // Parsed in a loop, without nesting a node per match
+        SymbolTreeNode statements = repeating.parse(tokens).getRoot().getNode(0);
+        Assert.assertEquals(100000, statements.getChildren().size());
+        Assert.assertTrue(statements.getNode(99999).is("LITERAL", "PLUS"));
+
+        try {
+            repeating.parse(Collections.singletonList(PLUS));
+            Assert.fail("Failed to catch missing match.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Syntax error near token '+' on line 0.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseRepetitionOfTokenOnlyQuantified() {
+        Token comma = new SimpleToken("COMMA", ",", 0);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            // COMMA is nowhere else in the grammar, yet is quantified all the same
+            Parser parser = Parser.newBuilder("LIST")
+                        .sentence("LITERAL", "COMMA*")
+                    .strategy(strategy)
+                    .build();
+            Assert.assertEquals("[LIST, LITERAL:1, COMMA*, COMMA:,, COMMA:,]", parser.parse(
+                    Arrays.asList(new LiteralToken(1), comma, comma)).flattenAsString().toString());
+            Assert.assertEquals("[LIST, LITERAL:1, COMMA*]", parser.parse(
+                    Collections.singletonList(new LiteralToken(1))).flattenAsString().toString());
+        }
+    }
+
+    @Test
+    public void testParseTokenEndingInQuantifierSuffix() {
+        Token increment = new SimpleToken("C++", "++", 0);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser parser = Parser.newBuilder("STATEMENT")
+                        .sentence("LITERAL", Phrase.LITERAL + "C++")
+                    .strategy(strategy)
+                    .build();
+            Assert.assertEquals("[STATEMENT, LITERAL:1, C++:++]", parser.parse(
+                    Arrays.asList(new LiteralToken(1), increment)).flattenAsString().toString());
+            try {
+                parser.parse(Arrays.asList(new LiteralToken(1), increment, increment));
+                Assert.fail("Failed to catch repeated token.");
+            }
+            catch (IllegalArgumentException ex) {
+                Assert.assertEquals("Unexpected token '++' on line 0.", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testBuildAmbiguousQuantifiedWord() {
+        try {
+            Parser.newBuilder("STATEMENT")
+                        .sentence("LITERAL", Phrase.LITERAL + "C++")
+                        .sentence("C++")
+                    .build();
+            Assert.fail("Failed to catch word both quantified and matched as is.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Word C++ of phrase STATEMENT is both quantified and matched as is.", ex.getMessage());
+        }
+        try {
+            Parser.newBuilder("STATEMENT")
+                        .sentence("LITERAL", Phrase.LITERAL + "C++")
+                    .branch("OTHER")
+                        .sentence("C++")
+                    .build();
+            Assert.fail("Failed to catch word both quantified and matched as is.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Word C++ of phrase OTHER is quantified, but matched as is elsewhere.", ex.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildRepetitionOfNullablePhrase() {
+        Parser.newBuilder("LIST")
+                    .sentence("ITEM*")
+                .branch("ITEM")
+                    .sentence("LITERAL")
+                    .sentence()
+                .build();
+    }
+
+    @Test
+    public void testReparse() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser reparser = Parser.newBuilder("SUM")
+                        .sentence("SUM", "PLUS", "EXPRESSION")
+                        .sentence("EXPRESSION")
+                    .branch("EXPRESSION")
+                        .sentence("LITERAL")
+                        .sentence("LP", "SUM", "RP")
+                    .strategy(strategy)
+                    .build();
+            List<Token> tokens = new ArrayList<>(ADDER);
+            SymbolTree previous = reparser.reparse(reparser.parse(tokens), tokens, TokenEdit.of(0, 0, 0));
+
+            // 1 + (2 + 3) => 1 + (2 + 3) + 4
+            tokens.addAll(Arrays.asList(PLUS, new LiteralToken(4)));
+            SymbolTree tree = reparser.reparse(previous, tokens, TokenEdit.of(7, 0, 2));
+            Assert.assertEquals(reparser.parse(tokens).flattenAsString(), tree.flattenAsString());
+            Assert.assertEquals(2, previous.findTokens("PLUS").size());
+
+            // 1 + (2 + 3) + 4 => 5 + (2 + 3) + 4
+            tokens.set(0, new LiteralToken(5));
+            SymbolTree edited = reparser.reparse(tree, tokens, TokenEdit.of(0, 1, 1));
+            Assert.assertEquals(reparser.parse(tokens).flattenAsString(), edited.flattenAsString());
+            if (strategy != ParsingStrategy.GENERAL) {
+                // The parenthesized sum did not look at the edited token
+                Assert.assertSame(tree.getRoot().getNode(0).getNode(2), edited.getRoot().getNode(0).getNode(2));
+            }
+        }
+    }
+
+    @Test
+    public void testReparseWorkIndependentOfLength() {
+        for (ParsingStrategy strategy : new ParsingStrategy[] {ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE}) {
+            long[] applications = null;
+            for (int statements : new int[] {100, 1000}) {
+                ParseProfile profile = new ParseProfile();
+                Parser reparser = Parser.newBuilder("PROGRAM")
+                            .sentence("PROGRAM", "STATEMENT")
+                            .sentence("STATEMENT")
+                        .branch("STATEMENT")
+                            .sentence("LP", "ADD", "RP")
+                        .branch("ADD")
+                            .sentence("ADD", "PLUS", "LITERAL")
+                            .sentence("LITERAL")
+                        .strategy(strategy)
+                        .profile(profile)
+                        .build();
+
+                // (0 + 1) (0 + 1) ... with the middle statement edited to (0 + 1 + 2)
+                List<Token> tokens = new ArrayList<>();
+                for (int i = 0; i < statements; i++) {
+                    tokens.addAll(Arrays.asList(LP, new LiteralToken(0), PLUS, new LiteralToken(1), RP));
+                }
+                SymbolTree previous = reparser.reparse(reparser.parse(tokens), tokens, TokenEdit.of(0, 0, 0));
+                int middle = statements / 2 * 5 + 4;
+                tokens.addAll(middle, Arrays.asList(PLUS, new LiteralToken(2)));
+                profile.clear();
+                SymbolTree tree = reparser.reparse(previous, tokens, TokenEdit.of(middle, 0, 2));
+
+                // Only the edited statement is evaluated again; the program re-grows over the others,
+                // recalling them once each.
+                long[] current = {
+                        profile.get("PROGRAM").getApplications(),
+                        profile.get("STATEMENT").getApplications(),
+                        profile.get("ADD").getApplications()};
+                if (applications != null) {
+                    Assert.assertArrayEquals(applications, current);
+                }
+                Assert.assertEquals(statements + 1, profile.get("STATEMENT").getRecalls());
+                applications = current;
+                Assert.assertEquals(reparser.parse(tokens).flattenAsString(), tree.flattenAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testReparseMismatchedEdit() {
+        SymbolTree previous = parser.reparse(parser.parse(ADDER), ADDER, TokenEdit.of(0, 0, 0));
+        try {
+            parser.reparse(previous, ADDER, TokenEdit.of(0, 0, 1));
+            Assert.fail("Failed to catch mismatched edit.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Token edit results in 8 tokens rather than the 7 given.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseSegments() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser.Builder builder = Parser.newBuilder("PROGRAM")
+                        .sentence("PROGRAM", "STATEMENT")
+                        .sentence("STATEMENT")
+                    .branch("STATEMENT")
+                        .sentence("LP", "ADD", "RP")
+                    .branch("ADD")
+                        .sentence("ADD", "PLUS", "LITERAL")
+                        .sentence("LITERAL")
+                    .strategy(strategy);
+            Parser sequential = builder.build();
+            Parser segmented = builder.segments("STATEMENT", "LP").pool(pool).build();
+
+            // (0) (0 + 1) (0 + 1 + 2) ...
+            List<Token> tokens = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                tokens.add(LP);
+                for (int j = 0; j < i % 10; j++) {
+                    tokens.add(new LiteralToken(j));
+                    tokens.add(PLUS);
+                }
+                tokens.add(new LiteralToken(i));
+                tokens.add(RP);
+            }
+            Assert.assertEquals(sequential.parse(tokens).flattenAsString(), segmented.parse(tokens).flattenAsString());
+
+            tokens.add(tokens.size() - 1, PLUS);
+            try {
+                segmented.parse(tokens);
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildSegmentsOfUnknownPhrase() {
+        Parser.newBuilder("EXPRESSION")
+                .sentence("LITERAL")
+                .segments("STATEMENT", "LP")
+                .build();
+    }
+
+    @Test
+    public void testParseListener() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser listened = Parser.newBuilder("ADDER")
+                        .sentence("ADD")
+                    .branch("ADD")
+                        .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                    .branch("EXPRESSION")
+                        .sentence("LITERAL")
+                        .sentence("LP", "ADD", "RP")
+                    .strategy(strategy)
+                    .build();
+            List<String> events = new ArrayList<>();
+            listened.parse(ADDER, new RecordingListener(events));
+            List<String> expected = Arrays.asList(
+                    "<ADDER", "<ADD", "<EXPRESSION", "1", ">EXPRESSION", "+", "<EXPRESSION", "(",
+                    "<ADD", "<EXPRESSION", "2", ">EXPRESSION", "+", "<EXPRESSION", "3", ">EXPRESSION", ">ADD",
+                    ")", ">EXPRESSION", ">ADD", ">ADDER");
+            Assert.assertEquals(expected, events);
+        }
+    }
+
+    @Test
+    public void testParseListenerStreamsCommittedPhrases() {
+        Parser listened = Parser.newBuilder("PROGRAM")
+                    .sentence("STATEMENT", "PROGRAM")
+                    .sentence()
+                .branch("STATEMENT")
+                    .sentence("LP", "LITERAL", "RP")
+                .build();
+        List<String> events = new ArrayList<>();
+        try {
+            // (1) (2) (3 +
+            listened.parse(Arrays.asList(LP, new LiteralToken(1), RP, LP, new LiteralToken(2), RP,
+                    LP, new LiteralToken(3), PLUS), new RecordingListener(events));
+            Assert.fail("Failed to catch bad syntax.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+        }
+        // Statements were emitted as soon as they were parsed, before the leftover tokens were found
+        Assert.assertEquals(Arrays.asList("<PROGRAM", "<STATEMENT", "(", "1", ")", ">STATEMENT",
+                "<PROGRAM", "<STATEMENT", "(", "2", ")", ">STATEMENT", "<PROGRAM", ">PROGRAM",
+                ">PROGRAM", ">PROGRAM"), events);
+    }
+
+    @Test
+    public void testParseTokenSource() {
+        Parser listened = Parser.newBuilder("PROGRAM")
+                    .sentence("STATEMENT", "PROGRAM")
+                    .sentence()
+                .branch("STATEMENT")
+                    .sentence("LP", "LITERAL", "RP")
+                .build();
+        // (1) (2) (3 +
+        List<Token> tokens = Arrays.asList(LP, new LiteralToken(1), RP, LP, new LiteralToken(2), RP,
+                LP, new LiteralToken(3), PLUS);
+        List<String> events = new ArrayList<>();
+        Iterator<Token> source = tokens.iterator();
+        try {
+            listened.parse(() -> source.hasNext() ? source.next() : null, new RecordingListener(events) {
+                @Override
+                public void token(Token token) {
+                    super.token(token);
+                    // Tokens are pulled only as the parse reaches them
+                    Assert.assertTrue(source.hasNext());
+                }
+            });
+            Assert.fail("Failed to catch bad syntax.");
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList("<PROGRAM", "<STATEMENT", "(", "1", ")", ">STATEMENT",
+                "<PROGRAM", "<STATEMENT", "(", "2", ")", ">STATEMENT", "<PROGRAM", ">PROGRAM",
+                ">PROGRAM", ">PROGRAM"), events);
+    }
+
+    @Test
+    public void testParseSharedPrefixes() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser sharing = Parser.newBuilder("CALL")
+                        .sentence("NAME", "LP", "ARGUMENT", "RP", "PLUS")
+                        .sentence("NAME", "LP", "ARGUMENT", "RP")
+                        .sentence("NAME")
+                    .branch("NAME")
+                        .sentence("LITERAL")
+                    .branch("ARGUMENT")
+                        .sentence("CALL")
+                    .branch("UNUSED")
+                        .sentence("PLUS")
+                    .strategy(strategy)
+                    .build();
+            // Unreachable phrases are never compiled
+            Assert.assertNull(sharing.getCompiledGrammar().get("UNUSED"));
+
+            // 1 ( 2 ( 3 ) )
+            List<Token> tokens = Arrays.asList(new LiteralToken(1), LP, new LiteralToken(2), LP,
+                    new LiteralToken(3), RP, RP);
+            List<String> expected = Arrays.asList("CALL", "NAME", "LITERAL:1", "LP:(", "ARGUMENT", "CALL",
+                    "NAME", "LITERAL:2", "LP:(", "ARGUMENT", "CALL", "NAME", "LITERAL:3", "RP:)", "RP:)");
+            Assert.assertEquals(expected, sharing.parse(tokens).flattenAsString());
+            try {
+                sharing.parse(tokens.subList(0, 6));
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testParseCommitPoint() {
+        // 1 ( 2 + ) 3
+        List<Token> tokens = Arrays.asList(new LiteralToken(1), LP, new LiteralToken(2), PLUS, RP,
+                new LiteralToken(3));
+        for (ParsingStrategy strategy : Arrays.asList(ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE)) {
+            try {
+                statements(strategy, "LP", "LITERAL", "RP").parse(tokens);
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                // Backtracks out of the parenthesis, which is then left over
+                Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+            }
+
+            Parser committing = statements(strategy, "LP", Phrase.COMMIT, "LITERAL", "RP");
+            try {
+                committing.parse(tokens);
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                Assert.assertEquals("Syntax error near token '+' on line 0.", ex.getMessage());
+            }
+            Assert.assertEquals(3, committing.validate(tokens)
+                    .orElseThrow(() -> new AssertionError("Failed to catch bad syntax."))
+                    .getPosition());
+            List<String> expected = Arrays.asList("PROGRAM", "STATEMENT", "LITERAL:1", "PROGRAM",
+                    "STATEMENT", "LP:(", "LITERAL:2", "RP:)", "PROGRAM");
+            Assert.assertEquals(expected, committing.parse(Arrays.asList(new LiteralToken(1), LP,
+                    new LiteralToken(2), RP)).flattenAsString());
+        }
+    }
+
+    @Test
+    public void testParseParallelPhrase() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<Token> tokens = new ArrayList<>(Collections.nCopies(100, new LiteralToken(1)));
+        tokens.add(RP);
+        List<Token> bad = new ArrayList<>(Collections.nCopies(100, new LiteralToken(1)));
+        bad.add(PLUS);
+        bad.add(PLUS);
+        for (ParsingStrategy strategy : Arrays.asList(ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE)) {
+            Parser[] parsers = new Parser[2];
+            for (int i = 0; i < parsers.length; i++) {
+                Parser.Builder builder = Parser.newBuilder("EXPRESSION")
+                            .sentence("TERMS", "PLUS", "LITERAL")
+                            .sentence("TERMS", "LP")
+                            .sentence("TERMS", "RP")
+                            .sentence("TERMS");
+                if (i == 1) {
+                    builder.parallel();
+                }
+                parsers[i] = builder
+                        .branch("TERMS")
+                            .sentence("LITERAL", "TERMS")
+                            .sentence("LITERAL")
+                        .strategy(strategy)
+                        .pool(pool)
+                        .build();
+            }
+            Assert.assertTrue(parsers[1].getGrammar().getPhrases().get("EXPRESSION").isParallel());
+            // The first sentence in order that matches is kept
+            SymbolTreeNode root = parsers[1].parse(tokens).getRoot();
+            Assert.assertEquals(RP, root.getChildren().get(1));
+            Assert.assertEquals(parsers[0].parse(tokens).flattenAsString(), parsers[1].parse(tokens).flattenAsString());
+            try {
+                parsers[1].parse(bad);
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                // The terms on their own match, leaving the operators over
+                Assert.assertEquals("Unexpected token '+' on line 0.", ex.getMessage());
+            }
+            Assert.assertEquals(100, parsers[1].validate(bad)
+                    .orElseThrow(() -> new AssertionError("Failed to catch bad syntax."))
+                    .getPosition());
+        }
+        pool.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildParallelOperatorPhrase() {
+        Parser.newBuilder("EXPRESSION")
+                .operand("LITERAL")
+                .operator("PLUS", 1)
+                .parallel()
+                .build();
+    }
+
+    @Test
+    public void testParseLazyPhrase() {
+        List<Token> tokens = Arrays.asList(LP, new LiteralToken(1), new LiteralToken(2), RP,
+                LP, new LiteralToken(3), RP);
+        List<Token> bad = Arrays.asList(LP, new LiteralToken(1), RP, LP, new LiteralToken(2), PLUS, RP);
+        for (ParsingStrategy strategy : Arrays.asList(ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE)) {
+            Parser[] parsers = new Parser[2];
+            for (int i = 0; i < parsers.length; i++) {
+                Parser.Builder builder = Parser.newBuilder("BLOCKS")
+                            .sentence("BLOCK+")
+                        .branch("BLOCK")
+                            .sentence("LP", "TERMS", "RP");
+                if (i == 1) {
+                    builder.lazy();
+                }
+                parsers[i] = builder
+                        .branch("TERMS")
+                            .sentence("LITERAL", "TERMS")
+                            .sentence("LITERAL")
+                        .strategy(strategy)
+                        .build();
+            }
+            Assert.assertTrue(parsers[1].getGrammar().getPhrases().get("BLOCK").isLazy());
+            SymbolTree tree = parsers[1].parse(tokens);
+            SymbolTreeNode blocks = tree.getRoot().getNode(0);
+            Assert.assertFalse(blocks.getNode(0).isMaterialized());
+            Assert.assertFalse(blocks.getNode(1).isMaterialized());
+            // Children are parsed when first read
+            Assert.assertEquals(3, blocks.getNode(0).size());
+            Assert.assertTrue(blocks.getNode(0).isMaterialized());
+            Assert.assertFalse(blocks.getNode(1).isMaterialized());
+            Assert.assertEquals(parsers[0].parse(tokens).flattenAsString(), tree.flattenAsString());
+            Assert.assertTrue(blocks.getNode(1).isMaterialized());
+            try {
+                parsers[1].parse(bad);
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                // The first block on its own matches, leaving the second over
+                Assert.assertEquals("Unexpected token '(' on line 0.", ex.getMessage());
+            }
+            Assert.assertEquals(parsers[0].validate(bad).map(ParseFailureSite::getPosition),
+                    parsers[1].validate(bad).map(ParseFailureSite::getPosition));
+        }
+    }
+
+    @Test
+    public void testParseLazyTokenOnlyPhrase() {
+        List<Token> tokens = Arrays.asList(LP, new LiteralToken(1), RP);
+        for (ParsingStrategy strategy : Arrays.asList(ParsingStrategy.RECURSIVE, ParsingStrategy.ITERATIVE)) {
+            Parser parser = Parser.newBuilder("STATEMENT")
+                        .sentence("GROUP")
+                    .branch("GROUP")
+                        .sentence("LP", "LITERAL", "RP")
+                        .lazy()
+                    .strategy(strategy)
+                    .build();
+            // A single sentence of tokens would otherwise be inlined, dropping the laziness
+            SymbolTreeNode group = parser.parse(tokens).getRoot().getNode(0);
+            Assert.assertFalse(group.isMaterialized());
+            Assert.assertTrue(group.is("LP", "LITERAL", "RP"));
+            Assert.assertTrue(group.isMaterialized());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildLazyOperatorPhrase() {
+        Parser.newBuilder("EXPRESSION")
+                .operand("LITERAL")
+                .operator("PLUS", 1)
+                .lazy()
+                .build();
+    }
+
+    @Test
+    public void testValidate() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser validating = Parser.newBuilder("ADDER")
+                        .sentence("ADD")
+                    .branch("ADD")
+                        .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                    .branch("EXPRESSION")
+                        .sentence("LITERAL")
+                        .sentence("LP", "ADD", "RP")
+                    .strategy(strategy)
+                    .build();
+            Assert.assertFalse(validating.validate(ADDER).isPresent());
+
+            // 1 + (2 3)
+            ParseFailureSite site = validating.validate(Arrays.asList(new LiteralToken(1), PLUS, LP,
+                    new LiteralToken(2), new LiteralToken(3), RP))
+                    .orElseThrow(() -> new AssertionError("Failed to catch bad syntax."));
+            Assert.assertEquals(4, site.getPosition());
+            Assert.assertEquals("Syntax error near token '3' on line 0.", site.getMessage());
+        }
+    }
+
+    @Test
+    public void testValidateLeftoverTokens() {
+        Parser operators = Parser.newBuilder("EXPRESSION")
+                    .operand("LITERAL")
+                    .operator("PLUS", 1)
+                .build();
+        List<Token> tokens = Arrays.asList(new LiteralToken(1), PLUS, new LiteralToken(2), PLUS);
+        Assert.assertFalse(operators.validate(tokens.subList(0, 3)).isPresent());
+        ParseFailureSite site = operators.validate(tokens)
+                .orElseThrow(() -> new AssertionError("Failed to catch dangling operator."));
+        Assert.assertEquals(3, site.getPosition());
+        Assert.assertEquals("Unexpected token '+' on line 0.", site.getMessage());
+    }
+
+    @Test
+    public void testParseCompact() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser compact = Parser.newBuilder("ADDER")
+                        .sentence("ADD")
+                    .branch("ADD")
+                        .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                    .branch("EXPRESSION")
+                        .sentence("LITERAL")
+                        .sentence("LP", "ADD", "RP")
+                    .strategy(strategy)
+                    .compact()
+                    .build();
+            SymbolTree expected = parser.parse(ADDER);
+            SymbolTree tree = compact.parse(ADDER);
+            Assert.assertEquals(expected.toString(), tree.toString());
+            Assert.assertEquals(expected.flattenAsString(), tree.flattenAsString());
+
+            SymbolTreeNode inner = tree.getRoot().getNode(0).getNode(2);
+            Assert.assertTrue(inner.is("LP", "ADD", "RP"));
+            Assert.assertEquals(5, inner.tokenCount());
+            Assert.assertSame(ADDER.get(6), inner.getToken(2));
+            Assert.assertEquals(2, tree.findNodes("ADD").size());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testParseCompactReadOnly() {
+        Parser compact = Parser.newBuilder("EXPRESSION")
+                    .sentence("LITERAL")
+                .compact()
+                .build();
+        compact.parse(Collections.singletonList(new LiteralToken(1))).getRoot().getChildren().clear();
+    }
+
+    @Test
+    public void testParseTokenPipe() {
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            Parser pipelined = Parser.newBuilder("ADDER")
+                        .sentence("ADD")
+                    .branch("ADD")
+                        .sentence("EXPRESSION", "PLUS", "EXPRESSION")
+                    .branch("EXPRESSION")
+                        .sentence("LITERAL")
+                        .sentence("LP", "ADD", "RP")
+                    .strategy(strategy)
+                    .build();
+            Assert.assertEquals(parser.parse(ADDER).toString(), pipelined.parse(pipe(ADDER)).toString());
+
+            List<Token> unexpected = new ArrayList<>(ADDER);
+            unexpected.add(PLUS);
+            try {
+                pipelined.parse(pipe(unexpected));
+                Assert.fail("Failed to catch bad syntax.");
+            }
+            catch (IllegalArgumentException ex) {
+                Assert.assertEquals("Unexpected token '+' on line 0.", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testParseFailedTokenPipe() {
+        TokenPipe tokens = new TokenPipe();
+        tokens.publish(ADDER.get(0));
+        tokens.fail(new IllegalStateException("Lexer failed."));
+        try {
+            parser.parse(tokens);
+            Assert.fail("Failed to catch the lexer's failure.");
+        }
+        catch (IllegalStateException ex) {
+            Assert.assertEquals("Lexer failed.", ex.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildOperatorPhraseWithSentences() {
+        Parser.newBuilder("EXPRESSION")
+                .sentence("LITERAL")
+                .operand("LITERAL")
+                .operator("PLUS", 1)
+                .build();
+    }
+
+    /**
+     * Creates a parser of statements, each either a literal or the given sentence.
+     */
+    private static Parser statements(ParsingStrategy strategy, String... sentence) {
+        return Parser.newBuilder("PROGRAM")
+                    .sentence("STATEMENT", "PROGRAM")
+                    .sentence()
+                .branch("STATEMENT")
+                    .sentence(sentence)
+                    .sentence("LITERAL")
+                .strategy(strategy)
+                .build();
+    }
+
+    /**
+     * Publishes the tokens to a new pipe on another thread.
+     */
+    private static TokenPipe pipe(List<Token> tokens) {
+        TokenPipe pipe = new TokenPipe();
+        new Thread(() -> {
+            tokens.forEach(pipe::publish);
+            pipe.close();
+        }).start();
+        return pipe;
+    }
+
     private void assertToken(GrammarComponent actual, String expectedId, String expectedValue) {
         Assert.assertTrue(actual instanceof Token);
         Assert.assertEquals(expectedValue, ((Token) actual).getValue());
@@ -115,6 +1089,29 @@ public class TU_Parser {
         Assert.assertEquals(expectedId, component.getId());
     }
 
+    private static class RecordingListener implements ParseListener {
+        private final List<String> events;
+
+        private RecordingListener(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void enterPhrase(String phraseId) {
+            events.add("<" + phraseId);
+        }
+
+        @Override
+        public void exitPhrase(String phraseId) {
+            events.add(">" + phraseId);
+        }
+
+        @Override
+        public void token(Token token) {
+            events.add(token.getValue());
+        }
+    }
+
     private static final class PlusToken extends SimpleToken {
         private PlusToken(int lineNumber) {
             super("PLUS", "+", lineNumber);
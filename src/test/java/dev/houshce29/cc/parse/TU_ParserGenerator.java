@@ -0,0 +1,131 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.lex.SimpleToken;
+import dev.houshce29.cc.lex.Token;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class TU_ParserGenerator {
+    // 1 + (2 * 3 * 4)
+    private static final List<Token> TOKENS = Arrays.asList(
+            new SimpleToken("LITERAL", "1", 0), new SimpleToken("PLUS", "+", 0), new SimpleToken("LP", "(", 0),
+            new SimpleToken("LITERAL", "2", 0), new SimpleToken("STAR", "*", 0), new SimpleToken("LITERAL", "3", 0),
+            new SimpleToken("STAR", "*", 0), new SimpleToken("LITERAL", "4", 0), new SimpleToken("RP", ")", 0));
+
+    private Parser parser;
+
+    @Before
+    public void beforeEach() {
+        parser = Parser.newBuilder("ADDER")
+                    .sentence("ADD")
+                .branch("ADD")
+                    .sentence("ADD", "PLUS", "EXPRESSION")
+                    .sentence("EXPRESSION")
+                .branch("EXPRESSION")
+                    .sentence("LP", "PRODUCT", "RP")
+                    .sentence("LITERAL")
+                .branch("PRODUCT")
+                    .operand("LITERAL")
+                    .operator("STAR", 1)
+                .build();
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        Method parse = compile(ParserGenerator.of(parser).generate("generated.AdderParser"), "generated.AdderParser");
+        SymbolTree tree = (SymbolTree) parse.invoke(null, TOKENS);
+        Assert.assertEquals(parser.parse(TOKENS).toString(), tree.toString());
+
+        try {
+            parse.invoke(null, TOKENS.subList(0, 8));
+            Assert.fail("Failed to catch bad syntax.");
+        }
+        catch (InvocationTargetException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            // Like the parser, the addition stops before the unclosed parenthesis
+            Assert.assertEquals("Unexpected token '+' on line 0.", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testGenerateCommitPoint() throws Exception {
+        Parser committing = Parser.newBuilder("PROGRAM")
+                    .sentence("STATEMENT", "PROGRAM")
+                    .sentence()
+                .branch("STATEMENT")
+                    .sentence("LP", Phrase.COMMIT, "LITERAL", "RP")
+                    .sentence("LITERAL")
+                .build();
+        Method parse = compile(ParserGenerator.of(committing).generate("generated.StatementParser"),
+                "generated.StatementParser");
+        try {
+            // 1 ( 2 * ) 3
+            parse.invoke(null, Arrays.asList(TOKENS.get(0), TOKENS.get(2), TOKENS.get(3), TOKENS.get(4),
+                    TOKENS.get(8), TOKENS.get(5)));
+            Assert.fail("Failed to catch bad syntax.");
+        }
+        catch (InvocationTargetException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            // Like the parser, fails where the committed sentence does rather than backtracking
+            Assert.assertEquals("Syntax error near token '*' on line 0.", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testGenerateRepetition() throws Exception {
+        Parser repeating = Parser.newBuilder("SUM")
+                    .sentence("LITERAL", "TERM*", "RP?")
+                .branch("TERM")
+                    .sentence("PLUS", "LITERAL")
+                .build();
+        Method parse = compile(ParserGenerator.of(repeating).generate("generated.SumParser"), "generated.SumParser");
+        // 1 + 2 + 3 )
+        List<Token> tokens = Arrays.asList(TOKENS.get(0), TOKENS.get(1), TOKENS.get(3), TOKENS.get(1),
+                TOKENS.get(5), TOKENS.get(8));
+        Assert.assertEquals(repeating.parse(tokens).toString(), parse.invoke(null, tokens).toString());
+        Assert.assertEquals(repeating.parse(tokens.subList(0, 1)).toString(),
+                parse.invoke(null, tokens.subList(0, 1)).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerateMutuallyLeftRecursive() {
+        ParserGenerator.of(Parser.newBuilder("A")
+                    .sentence("B", "PLUS")
+                    .sentence("LITERAL")
+                .branch("B")
+                    .sentence("A", "STAR")
+                .build());
+    }
+
+    /**
+     * Compiles the source of a class and loads it.
+     * @return The static `parse` method of the class.
+     */
+    private static Method compile(String source, String className) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        Path directory = Files.createTempDirectory("generated");
+        Path file = directory.resolve(className.substring(className.lastIndexOf('.') + 1) + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        int result = compiler.run(null, null, null, "-cp", System.getProperty("java.class.path"),
+                "-d", directory.toString(), file.toString());
+        Assert.assertEquals(source, 0, result);
+        ClassLoader loader = new URLClassLoader(new URL[] {directory.toUri().toURL()},
+                TU_ParserGenerator.class.getClassLoader());
+        return loader.loadClass(className).getMethod("parse", List.class);
+    }
+}
@@ -0,0 +1,291 @@
+package dev.houshce29.cc.parse;
+
+import dev.houshce29.cc.common.GrammarComponent;
+import dev.houshce29.cc.lex.SimpleToken;
+import dev.houshce29.cc.lex.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+public class TU_SymbolTree {
+
+    /**
+     * @return Tree of `(1 + 2) + 3`.
+     */
+    private static SymbolTree newTree() {
+        SymbolTreeNode inner = new SymbolTreeNode("SUM");
+        inner.getChildren().add(new SimpleToken("LITERAL", "1", 0));
+        inner.getChildren().add(new SimpleToken("PLUS", "+", 0));
+        inner.getChildren().add(new SimpleToken("LITERAL", "2", 0));
+        SymbolTreeNode outer = new SymbolTreeNode("SUM");
+        outer.getChildren().add(inner);
+        outer.getChildren().add(new SimpleToken("PLUS", "+", 0));
+        outer.getChildren().add(new SimpleToken("LITERAL", "3", 0));
+        SymbolTreeNode root = new SymbolTreeNode("ROOT");
+        root.getChildren().add(outer);
+        return new SymbolTree(root);
+    }
+
+    @Test
+    public void testFind() {
+        SymbolTree tree = newTree();
+        List<SymbolTreeNode> sums = tree.findNodes("SUM");
+        Assert.assertEquals(2, sums.size());
+        // Document order: the outer sum comes before the inner one
+        Assert.assertSame(tree.getRoot().getNode(0), sums.get(0));
+        Assert.assertSame(sums.get(0).getNode(0), sums.get(1));
+        List<Token> literals = tree.findTokens("LITERAL");
+        Assert.assertEquals(3, literals.size());
+        Assert.assertEquals("1", literals.get(0).getValue());
+        Assert.assertEquals("3", literals.get(2).getValue());
+        Assert.assertTrue(tree.findNodes("LITERAL").isEmpty());
+        Assert.assertTrue(tree.findNodes("ROOT").isEmpty());
+        Assert.assertTrue(tree.findTokens("MINUS").isEmpty());
+        // Results may be modified without affecting later searches
+        literals.clear();
+        Assert.assertEquals(3, tree.findTokens("LITERAL").size());
+    }
+
+    @Test
+    public void testFindAfterModification() {
+        SymbolTree tree = newTree();
+        SymbolTreeNode inner = tree.findNodes("SUM").get(1);
+        Assert.assertEquals(2, tree.findTokens("PLUS").size());
+
+        inner.getChildren().add(new SimpleToken("PLUS", "+", 0));
+        inner.getChildren().add(new SimpleToken("LITERAL", "4", 0));
+        Assert.assertEquals(3, tree.findTokens("PLUS").size());
+        Assert.assertEquals("4", tree.findTokens("LITERAL").get(2).getValue());
+
+        inner.getChildren().set(0, new SimpleToken("MINUS", "-", 0));
+        Assert.assertEquals(1, tree.findTokens("MINUS").size());
+        Assert.assertEquals(3, tree.findTokens("LITERAL").size());
+
+        inner.getChildren().removeIf(component -> "MINUS".equals(component.getId()));
+        Assert.assertTrue(tree.findTokens("MINUS").isEmpty());
+
+        inner.getChildren().subList(0, 2).clear();
+        Assert.assertEquals(2, tree.findTokens("LITERAL").size());
+
+        Iterator<GrammarComponent> children = tree.getRoot().getNode(0).getChildren().iterator();
+        children.next();
+        children.remove();
+        Assert.assertEquals(1, tree.findNodes("SUM").size());
+        Assert.assertEquals(1, tree.findTokens("PLUS").size());
+
+        tree.getRoot().getChildren().clear();
+        Assert.assertTrue(tree.findNodes("SUM").isEmpty());
+    }
+
+    @Test
+    public void testFindInTreesSharingNodes() {
+        SymbolTree tree = newTree();
+        SymbolTreeNode shared = tree.getRoot().getNode(0);
+        SymbolTreeNode root = new SymbolTreeNode("ROOT");
+        root.getChildren().add(shared);
+        SymbolTree other = new SymbolTree(root);
+        Assert.assertEquals(2, tree.findNodes("SUM").size());
+        Assert.assertEquals(2, other.findNodes("SUM").size());
+
+        // Both indices go stale with the shared nodes
+        shared.getNode(0).getChildren().remove(2);
+        Assert.assertEquals(2, tree.findTokens("LITERAL").size());
+        Assert.assertEquals(2, other.findTokens("LITERAL").size());
+    }
+
+    @Test
+    public void testToString() {
+        Assert.assertEquals("AST:\n| ROOT\n| - SUM\n| - - SUM\n| - - - LITERAL\n| - - - PLUS\n| - - - LITERAL"
+                + "\n| - - PLUS\n| - - LITERAL", newTree().toString().replaceAll("(LITERAL|PLUS).*", "$1"));
+
+        // A left-recursive list is as deep as it is long
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            tokens.add(new SimpleToken("ITEM", String.valueOf(i), 0));
+        }
+        SymbolTree list = Parser.newBuilder("LIST")
+                    .sentence("LIST", "ITEM")
+                    .sentence("ITEM")
+                .strategy(ParsingStrategy.ITERATIVE)
+                .build()
+                .parse(tokens);
+        String[] lines = list.toString().split("\n");
+        Assert.assertEquals(4001, lines.length);
+        String deepest = "| " + String.join("", Collections.nCopies(2000, "- ")) + "ITEM";
+        Assert.assertTrue(lines[2001].startsWith(deepest));
+    }
+
+    @Test
+    public void testStream() {
+        SymbolTree tree = newTree();
+        Assert.assertEquals(8, tree.stream().count());
+        Assert.assertEquals(tree.flatten(), tree.stream().collect(Collectors.toList()));
+        Assert.assertEquals("[ROOT, SUM, SUM, LITERAL:1, PLUS:+, LITERAL:2, PLUS:+, LITERAL:3]",
+                tree.flattenAsString().toString());
+        Assert.assertEquals(3, tree.stream().filter(component -> "LITERAL".equals(component.getId())).count());
+    }
+
+    @Test
+    public void testStreamDeepTree() {
+        SymbolTreeNode root = new SymbolTreeNode("ROOT");
+        SymbolTreeNode node = root;
+        for (int i = 0; i < 100000; i++) {
+            SymbolTreeNode child = new SymbolTreeNode("NEST");
+            node.getChildren().add(child);
+            node = child;
+        }
+        node.getChildren().add(new SimpleToken("LITERAL", "1", 0));
+        SymbolTree tree = new SymbolTree(root);
+        Assert.assertEquals(100002, tree.stream().count());
+        Assert.assertEquals(100000, tree.findNodes("NEST").size());
+    }
+
+    @Test
+    public void testSplit() {
+        Random random = new Random(29);
+        for (int i = 0; i < 50; i++) {
+            SymbolTree tree = new SymbolTree(newNode(random, 0));
+            List<GrammarComponent> expected = new ArrayList<>();
+            flatten(tree.getRoot(), expected);
+            Assert.assertEquals(expected, tree.flatten());
+            Assert.assertEquals(expected, tree.stream().parallel().collect(Collectors.toList()));
+            List<GrammarComponent> split = new ArrayList<>();
+            split(tree.spliterator(), random, split);
+            Assert.assertEquals(expected, split);
+        }
+    }
+
+    @Test
+    public void testWalk() {
+        SymbolTree tree = newTree();
+        List<String> events = new ArrayList<>();
+        SymbolTreeWalker walker = new SymbolTreeWalker() {
+            @Override
+            public Action enter(SymbolTreeNode node) {
+                events.add("<" + node.getId());
+                return Action.CONTINUE;
+            }
+
+            @Override
+            public Action exit(SymbolTreeNode node) {
+                events.add(">" + node.getId());
+                return Action.CONTINUE;
+            }
+
+            @Override
+            public Action visitToken(Token token) {
+                events.add(token.getValue());
+                return Action.CONTINUE;
+            }
+        };
+        Assert.assertTrue(walker.walk(tree));
+        Assert.assertEquals("[<ROOT, <SUM, <SUM, 1, +, 2, >SUM, +, 3, >SUM, >ROOT]", events.toString());
+        // The stack is reused by the next walk
+        events.clear();
+        Assert.assertTrue(walker.walk(tree.getRoot().getNode(0).getNode(0)));
+        Assert.assertEquals("[<SUM, 1, +, 2, >SUM]", events.toString());
+        Assert.assertEquals(5, tree.getRoot().tokenCount());
+    }
+
+    @Test
+    public void testWalkActions() {
+        SymbolTree tree = newTree();
+        List<String> events = new ArrayList<>();
+        SymbolTreeWalker skipping = new SymbolTreeWalker() {
+            @Override
+            public Action enter(SymbolTreeNode node) {
+                events.add("<" + node.getId());
+                // Only the outer sum has a sum as its first child
+                return node.getChildren().get(0) instanceof Token ? Action.SKIP_SUBTREE : Action.CONTINUE;
+            }
+
+            @Override
+            public Action exit(SymbolTreeNode node) {
+                events.add(">" + node.getId());
+                return Action.CONTINUE;
+            }
+
+            @Override
+            public Action visitToken(Token token) {
+                events.add(token.getValue());
+                return "+".equals(token.getValue()) ? Action.SKIP_SIBLINGS : Action.CONTINUE;
+            }
+        };
+        Assert.assertTrue(skipping.walk(tree));
+        Assert.assertEquals("[<ROOT, <SUM, <SUM, +, >SUM, >ROOT]", events.toString());
+
+        events.clear();
+        SymbolTreeWalker stopping = new SymbolTreeWalker() {
+            @Override
+            public Action visitToken(Token token) {
+                events.add(token.getValue());
+                return "2".equals(token.getValue()) ? Action.STOP : Action.CONTINUE;
+            }
+        };
+        Assert.assertFalse(stopping.walk(tree));
+        Assert.assertEquals("[1, +, 2]", events.toString());
+        // A stopped walk leaves nothing behind for the next one
+        events.clear();
+        Assert.assertFalse(stopping.walk(tree));
+        Assert.assertEquals("[1, +, 2]", events.toString());
+    }
+
+    @Test
+    public void testWalkDeepTree() {
+        SymbolTreeNode root = new SymbolTreeNode("ROOT");
+        SymbolTreeNode node = root;
+        for (int i = 0; i < 100000; i++) {
+            SymbolTreeNode child = new SymbolTreeNode("NEST");
+            node.getChildren().add(child);
+            node = child;
+        }
+        node.getChildren().add(new SimpleToken("LITERAL", "1", 0));
+        Assert.assertEquals(1, root.tokenCount());
+    }
+
+    private static SymbolTreeNode newNode(Random random, int depth) {
+        SymbolTreeNode node = new SymbolTreeNode("N" + depth);
+        int children = depth > 5 ? 0 : random.nextInt(5);
+        for (int i = 0; i < children; i++) {
+            node.getChildren().add(random.nextBoolean()
+                    ? newNode(random, depth + 1) : new SimpleToken("T", String.valueOf(i), 0));
+        }
+        return node;
+    }
+
+    private static void flatten(SymbolTreeNode node, List<GrammarComponent> flat) {
+        flat.add(node);
+        for (GrammarComponent child : node.getChildren()) {
+            if (child instanceof SymbolTreeNode) {
+                flatten((SymbolTreeNode) child, flat);
+            }
+            else {
+                flat.add(child);
+            }
+        }
+    }
+
+    /**
+     * Splits a spliterator at random points while advancing it, collecting the prefix before the rest.
+     */
+    private static void split(Spliterator<GrammarComponent> spliterator, Random random, List<GrammarComponent> flat) {
+        while (true) {
+            if (random.nextInt(3) == 0) {
+                Spliterator<GrammarComponent> prefix = spliterator.trySplit();
+                if (prefix != null) {
+                    split(prefix, random, flat);
+                }
+            }
+            else if (!spliterator.tryAdvance(flat::add)) {
+                return;
+            }
+        }
+    }
+}